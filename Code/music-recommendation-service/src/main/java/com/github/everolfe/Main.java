@@ -1,9 +1,12 @@
 package com.github.everolfe;
 
+import com.github.everolfe.config.Config;
+import com.github.everolfe.controller.FxWatchdog;
 import com.github.everolfe.controller.LoginController;
 import com.github.everolfe.controller.MainController;
-import com.github.everolfe.database.DatabaseInitializer;
+import com.github.everolfe.database.SchemaMigrator;
 import com.github.everolfe.model.User;
+import com.github.everolfe.service.ServiceRegistry;
 import javafx.application.Application;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
@@ -17,6 +20,8 @@ public class Main extends Application {
     private static final Logger logger = LoggerFactory.getLogger(Main.class);
     private Stage primaryStage;
     private User currentUser;
+    private boolean schemaUpToDate;
+    private FxWatchdog fxWatchdog;
 
     @Override
     public void init() {
@@ -24,10 +29,12 @@ public class Main extends Application {
         // Инициализируем базу данных
         try {
             //DatabaseInitializer.initialize();
+            SchemaMigrator.migrate();
             logger.info("База данных инициализирована");
         } catch (Exception e) {
             logger.error("Ошибка инициализации БД: {}", e.getMessage());
         }
+        schemaUpToDate = SchemaMigrator.isSchemaUpToDate();
     }
 
     @Override
@@ -35,6 +42,7 @@ public class Main extends Application {
         try {
             this.primaryStage = primaryStage;
             logger.info("Запуск Music Recommendation Service");
+            fxWatchdog = FxWatchdog.start(Config.getUiStallThresholdMillis());
 
             // Загружаем экран входа
             showLoginScreen();
@@ -44,6 +52,11 @@ public class Main extends Application {
             primaryStage.setMinHeight(700);
             primaryStage.show();
 
+            if (!schemaUpToDate) {
+                showErrorAlert("Схема базы данных не соответствует версии " + SchemaMigrator.EXPECTED_VERSION
+                        + ". Часть функций может работать некорректно.");
+            }
+
             logger.info("Приложение успешно запущено");
 
         } catch (Exception e) {
@@ -125,6 +138,15 @@ public class Main extends Application {
         alert.showAndWait();
     }
 
+    @Override
+    public void stop() {
+        logger.info("Завершение работы приложения...");
+        if (fxWatchdog != null) {
+            fxWatchdog.stop();
+        }
+        ServiceRegistry.shutdown();
+    }
+
     public static void main(String[] args) {
         try {
             launch(args);
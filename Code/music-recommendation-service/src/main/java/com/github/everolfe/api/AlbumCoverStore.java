@@ -0,0 +1,230 @@
+package com.github.everolfe.api;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Хранилище обложек альбомов: URL обложки запоминается для пары (артист, альбом),
+ * а сами файлы изображений сохраняются на диск и при повторном показе не скачиваются.
+ * Одновременно скачивается не больше maxDownloads обложек.
+ * Методы блокирующие и вызываются из фоновых потоков.
+ */
+public class AlbumCoverStore {
+    private static final Logger logger = LoggerFactory.getLogger(AlbumCoverStore.class);
+
+    private static final int URL_CACHE_ENTRIES = 2000;
+    // Пустая строка в кэше URL - у альбома нет обложки
+    private static final String NO_COVER = "";
+
+    private final HttpClient httpClient;
+    private final LastFmService lastFmService;
+    private final Path directory;
+    private final long maxDiskBytes;
+    private final Semaphore downloads;
+    private final Map<String, String> coverUrls;
+
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong downloaded = new AtomicLong();
+
+    public AlbumCoverStore(HttpClient httpClient, LastFmService lastFmService, Path directory,
+                           long maxDiskBytes, int maxDownloads, ExecutorService executor) {
+        this.httpClient = httpClient;
+        this.lastFmService = lastFmService;
+        this.directory = directory;
+        this.maxDiskBytes = maxDiskBytes;
+        this.downloads = new Semaphore(maxDownloads);
+        this.coverUrls = new LinkedHashMap<String, String>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > URL_CACHE_ENTRIES;
+            }
+        };
+
+        try {
+            Files.createDirectories(directory);
+            executor.execute(this::trimDiskCache);
+        } catch (IOException | RejectedExecutionException e) {
+            logger.warn("Album cover disk cache is not available: {}", directory, e);
+        }
+    }
+
+    /**
+     * Возвращает URL обложки альбома или null, если обложки нет.
+     * Кэшируется только ответ Last.fm; при ошибке запроса бросается исключение
+     * и следующий вызов повторяет запрос.
+     */
+    public String getCoverUrl(String artist, String album) throws IOException, InterruptedException {
+        String key = (artist.trim() + "|" + album.trim()).toLowerCase();
+        synchronized (coverUrls) {
+            String url = coverUrls.get(key);
+            if (url != null) {
+                return url.isEmpty() ? null : url;
+            }
+        }
+
+        LastFmService.AlbumInfo albumInfo;
+        try {
+            albumInfo = lastFmService.fetchAlbumInfo(artist, album);
+        } catch (IOException | InterruptedException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("Album info lookup failed: " + artist + " - " + album, e);
+        }
+        // NO_COVER - только если Last.fm ответил, что изображения нет
+        String url = albumInfo.getCoverUrl() != null && !albumInfo.getCoverUrl().isEmpty()
+                ? albumInfo.getCoverUrl()
+                : NO_COVER;
+        synchronized (coverUrls) {
+            coverUrls.put(key, url);
+        }
+        return url.isEmpty() ? null : url;
+    }
+
+    /**
+     * Возвращает файл обложки с диска или скачивает его
+     *
+     * @return байты изображения или null, если обложки нет
+     */
+    public byte[] getCover(String artist, String album) throws IOException, InterruptedException {
+        String url = getCoverUrl(artist, album);
+        if (url == null) {
+            return null;
+        }
+
+        Path file = directory.resolve(sha1(url) + ".img");
+        byte[] cached = readFromDisk(file);
+        if (cached != null) {
+            diskHits.incrementAndGet();
+            return cached;
+        }
+
+        byte[] image = download(url);
+        writeToDisk(file, image);
+        return image;
+    }
+
+    public void logStats() {
+        logger.info("Album covers: {} disk hits, {} downloads", diskHits.get(), downloaded.get());
+    }
+
+    private byte[] download(String url) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(url))
+                .timeout(Duration.ofSeconds(20))
+                .GET()
+                .build();
+
+        downloads.acquire();
+        try {
+            HttpResponse<byte[]> response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+            if (response.statusCode() != 200) {
+                throw new IOException("Album cover download failed: " + response.statusCode() + " " + url);
+            }
+            downloaded.incrementAndGet();
+            return response.body();
+        } finally {
+            downloads.release();
+        }
+    }
+
+    private byte[] readFromDisk(Path file) {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try {
+            byte[] image = Files.readAllBytes(file);
+            // Время изменения - время последнего использования, по нему чистится кэш
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            return image;
+        } catch (IOException e) {
+            logger.debug("Failed to read album cover file: {}", file, e);
+            return null;
+        }
+    }
+
+    private void writeToDisk(Path file, byte[] image) {
+        try {
+            // Пишем во временный файл, чтобы читатель не увидел частично записанное изображение
+            Path temp = Files.createTempFile(directory, "cover", ".tmp");
+            Files.write(temp, image);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.debug("Failed to write album cover file: {}", file, e);
+        }
+    }
+
+    // Удаляет давно не использованные обложки, пока кэш не уложится в maxDiskBytes
+    private void trimDiskCache() {
+        List<Path> files = new ArrayList<>();
+        long totalBytes = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path file : stream) {
+                files.add(file);
+                totalBytes += Files.size(file);
+            }
+            if (totalBytes <= maxDiskBytes) {
+                return;
+            }
+
+            files.sort(Comparator.comparingLong(AlbumCoverStore::lastModified));
+            int removed = 0;
+            for (Path file : files) {
+                if (totalBytes <= maxDiskBytes) {
+                    break;
+                }
+                long size = Files.size(file);
+                Files.deleteIfExists(file);
+                totalBytes -= size;
+                removed++;
+            }
+            logger.info("Removed {} least recently used album covers", removed);
+        } catch (IOException e) {
+            logger.warn("Failed to clean up album cover disk cache", e);
+        }
+    }
+
+    private static long lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static String sha1(String value) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(value.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,317 @@
+package com.github.everolfe.api;
+
+import com.github.everolfe.api.LastFmService.AlbumInfo;
+import com.github.everolfe.api.LastFmService.TrackInfo;
+import com.github.everolfe.config.Config;
+import com.github.everolfe.util.Futures;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Неблокирующий вариант LastFmService на HttpClient.sendAsync.
+ * Каждый метод возвращает CompletableFuture и не занимает поток на время запроса.
+ * Отмена или таймаут результата отменяет ещё не начатые вложенные запросы
+ * (уже идущая загрузка дозавершается в кэш). При ошибке, как и в синхронной
+ * версии, возвращаются мок-данные; исключение - track.getInfo: при его ошибке
+ * трек остаётся с базовой информацией.
+ */
+public class AsyncLastFmService {
+    private static final Logger logger = LoggerFactory.getLogger(AsyncLastFmService.class);
+
+    /** Сколько первых результатов поиска дополняются сведениями об альбоме */
+    public static final int ENHANCE_LIMIT = 50;
+    private static final int POPULAR_TRACKS_LIMIT = 50;
+    // artist.gettoptracks запрашивается с limit=5, поэтому 10 артистов дают до 50 треков
+    private static final int POPULAR_ARTISTS_FANOUT = POPULAR_TRACKS_LIMIT / 5;
+
+    private final HttpClient httpClient;
+    private final LastFmService lastFmService;
+    private final LastFmResponseCache responseCache;
+    private final LastFmRateLimiter rateLimiter;
+
+    public AsyncLastFmService(HttpClient httpClient, LastFmService lastFmService,
+                              LastFmResponseCache responseCache, LastFmRateLimiter rateLimiter) {
+        this.httpClient = httpClient;
+        this.lastFmService = lastFmService;
+        this.responseCache = responseCache;
+        this.rateLimiter = rateLimiter;
+    }
+
+    public CompletableFuture<List<TrackInfo>> searchTracks(String query) {
+        if (Config.isApiMockEnabled()) {
+            return CompletableFuture.completedFuture(lastFmService.getMockTracks(query));
+        }
+
+        CompletableFuture<List<TrackInfo>> tracks = Futures.compose(
+                fetch("track.search", LastFmService.params("track", query)),
+                body -> enhanceTracksWithAlbumInfo(lastFmService.parseSearchResults(body)));
+
+        return Futures.recover(tracks, error -> {
+            logger.error("Error calling Last.fm API", error);
+            return lastFmService.getMockTracks(query);
+        });
+    }
+
+    /**
+     * Только track.search, без дозагрузки альбомов: их можно дополнить по одному
+     * через enhanceWithAlbumInfo, не задерживая показ результатов
+     */
+    public CompletableFuture<List<TrackInfo>> searchTracksBasic(String query) {
+        if (Config.isApiMockEnabled()) {
+            return CompletableFuture.completedFuture(lastFmService.getMockTracks(query));
+        }
+
+        CompletableFuture<List<TrackInfo>> tracks = Futures.map(
+                fetch("track.search", LastFmService.params("track", query)),
+                lastFmService::parseSearchResults);
+
+        return Futures.recover(tracks, error -> {
+            logger.error("Error calling Last.fm API", error);
+            return lastFmService.getMockTracks(query);
+        });
+    }
+
+    /**
+     * Дополняет трек альбомом, длительностью и жанрами из track.getInfo, если альбом не известен.
+     * Если Last.fm недоступен, возвращается исходный трек без изменений
+     */
+    public CompletableFuture<TrackInfo> enhanceWithAlbumInfo(TrackInfo track) {
+        if (!LastFmService.needsAlbumDetails(track)) {
+            return CompletableFuture.completedFuture(track);
+        }
+        return Futures.map(getTrackInfo(track.getArtist(), track.getName()), info -> {
+            LastFmService.applyAlbumDetails(track, info);
+            return track;
+        });
+    }
+
+    public CompletableFuture<List<TrackInfo>> searchTracksWithDetails(String query, int limit) {
+        if (Config.isApiMockEnabled()) {
+            return CompletableFuture.completedFuture(lastFmService.getMockTracks(query));
+        }
+
+        CompletableFuture<List<TrackInfo>> tracks = Futures.compose(
+                fetch("track.search", LastFmService.params("track", query, "limit", String.valueOf(limit))),
+                body -> {
+                    List<CompletableFuture<TrackInfo>> details = new ArrayList<>();
+                    for (TrackInfo track : lastFmService.parseSearchResults(body)) {
+                        if (details.size() >= limit) break;
+                        // Если полная информация недоступна, оставляем базовую
+                        details.add(Futures.map(getTrackInfo(track.getArtist(), track.getName()),
+                                fullInfo -> fullInfo != null ? fullInfo : track));
+                    }
+                    return Futures.allAsList(details);
+                });
+
+        return Futures.recover(tracks, error -> {
+            logger.error("Error in searchTracksWithDetails for: {}", query, error);
+            return lastFmService.getMockTracks(query);
+        });
+    }
+
+    /**
+     * Полная информация о треке или null, если Last.fm недоступен: вызывающие
+     * в этом случае оставляют базовую информацию, а не подставляют мок-данные
+     */
+    public CompletableFuture<TrackInfo> getTrackInfo(String artist, String track) {
+        if (Config.isApiMockEnabled()) {
+            return CompletableFuture.completedFuture(lastFmService.getMockTrackInfo(artist, track));
+        }
+
+        CompletableFuture<TrackInfo> info = Futures.map(
+                fetch("track.getInfo", LastFmService.params("artist", artist, "track", track)),
+                lastFmService::parseTrackInfo);
+
+        return Futures.recover(info, error -> {
+            logger.error("Error getting track info from Last.fm: {} - {}", artist, track, error);
+            return null;
+        });
+    }
+
+    public CompletableFuture<List<TrackInfo>> getGlobalTopTracks() {
+        if (Config.isApiMockEnabled()) {
+            return CompletableFuture.completedFuture(limit(lastFmService.getMockPopularTracks(), 20));
+        }
+
+        CompletableFuture<List<TrackInfo>> tracks = Futures.compose(
+                fetch("chart.gettoptracks", LastFmService.params("limit", "30")),
+                body -> enhanceTracksWithAlbumInfo(limit(lastFmService.parseTopTracks(body), 20)));
+
+        return Futures.recover(tracks, error -> {
+            logger.error("Error getting global top tracks", error);
+            return limit(lastFmService.getMockPopularTracks(), 20);
+        });
+    }
+
+    /**
+     * Популярные треки топовых артистов: запросы по артистам выполняются параллельно
+     */
+    public CompletableFuture<List<TrackInfo>> getPopularTracks() {
+        if (Config.isApiMockEnabled()) {
+            return CompletableFuture.completedFuture(lastFmService.getMockPopularTracks());
+        }
+
+        CompletableFuture<List<String>> topArtists = Futures.recover(
+                Futures.map(fetch("chart.gettopartists", LastFmService.params("limit", "20")),
+                        body -> unchecked(() -> lastFmService.parseTopArtists(body))),
+                error -> {
+                    logger.error("Error getting top artists", error);
+                    return LastFmService.MOCK_TOP_ARTISTS;
+                });
+
+        CompletableFuture<List<TrackInfo>> tracks = Futures.compose(topArtists, artists -> {
+            List<CompletableFuture<List<TrackInfo>>> perArtist = artists.stream()
+                    .limit(POPULAR_ARTISTS_FANOUT)
+                    .map(this::getArtistTopTracks)
+                    .collect(Collectors.toList());
+
+            return Futures.map(Futures.allAsList(perArtist), results -> {
+                List<TrackInfo> popularTracks = new ArrayList<>();
+                for (List<TrackInfo> artistTracks : results) {
+                    popularTracks.addAll(artistTracks);
+                    // Ограничим количество треков для производительности
+                    if (popularTracks.size() >= POPULAR_TRACKS_LIMIT) break;
+                }
+                return popularTracks;
+            });
+        });
+
+        return Futures.recover(tracks, error -> {
+            logger.error("Error getting popular tracks", error);
+            return lastFmService.getMockPopularTracks();
+        });
+    }
+
+    public CompletableFuture<List<TrackInfo>> getSimilarTracks(String artist, String trackName, int limit) {
+        if (Config.isApiMockEnabled()) {
+            return CompletableFuture.completedFuture(limit(lastFmService.getMockSimilarTracks(artist, trackName), limit));
+        }
+
+        CompletableFuture<List<TrackInfo>> tracks = Futures.compose(
+                fetch("track.getSimilar", LastFmService.params("artist", artist, "track", trackName,
+                        "limit", String.valueOf(Math.max(limit, 10)))),
+                body -> {
+                    List<CompletableFuture<TrackInfo>> details = new ArrayList<>();
+                    for (TrackInfo track : unchecked(() -> lastFmService.parseSimilarTracks(body, limit))) {
+                        details.add(Futures.map(getTrackInfo(track.getArtist(), track.getName()), fullInfo -> {
+                            LastFmService.applySimilarDetails(track, fullInfo);
+                            return track;
+                        }));
+                    }
+                    return Futures.allAsList(details);
+                });
+
+        return Futures.recover(tracks, error -> {
+            logger.error("Error getting similar tracks from Last.fm for: {} - {}", artist, trackName, error);
+            return limit(lastFmService.getMockSimilarTracks(artist, trackName), limit);
+        });
+    }
+
+    public CompletableFuture<List<AlbumInfo>> searchAlbums(String query) {
+        if (Config.isApiMockEnabled()) {
+            return CompletableFuture.completedFuture(lastFmService.getMockAlbums(query));
+        }
+
+        CompletableFuture<List<AlbumInfo>> albums = Futures.map(
+                fetch("album.search", LastFmService.params("album", query)),
+                lastFmService::parseAlbumSearchResults);
+
+        return Futures.recover(albums, error -> {
+            logger.error("Error searching albums from Last.fm: {}", query, error);
+            return lastFmService.getMockAlbums(query);
+        });
+    }
+
+    public CompletableFuture<AlbumInfo> getAlbumInfo(String artist, String album) {
+        if (Config.isApiMockEnabled()) {
+            return CompletableFuture.completedFuture(lastFmService.getMockAlbumInfo(artist, album));
+        }
+
+        CompletableFuture<AlbumInfo> info = Futures.map(
+                fetch("album.getInfo", LastFmService.params("artist", artist, "album", album)),
+                lastFmService::parseAlbumInfo);
+
+        return Futures.recover(info, error -> {
+            logger.error("Error getting album info from Last.fm: {} - {}", artist, album, error);
+            return lastFmService.getMockAlbumInfo(artist, album);
+        });
+    }
+
+    private CompletableFuture<List<TrackInfo>> getArtistTopTracks(String artist) {
+        CompletableFuture<List<TrackInfo>> tracks = Futures.compose(
+                fetch("artist.gettoptracks", LastFmService.params("artist", artist, "limit", "5")),
+                body -> {
+                    List<CompletableFuture<TrackInfo>> details = new ArrayList<>();
+                    for (TrackInfo track : unchecked(() -> lastFmService.parseArtistTopTracks(body))) {
+                        CompletableFuture<TrackInfo> fullInfo = LastFmService.needsTopTrackDetails(track)
+                                ? getTrackInfo(track.getArtist(), track.getName())
+                                : CompletableFuture.completedFuture(null);
+                        details.add(Futures.map(fullInfo, info -> {
+                            LastFmService.applyTopTrackDetails(track, info);
+                            return track;
+                        }));
+                    }
+                    return Futures.allAsList(details);
+                });
+
+        return Futures.recover(tracks, error -> {
+            logger.error("Error getting top tracks for artist: {}", artist, error);
+            return new ArrayList<>();
+        });
+    }
+
+    private CompletableFuture<List<TrackInfo>> enhanceTracksWithAlbumInfo(List<TrackInfo> tracks) {
+        List<CompletableFuture<TrackInfo>> enhanced = new ArrayList<>();
+        for (TrackInfo track : tracks.subList(0, Math.min(tracks.size(), ENHANCE_LIMIT))) {
+            // Пропускаем треки, у которых уже есть информация об альбоме
+            if (LastFmService.needsAlbumDetails(track)) {
+                enhanced.add(enhanceWithAlbumInfo(track));
+            }
+        }
+        return Futures.map(Futures.allAsList(enhanced), ignored -> tracks);
+    }
+
+    /**
+     * Запрос через общий кэш и ограничитель частоты. Таймаут отсчитывается с момента
+     * получения токена и покрывает только сам обмен; при таймауте HTTP-обмен отменяется.
+     */
+    private CompletableFuture<String> fetch(String method, Map<String, String> params) {
+        return responseCache.getAsync(method, params, () -> {
+            CompletableFuture<HttpResponse<String>> exchange = Futures.compose(rateLimiter.acquire(), ignored -> {
+                CompletableFuture<HttpResponse<String>> send = httpClient.sendAsync(
+                        lastFmService.buildRequest(method, params), HttpResponse.BodyHandlers.ofString());
+                // Обёртка нужна, чтобы таймаут отменил исходный sendAsync
+                return Futures.map(send, response -> response)
+                        .orTimeout(Config.getLastFmRequestTimeoutSeconds(), TimeUnit.SECONDS);
+            });
+            return Futures.map(exchange, response -> unchecked(() -> lastFmService.checkResponse(method, response)));
+        });
+    }
+
+    private static <T> List<T> limit(List<T> items, int limit) {
+        return items.stream().limit(limit).collect(Collectors.toList());
+    }
+
+    private static <T> T unchecked(CheckedSupplier<T> supplier) {
+        try {
+            return supplier.get();
+        } catch (Exception e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    @FunctionalInterface
+    private interface CheckedSupplier<T> {
+        T get() throws Exception;
+    }
+}
@@ -0,0 +1,114 @@
+package com.github.everolfe.api;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Общий для всех запросов к Last.fm ограничитель частоты (token bucket).
+ * Разрешение не блокирует поток: если токенов нет, future завершается
+ * планировщиком в момент, когда токен освободится.
+ */
+public class LastFmRateLimiter {
+    private static final Logger logger = LoggerFactory.getLogger(LastFmRateLimiter.class);
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final double permitsPerSecond;
+    private final double burst;
+    private final ScheduledExecutorService scheduler;
+
+    // Отрицательное значение - токены, уже обещанные ожидающим запросам
+    private double tokens;
+    private long lastRefillNanos;
+
+    private final AtomicLong acquired = new AtomicLong();
+    private final AtomicLong delayed = new AtomicLong();
+    private final AtomicLong totalDelayNanos = new AtomicLong();
+    private final AtomicLong maxDelayNanos = new AtomicLong();
+
+    public LastFmRateLimiter(double permitsPerSecond, int burst, ScheduledExecutorService scheduler) {
+        if (permitsPerSecond <= 0 || burst <= 0) {
+            throw new IllegalArgumentException("Rate and burst must be positive: " + permitsPerSecond + ", " + burst);
+        }
+        this.permitsPerSecond = permitsPerSecond;
+        this.burst = burst;
+        this.scheduler = scheduler;
+        this.tokens = burst;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    /**
+     * Запрашивает разрешение на один запрос к API.
+     * Если ожидающее разрешение отменено или завершилось ошибкой (например, запрос отменили
+     * или истёк его таймаут), зарезервированный токен возвращается и не задерживает следующие запросы.
+     */
+    public CompletableFuture<Void> acquire() {
+        long delayNanos = reserve();
+        acquired.incrementAndGet();
+        if (delayNanos == 0) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        delayed.incrementAndGet();
+        totalDelayNanos.addAndGet(delayNanos);
+        maxDelayNanos.accumulateAndGet(delayNanos, Math::max);
+
+        CompletableFuture<Void> permit = new CompletableFuture<>();
+        permit.whenComplete((ignored, error) -> {
+            if (error != null) {
+                refund();
+            }
+        });
+        try {
+            scheduler.schedule(() -> permit.complete(null), delayNanos, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            permit.completeExceptionally(e);
+        }
+        return permit;
+    }
+
+    public long getAcquiredCount() {
+        return acquired.get();
+    }
+
+    public long getDelayedCount() {
+        return delayed.get();
+    }
+
+    public double getAverageDelayMillis() {
+        long count = delayed.get();
+        return count == 0 ? 0.0 : totalDelayNanos.get() / (double) count / 1_000_000.0;
+    }
+
+    public double getMaxDelayMillis() {
+        return maxDelayNanos.get() / 1_000_000.0;
+    }
+
+    public void logStats() {
+        logger.info("Last.fm rate limiter: {} requests, {} queued, avg delay {} ms, max delay {} ms",
+                getAcquiredCount(), getDelayedCount(),
+                String.format("%.1f", getAverageDelayMillis()), String.format("%.1f", getMaxDelayMillis()));
+    }
+
+    private synchronized void refund() {
+        tokens = Math.min(burst, tokens + 1);
+    }
+
+    // Резервирует токен и возвращает время ожидания до его появления
+    private synchronized long reserve() {
+        long now = System.nanoTime();
+        tokens = Math.min(burst, tokens + (now - lastRefillNanos) * permitsPerSecond / NANOS_PER_SECOND);
+        lastRefillNanos = now;
+
+        tokens -= 1;
+        if (tokens >= 0) {
+            return 0;
+        }
+        return (long) Math.ceil(-tokens * NANOS_PER_SECOND / permitsPerSecond);
+    }
+}
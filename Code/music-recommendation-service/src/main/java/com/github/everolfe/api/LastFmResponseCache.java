@@ -0,0 +1,349 @@
+package com.github.everolfe.api;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Двухуровневый кэш ответов Last.fm: LRU в памяти и файлы на диске.
+ * Ключ - метод API и нормализованные параметры, срок жизни задаётся для каждого метода.
+ * Устаревший ответ отдаётся сразу, а обновление выполняется в фоне (stale-while-revalidate).
+ */
+public class LastFmResponseCache {
+    private static final Logger logger = LoggerFactory.getLogger(LastFmResponseCache.class);
+
+    private static final Duration DEFAULT_TTL = Duration.ofHours(1);
+    private static final Map<String, Duration> TTL_BY_METHOD = new HashMap<>();
+
+    static {
+        // Чарты меняются часто, метаданные треков и альбомов - почти никогда
+        TTL_BY_METHOD.put("chart.gettoptracks", Duration.ofMinutes(30));
+        TTL_BY_METHOD.put("chart.gettopartists", Duration.ofMinutes(30));
+        TTL_BY_METHOD.put("artist.gettoptracks", Duration.ofHours(6));
+        TTL_BY_METHOD.put("track.search", Duration.ofHours(1));
+        TTL_BY_METHOD.put("album.search", Duration.ofHours(1));
+        TTL_BY_METHOD.put("track.getsimilar", Duration.ofDays(1));
+        TTL_BY_METHOD.put("track.getinfo", Duration.ofDays(7));
+        TTL_BY_METHOD.put("album.getinfo", Duration.ofDays(7));
+    }
+
+    private final Map<String, CachedResponse> memory;
+    private final Path directory;
+    private final Duration maxStale;
+    private final Map<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+    private final ExecutorService refreshExecutor;
+
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong staleHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public LastFmResponseCache(Path directory, int maxMemoryEntries, Duration maxStale,
+                               ExecutorService refreshExecutor) {
+        this.directory = directory;
+        this.maxStale = maxStale;
+        this.memory = new LinkedHashMap<String, CachedResponse>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedResponse> eldest) {
+                return size() > maxMemoryEntries;
+            }
+        };
+        this.refreshExecutor = refreshExecutor;
+
+        try {
+            Files.createDirectories(directory);
+            refreshExecutor.execute(this::evictExpiredFiles);
+        } catch (IOException | RejectedExecutionException e) {
+            logger.warn("Last.fm disk cache is not available: {}", directory, e);
+        }
+    }
+
+    /**
+     * Возвращает ответ из кэша или загружает его через loader.
+     * Ответ старше TTL, но моложе maxStale, отдаётся сразу и обновляется в фоне.
+     *
+     * @param method метод API (например, track.getInfo)
+     * @param params параметры запроса без api_key и format
+     * @param loader загрузка ответа из сети; исключение означает, что ответ не кэшируется
+     */
+    public String get(String method, Map<String, String> params, Callable<String> loader) throws Exception {
+        String key = key(method, params);
+        CachedResponse entry = lookup(key, method);
+        if (entry != null) {
+            if (entry.isStale) {
+                load(key, () -> CompletableFuture.supplyAsync(() -> callUnchecked(loader), refreshExecutor));
+            }
+            return entry.body;
+        }
+
+        misses.incrementAndGet();
+        CompletableFuture<String> pending = new CompletableFuture<>();
+        CompletableFuture<String> existing = inFlight.putIfAbsent(key, pending);
+        if (existing != null) {
+            // Тот же ответ уже загружается - ждём его вместо повторного запроса
+            return await(existing);
+        }
+        try {
+            String body = loader.call();
+            store(key, body);
+            pending.complete(body);
+            return body;
+        } catch (Exception e) {
+            pending.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, pending);
+        }
+    }
+
+    /**
+     * Асинхронный вариант get: попадание в кэш возвращает уже завершённый future.
+     * Одновременные промахи по одному ключу разделяют один запрос к сети.
+     */
+    public CompletableFuture<String> getAsync(String method, Map<String, String> params,
+                                              Supplier<CompletableFuture<String>> loader) {
+        String key = key(method, params);
+        CachedResponse entry = lookup(key, method);
+        if (entry != null) {
+            if (entry.isStale) {
+                load(key, loader);
+            }
+            return CompletableFuture.completedFuture(entry.body);
+        }
+
+        misses.incrementAndGet();
+        return load(key, loader);
+    }
+
+    public long getHitCount() {
+        return memoryHits.get() + diskHits.get();
+    }
+
+    public long getStaleHitCount() {
+        return staleHits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public void logStats() {
+        logger.info("Last.fm cache: {} memory hits, {} disk hits, {} stale hits, {} misses",
+                memoryHits.get(), diskHits.get(), staleHits.get(), misses.get());
+    }
+
+    // Возвращает свежую или допустимо устаревшую запись (с пометкой isStale) либо null
+    private CachedResponse lookup(String key, String method) {
+        CachedResponse entry = getFromMemory(key);
+        boolean fromMemory = entry != null;
+        if (entry == null) {
+            entry = readFromDisk(key);
+            if (entry != null) {
+                putToMemory(key, entry);
+            }
+        }
+        if (entry == null) {
+            return null;
+        }
+
+        long age = System.currentTimeMillis() - entry.fetchedAt;
+        long ttl = ttlFor(method).toMillis();
+        if (age <= ttl) {
+            (fromMemory ? memoryHits : diskHits).incrementAndGet();
+            return entry;
+        }
+        if (age <= ttl + maxStale.toMillis()) {
+            staleHits.incrementAndGet();
+            return entry.stale();
+        }
+        return null;
+    }
+
+    // Запускает загрузку ключа, если она ещё не идёт; вызывающий получает копию общего future
+    private CompletableFuture<String> load(String key, Supplier<CompletableFuture<String>> loader) {
+        CompletableFuture<String> pending = new CompletableFuture<>();
+        CompletableFuture<String> existing = inFlight.putIfAbsent(key, pending);
+        if (existing != null) {
+            return existing.copy();
+        }
+
+        try {
+            loader.get().whenComplete((body, error) -> {
+                if (error == null) {
+                    store(key, body);
+                }
+                inFlight.remove(key, pending);
+                if (error == null) {
+                    pending.complete(body);
+                } else {
+                    logger.debug("Failed to load Last.fm response: {}", key, error);
+                    pending.completeExceptionally(error);
+                }
+            });
+        } catch (RuntimeException e) {
+            // Например, пул потоков уже остановлен при выходе из приложения
+            inFlight.remove(key, pending);
+            pending.completeExceptionally(e);
+        }
+        return pending.copy();
+    }
+
+    private static String await(CompletableFuture<String> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof Exception ? (Exception) cause : e;
+        }
+    }
+
+    private static String callUnchecked(Callable<String> loader) {
+        try {
+            return loader.call();
+        } catch (Exception e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    private void store(String key, String body) {
+        CachedResponse entry = new CachedResponse(body, System.currentTimeMillis());
+        putToMemory(key, entry);
+        writeToDisk(key, entry);
+    }
+
+    private CachedResponse getFromMemory(String key) {
+        synchronized (memory) {
+            return memory.get(key);
+        }
+    }
+
+    private void putToMemory(String key, CachedResponse entry) {
+        synchronized (memory) {
+            memory.put(key, entry);
+        }
+    }
+
+    // Формат файла: первая строка - время загрузки в мс, далее тело ответа
+    private CachedResponse readFromDisk(String key) {
+        Path file = fileFor(key);
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try {
+            String content = Files.readString(file, StandardCharsets.UTF_8);
+            int newline = content.indexOf('\n');
+            if (newline < 0) {
+                return null;
+            }
+            long fetchedAt = Long.parseLong(content.substring(0, newline));
+            return new CachedResponse(content.substring(newline + 1), fetchedAt);
+        } catch (IOException | NumberFormatException e) {
+            logger.debug("Corrupted Last.fm cache file: {}", file, e);
+            return null;
+        }
+    }
+
+    private void writeToDisk(String key, CachedResponse entry) {
+        Path file = fileFor(key);
+        try {
+            // Пишем во временный файл, чтобы читатель не увидел частично записанный ответ
+            Path temp = Files.createTempFile(directory, "entry", ".tmp");
+            Files.writeString(temp, entry.fetchedAt + "\n" + entry.body, StandardCharsets.UTF_8);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.debug("Failed to write Last.fm cache file: {}", file, e);
+        }
+    }
+
+    private void evictExpiredFiles() {
+        // Файл старше максимального TTL и допустимой устарелости уже никогда не будет отдан
+        Duration maxTtl = TTL_BY_METHOD.values().stream().max(Duration::compareTo).orElse(DEFAULT_TTL);
+        long threshold = System.currentTimeMillis() - maxTtl.toMillis() - maxStale.toMillis();
+        int removed = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                if (Files.getLastModifiedTime(file).toMillis() < threshold) {
+                    Files.deleteIfExists(file);
+                    removed++;
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to clean up Last.fm disk cache", e);
+        }
+        if (removed > 0) {
+            logger.info("Removed {} expired Last.fm cache files", removed);
+        }
+    }
+
+    private Path fileFor(String key) {
+        return directory.resolve(sha1(key) + ".json");
+    }
+
+    private static Duration ttlFor(String method) {
+        return TTL_BY_METHOD.getOrDefault(method.toLowerCase(), DEFAULT_TTL);
+    }
+
+    // Параметры сортируются, значения приводятся к нижнему регистру: Last.fm к регистру не чувствителен
+    private static String key(String method, Map<String, String> params) {
+        StringBuilder key = new StringBuilder(method.toLowerCase());
+        params.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .forEach(param -> key.append('&').append(param.getKey()).append('=')
+                        .append(param.getValue() == null ? "" : param.getValue().trim().toLowerCase()));
+        return key.toString();
+    }
+
+    private static String sha1(String value) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(value.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 is not available", e);
+        }
+    }
+
+    private static class CachedResponse {
+        private final String body;
+        private final long fetchedAt;
+        private final boolean isStale;
+
+        CachedResponse(String body, long fetchedAt) {
+            this(body, fetchedAt, false);
+        }
+
+        private CachedResponse(String body, long fetchedAt, boolean isStale) {
+            this.body = body;
+            this.fetchedAt = fetchedAt;
+            this.isStale = isStale;
+        }
+
+        CachedResponse stale() {
+            return new CachedResponse(body, fetchedAt, true);
+        }
+    }
+}
@@ -4,69 +4,118 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.everolfe.config.Config;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.stream.Collectors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.net.URI;
 import java.net.URLEncoder;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 public class LastFmService {
     private static final Logger logger = LoggerFactory.getLogger(LastFmService.class);
+
+    static final List<String> MOCK_TOP_ARTISTS = List.of(
+            "The Weeknd", "Taylor Swift", "Bad Bunny", "Drake", "Ed Sheeran",
+            "Billie Eilish", "Harry Styles", "Dua Lipa", "Ariana Grande", "Post Malone",
+            "Kanye West", "Coldplay", "Maroon 5", "Bruno Mars", "Imagine Dragons",
+            "Metallica", "Queen", "The Beatles", "Michael Jackson", "Madonna"
+    );
     private final HttpClient httpClient;
     private final ObjectMapper objectMapper;
     private final String apiKey;
     private final String baseUrl;
     private final ExecutorService executorService;
+    private final LastFmResponseCache responseCache;
+    private final LastFmRateLimiter rateLimiter;
 
-    public LastFmService() {
-        this.httpClient = HttpClient.newHttpClient();
+    public LastFmService(HttpClient httpClient, ExecutorService executorService,
+                         LastFmResponseCache responseCache, LastFmRateLimiter rateLimiter) {
+        this.httpClient = httpClient;
         this.objectMapper = new ObjectMapper();
         this.apiKey = Config.getLastFmApiKey();
         this.baseUrl = Config.getLastFmBaseUrl();
-        this.executorService = Executors.newFixedThreadPool(3); // Для параллельных запросов
+        // Отдельный пул для подзапросов: задачи в нём сами ничего не ждут, поэтому он не исчерпывается
+        this.executorService = executorService;
+        this.responseCache = responseCache;
+        this.rateLimiter = rateLimiter;
     }
 
-    public List<TrackInfo> searchTracks(String query) {
-        if (Config.isApiMockEnabled()) {
-            return getMockTracks(query);
+    /**
+     * Выполняет запрос к Last.fm через кэш ответов.
+     * Ответы с ошибкой не кэшируются и приводят к исключению.
+     * Сетевые запросы проходят через общий ограничитель частоты, ответы из кэша - нет.
+     */
+    private String fetch(String method, Map<String, String> params) throws Exception {
+        return responseCache.get(method, params, () -> {
+            rateLimiter.acquire().get();
+            HttpResponse<String> response = httpClient.send(buildRequest(method, params),
+                    HttpResponse.BodyHandlers.ofString());
+            return checkResponse(method, response);
+        });
+    }
+
+    HttpRequest buildRequest(String method, Map<String, String> params) {
+        StringBuilder url = new StringBuilder(baseUrl).append("?method=").append(method);
+        for (Map.Entry<String, String> param : params.entrySet()) {
+            url.append('&').append(param.getKey()).append('=')
+                    .append(URLEncoder.encode(param.getValue(), StandardCharsets.UTF_8));
         }
+        url.append("&api_key=").append(apiKey).append("&format=json");
 
-        try {
-            String encodedQuery = URLEncoder.encode(query, StandardCharsets.UTF_8);
-            String url = String.format("%s?method=track.search&track=%s&api_key=%s&format=json",
-                    baseUrl, encodedQuery, apiKey);
+        return HttpRequest.newBuilder()
+                .uri(URI.create(url.toString()))
+                .timeout(Duration.ofSeconds(Config.getLastFmRequestTimeoutSeconds()))
+                .GET()
+                .build();
+    }
 
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(url))
-                    .GET()
-                    .build();
+    String checkResponse(String method, HttpResponse<String> response) throws IOException {
+        if (response.statusCode() != 200) {
+            throw new IOException("Last.fm API error for " + method + ": " + response.statusCode());
+        }
+        // Last.fm сообщает о части ошибок (например, "трек не найден") со статусом 200
+        JsonNode error = objectMapper.readTree(response.body()).path("error");
+        if (!error.isMissingNode()) {
+            throw new IOException("Last.fm API error for " + method + ": " + error.asText());
+        }
+        return response.body();
+    }
 
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+    static Map<String, String> params(String... keysAndValues) {
+        Map<String, String> params = new LinkedHashMap<>();
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            params.put(keysAndValues[i], keysAndValues[i + 1]);
+        }
+        return params;
+    }
 
-            if (response.statusCode() == 200) {
-                List<TrackInfo> tracks = parseSearchResults(response.body());
+    public List<TrackInfo> searchTracks(String query) {
+        if (Config.isApiMockEnabled()) {
+            return getMockTracks(query);
+        }
 
-                // Для первых нескольких треков получаем дополнительную информацию об альбомах
-                if (!tracks.isEmpty()) {
-                    enhanceTracksWithAlbumInfo(tracks);
-                }
+        try {
+            String body = fetch("track.search", params("track", query));
+            List<TrackInfo> tracks = parseSearchResults(body);
 
-                return tracks;
-            } else {
-                logger.error("Last.fm API error: {}", response.statusCode());
-                return getMockTracks(query);
+            // Для первых нескольких треков получаем дополнительную информацию об альбомах
+            if (!tracks.isEmpty()) {
+                enhanceTracksWithAlbumInfo(tracks);
             }
+
+            return tracks;
         } catch (Exception e) {
             logger.error("Error calling Last.fm API", e);
             return getMockTracks(query);
@@ -85,25 +134,15 @@ public class LastFmService {
             for (int i = 0; i < limit; i++) {
                 TrackInfo track = tracks.get(i);
                 // Пропускаем треки, у которых уже есть информация об альбоме
-                if (track.getAlbum() == null || track.getAlbum().isEmpty()) {
+                if (needsAlbumDetails(track)) {
                     CompletableFuture<Void> future = CompletableFuture.runAsync(() -> {
                         try {
-                            TrackInfo enhancedInfo = getTrackInfo(track.getArtist(), track.getName());
-                            if (enhancedInfo != null && enhancedInfo.getAlbum() != null) {
-                                track.setAlbum(enhancedInfo.getAlbum());
-                                track.setDuration(enhancedInfo.getDuration());
-                                if (enhancedInfo.getGenres() != null && !enhancedInfo.getGenres().isEmpty()) {
-                                    track.setGenres(enhancedInfo.getGenres());
-                                }
-                            }
+                            applyAlbumDetails(track, getTrackInfo(track.getArtist(), track.getName()));
                         } catch (Exception e) {
                             logger.debug("Error enhancing track info for: {} - {}", track.getArtist(), track.getName());
                         }
                     }, executorService);
                     futures.add(future);
-
-                    // Небольшая задержка между запросами чтобы не перегружать API
-                    Thread.sleep(100);
                 }
             }
 
@@ -115,6 +154,20 @@ public class LastFmService {
         }
     }
 
+    public static boolean needsAlbumDetails(TrackInfo track) {
+        return track.getAlbum() == null || track.getAlbum().isEmpty();
+    }
+
+    static void applyAlbumDetails(TrackInfo track, TrackInfo enhancedInfo) {
+        if (enhancedInfo != null && enhancedInfo.getAlbum() != null) {
+            track.setAlbum(enhancedInfo.getAlbum());
+            track.setDuration(enhancedInfo.getDuration());
+            if (enhancedInfo.getGenres() != null && !enhancedInfo.getGenres().isEmpty()) {
+                track.setGenres(enhancedInfo.getGenres());
+            }
+        }
+    }
+
     /**
      * Альтернативный метод поиска с получением полной информации
      */
@@ -127,41 +180,26 @@ public class LastFmService {
             List<TrackInfo> tracks = new ArrayList<>();
 
             // Сначала получаем базовые результаты поиска
-            String encodedQuery = URLEncoder.encode(query, StandardCharsets.UTF_8);
-            String searchUrl = String.format("%s?method=track.search&track=%s&api_key=%s&format=json&limit=%d",
-                    baseUrl, encodedQuery, apiKey, limit);
-
-            HttpRequest searchRequest = HttpRequest.newBuilder()
-                    .uri(URI.create(searchUrl))
-                    .GET()
-                    .build();
-
-            HttpResponse<String> searchResponse = httpClient.send(searchRequest, HttpResponse.BodyHandlers.ofString());
-
-            if (searchResponse.statusCode() == 200) {
-                List<TrackInfo> searchResults = parseSearchResults(searchResponse.body());
-
-                // Для каждого результата получаем полную информацию
-                for (TrackInfo track : searchResults) {
-                    try {
-                        TrackInfo fullInfo = getTrackInfo(track.getArtist(), track.getName());
-                        if (fullInfo != null) {
-                            tracks.add(fullInfo);
-                        } else {
-                            tracks.add(track); // Добавляем базовую информацию если полная недоступна
-                        }
+            String searchBody = fetch("track.search", params("track", query, "limit", String.valueOf(limit)));
+            List<TrackInfo> searchResults = parseSearchResults(searchBody);
 
-                        // Ограничиваем количество запросов
-                        if (tracks.size() >= limit) {
-                            break;
-                        }
+            // Для каждого результата получаем полную информацию
+            for (TrackInfo track : searchResults) {
+                try {
+                    TrackInfo fullInfo = getTrackInfo(track.getArtist(), track.getName());
+                    if (fullInfo != null) {
+                        tracks.add(fullInfo);
+                    } else {
+                        tracks.add(track); // Добавляем базовую информацию если полная недоступна
+                    }
 
-                        // Задержка между запросами
-                        Thread.sleep(200);
-                    } catch (Exception e) {
-                        logger.warn("Error getting full info for track: {} - {}", track.getArtist(), track.getName());
-                        tracks.add(track); // Добавляем базовую информацию в случае ошибки
+                    // Ограничиваем количество запросов
+                    if (tracks.size() >= limit) {
+                        break;
                     }
+                } catch (Exception e) {
+                    logger.warn("Error getting full info for track: {} - {}", track.getArtist(), track.getName());
+                    tracks.add(track); // Добавляем базовую информацию в случае ошибки
                 }
             }
 
@@ -178,25 +216,8 @@ public class LastFmService {
         }
 
         try {
-            String encodedArtist = URLEncoder.encode(artist, StandardCharsets.UTF_8);
-            String encodedTrack = URLEncoder.encode(track, StandardCharsets.UTF_8);
-
-            String url = String.format("%s?method=track.getInfo&artist=%s&track=%s&api_key=%s&format=json",
-                    baseUrl, encodedArtist, encodedTrack, apiKey);
-
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(url))
-                    .GET()
-                    .build();
-
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-
-            if (response.statusCode() == 200) {
-                return parseTrackInfo(response.body());
-            } else {
-                logger.error("Last.fm API error: {}", response.statusCode());
-                return getMockTrackInfo(artist, track);
-            }
+            String body = fetch("track.getInfo", params("artist", artist, "track", track));
+            return parseTrackInfo(body);
         } catch (Exception e) {
             logger.error("Error calling Last.fm API", e);
             return getMockTrackInfo(artist, track);
@@ -215,26 +236,13 @@ public class LastFmService {
 
         try {
             // 🔥 Запрашиваем больше популярных треков
-            String url = String.format("%s?method=chart.gettoptracks&api_key=%s&format=json&limit=30",
-                    baseUrl, apiKey); // Было 50, но 30 достаточно
+            String body = fetch("chart.gettoptracks", params("limit", "30")); // Было 50, но 30 достаточно
 
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(url))
-                    .GET()
-                    .build();
-
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-
-            if (response.statusCode() == 200) {
-                return parseTopTracks(response.body()).stream()
-                        .limit(20) // Ограничиваем для производительности
-                        .collect(Collectors.toList());
-            } else {
-                logger.error("Last.fm API error: {}", response.statusCode());
-                return getMockPopularTracks().stream()
-                        .limit(20)
-                        .collect(Collectors.toList());
-            }
+            List<TrackInfo> tracks = parseTopTracks(body).stream()
+                    .limit(20) // Ограничиваем для производительности
+                    .collect(Collectors.toList());
+            enhanceTracksWithAlbumInfo(tracks);
+            return tracks;
         } catch (Exception e) {
             logger.error("Error getting global top tracks", e);
             return getMockPopularTracks().stream()
@@ -267,9 +275,6 @@ public class LastFmService {
                     if (popularTracks.size() >= 50) {
                         break;
                     }
-
-                    // Небольшая задержка чтобы не перегружать API
-                    Thread.sleep(100);
                 } catch (Exception e) {
                     logger.warn("Error getting tracks for artist: {}", artist, e);
                 }
@@ -288,36 +293,25 @@ public class LastFmService {
     private List<String> getTopArtists() {
         List<String> artists = new ArrayList<>();
         try {
-            String url = String.format("%s?method=chart.gettopartists&api_key=%s&format=json&limit=20",
-                    baseUrl, apiKey);
-
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(url))
-                    .GET()
-                    .build();
-
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-
-            if (response.statusCode() == 200) {
-                JsonNode root = objectMapper.readTree(response.body());
-                JsonNode artistsNode = root.path("artists").path("artist");
-
-                for (JsonNode artistNode : artistsNode) {
-                    String artistName = artistNode.path("name").asText();
-                    if (!artistName.isEmpty()) {
-                        artists.add(artistName);
-                    }
-                }
-            }
+            String body = fetch("chart.gettopartists", params("limit", "20"));
+            artists.addAll(parseTopArtists(body));
         } catch (Exception e) {
             logger.error("Error getting top artists", e);
             // Возвращаем мок-данные если API не доступно
-            artists.addAll(List.of(
-                    "The Weeknd", "Taylor Swift", "Bad Bunny", "Drake", "Ed Sheeran",
-                    "Billie Eilish", "Harry Styles", "Dua Lipa", "Ariana Grande", "Post Malone",
-                    "Kanye West", "Coldplay", "Maroon 5", "Bruno Mars", "Imagine Dragons",
-                    "Metallica", "Queen", "The Beatles", "Michael Jackson", "Madonna"
-            ));
+            artists.addAll(MOCK_TOP_ARTISTS);
+        }
+        return artists;
+    }
+
+    List<String> parseTopArtists(String jsonResponse) throws IOException {
+        List<String> artists = new ArrayList<>();
+        JsonNode artistsNode = objectMapper.readTree(jsonResponse).path("artists").path("artist");
+
+        for (JsonNode artistNode : artistsNode) {
+            String artistName = artistNode.path("name").asText();
+            if (!artistName.isEmpty()) {
+                artists.add(artistName);
+            }
         }
         return artists;
     }
@@ -328,130 +322,128 @@ public class LastFmService {
     private List<TrackInfo> getArtistTopTracks(String artist) {
         List<TrackInfo> tracks = new ArrayList<>();
         try {
-            String encodedArtist = URLEncoder.encode(artist, StandardCharsets.UTF_8);
-            String url = String.format("%s?method=artist.gettoptracks&artist=%s&api_key=%s&format=json&limit=5",
-                    baseUrl, encodedArtist, apiKey);
+            String body = fetch("artist.gettoptracks", params("artist", artist, "limit", "5"));
+            List<CompletableFuture<TrackInfo>> futures = new ArrayList<>();
 
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(url))
-                    .GET()
-                    .build();
+            for (TrackInfo baseTrack : parseArtistTopTracks(body)) {
+                CompletableFuture<TrackInfo> future = CompletableFuture.supplyAsync(() -> {
+                    try {
+                        // Если альбом не найден в базовых данных, делаем дополнительный запрос
+                        TrackInfo fullTrackInfo = needsTopTrackDetails(baseTrack)
+                                ? getTrackInfo(baseTrack.getArtist(), baseTrack.getName())
+                                : null;
+                        applyTopTrackDetails(baseTrack, fullTrackInfo);
+                        return baseTrack;
+                    } catch (Exception e) {
+                        logger.error("Error processing track for artist: {}", artist, e);
+                        return null;
+                    }
+                }, executorService);
 
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+                futures.add(future);
+            }
 
-            if (response.statusCode() == 200) {
-                JsonNode root = objectMapper.readTree(response.body());
-                JsonNode tracksNode = root.path("toptracks").path("track");
+            // Ждем завершения всех асинхронных задач
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
 
-                List<CompletableFuture<TrackInfo>> futures = new ArrayList<>();
+            // Собираем результаты
+            for (CompletableFuture<TrackInfo> future : futures) {
+                try {
+                    TrackInfo track = future.get();
+                    if (track != null) {
+                        tracks.add(track);
+                    }
+                } catch (Exception e) {
+                    logger.error("Error getting track result", e);
+                }
+            }
 
-                for (JsonNode trackNode : tracksNode) {
-                    CompletableFuture<TrackInfo> future = CompletableFuture.supplyAsync(() -> {
-                        try {
-                            String trackName = trackNode.path("name").asText();
-                            String trackArtist = trackNode.path("artist").path("name").asText();
-
-                            // Сначала создаем базовый трек
-                            TrackInfo track = new TrackInfo();
-                            track.setName(trackName);
-                            track.setArtist(trackArtist);
-                            track.setUrl(trackNode.path("url").asText());
-
-                            // Получаем базовую информацию
-                            JsonNode durationNode = trackNode.path("duration");
-                            if (!durationNode.isMissingNode() && !durationNode.asText().isEmpty()) {
-                                try {
-                                    int durationMs = durationNode.asInt();
-                                    track.setDuration(durationMs / 1000);
-                                } catch (Exception e) {
-                                    track.setDuration(0);
-                                }
-                            }
-
-                            JsonNode playCountNode = trackNode.path("playcount");
-                            if (!playCountNode.isMissingNode() && !playCountNode.asText().isEmpty()) {
-                                try {
-                                    track.setPlayCount(playCountNode.asInt());
-                                } catch (Exception e) {
-                                    logger.debug("Error parsing playcount: {}", playCountNode.asText());
-                                }
-                            }
-
-                            // Пытаемся получить информацию об альбоме из базовых данных
-                            JsonNode albumNode = trackNode.path("album");
-                            if (!albumNode.isMissingNode() && !albumNode.isNull()) {
-                                String albumTitle = albumNode.path("title").asText();
-                                if (!albumTitle.isEmpty() && !albumTitle.equals("null")) {
-                                    track.setAlbum(albumTitle);
-                                }
-                            }
-
-                            // Если альбом не найден в базовых данных, делаем дополнительный запрос
-                            if (track.getAlbum() == null || track.getAlbum().isEmpty() || track.getAlbum().equals("Single")) {
-                                TrackInfo fullTrackInfo = getTrackInfo(trackArtist, trackName);
-                                if (fullTrackInfo != null && fullTrackInfo.getAlbum() != null &&
-                                        !fullTrackInfo.getAlbum().isEmpty() && !fullTrackInfo.getAlbum().equals("Single")) {
-                                    track.setAlbum(fullTrackInfo.getAlbum());
-                                    // Также обновляем другую информацию если нужно
-                                    if (track.getDuration() == null || track.getDuration() == 0) {
-                                        track.setDuration(fullTrackInfo.getDuration());
-                                    }
-                                    if (fullTrackInfo.getGenres() != null && !fullTrackInfo.getGenres().isEmpty()) {
-                                        track.setGenres(fullTrackInfo.getGenres());
-                                    }
-                                } else {
-                                    track.setAlbum("Single");
-                                }
-                            }
-
-                            // Если после всех попыток альбом не определен, ставим "Unknown Album"
-                            if (track.getAlbum() == null || track.getAlbum().isEmpty()) {
-                                track.setAlbum("Unknown Album");
-                            }
-
-                            logger.debug("Processed track: {} - {} (Album: {})",
-                                    track.getArtist(), track.getName(), track.getAlbum());
-
-                            return track;
-                        } catch (Exception e) {
-                            logger.error("Error processing track for artist: {}", artist, e);
-                            return null;
-                        }
-                    }, executorService);
+        } catch (Exception e) {
+            logger.error("Error getting top tracks for artist: {}", artist, e);
+        }
+        return tracks;
+    }
 
-                    futures.add(future);
+    /**
+     * Разбирает artist.gettoptracks: базовая информация без дополнительных запросов
+     */
+    List<TrackInfo> parseArtistTopTracks(String jsonResponse) throws IOException {
+        List<TrackInfo> tracks = new ArrayList<>();
+        JsonNode tracksNode = objectMapper.readTree(jsonResponse).path("toptracks").path("track");
 
-                    // Небольшая задержка между запросами чтобы не перегружать API
-                    try {
-                        Thread.sleep(200);
-                    } catch (InterruptedException ie) {
-                        Thread.currentThread().interrupt();
-                    }
-                }
+        for (JsonNode trackNode : tracksNode) {
+            TrackInfo track = new TrackInfo();
+            track.setName(trackNode.path("name").asText());
+            track.setArtist(trackNode.path("artist").path("name").asText());
+            track.setUrl(trackNode.path("url").asText());
 
-                // Ждем завершения всех асинхронных задач
-                CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+            // Получаем базовую информацию
+            JsonNode durationNode = trackNode.path("duration");
+            if (!durationNode.isMissingNode() && !durationNode.asText().isEmpty()) {
+                try {
+                    int durationMs = durationNode.asInt();
+                    track.setDuration(durationMs / 1000);
+                } catch (Exception e) {
+                    track.setDuration(0);
+                }
+            }
 
-                // Собираем результаты
-                for (CompletableFuture<TrackInfo> future : futures) {
-                    try {
-                        TrackInfo track = future.get();
-                        if (track != null) {
-                            tracks.add(track);
-                        }
-                    } catch (Exception e) {
-                        logger.error("Error getting track result", e);
-                    }
+            JsonNode playCountNode = trackNode.path("playcount");
+            if (!playCountNode.isMissingNode() && !playCountNode.asText().isEmpty()) {
+                try {
+                    track.setPlayCount(playCountNode.asInt());
+                } catch (Exception e) {
+                    logger.debug("Error parsing playcount: {}", playCountNode.asText());
                 }
+            }
 
+            // Пытаемся получить информацию об альбоме из базовых данных
+            JsonNode albumNode = trackNode.path("album");
+            if (!albumNode.isMissingNode() && !albumNode.isNull()) {
+                String albumTitle = albumNode.path("title").asText();
+                if (!albumTitle.isEmpty() && !albumTitle.equals("null")) {
+                    track.setAlbum(albumTitle);
+                }
             }
-        } catch (Exception e) {
-            logger.error("Error getting top tracks for artist: {}", artist, e);
+            tracks.add(track);
         }
         return tracks;
     }
 
-    private List<TrackInfo> parseSearchResults(String jsonResponse) {
+    static boolean needsTopTrackDetails(TrackInfo track) {
+        return track.getAlbum() == null || track.getAlbum().isEmpty() || track.getAlbum().equals("Single");
+    }
+
+    /**
+     * Дополняет трек из топа артиста данными track.getInfo (fullTrackInfo может быть null)
+     */
+    static void applyTopTrackDetails(TrackInfo track, TrackInfo fullTrackInfo) {
+        if (needsTopTrackDetails(track)) {
+            if (fullTrackInfo != null && fullTrackInfo.getAlbum() != null &&
+                    !fullTrackInfo.getAlbum().isEmpty() && !fullTrackInfo.getAlbum().equals("Single")) {
+                track.setAlbum(fullTrackInfo.getAlbum());
+                // Также обновляем другую информацию если нужно
+                if (track.getDuration() == null || track.getDuration() == 0) {
+                    track.setDuration(fullTrackInfo.getDuration());
+                }
+                if (fullTrackInfo.getGenres() != null && !fullTrackInfo.getGenres().isEmpty()) {
+                    track.setGenres(fullTrackInfo.getGenres());
+                }
+            } else {
+                track.setAlbum("Single");
+            }
+        }
+
+        // Если после всех попыток альбом не определен, ставим "Unknown Album"
+        if (track.getAlbum() == null || track.getAlbum().isEmpty()) {
+            track.setAlbum("Unknown Album");
+        }
+
+        logger.debug("Processed track: {} - {} (Album: {})",
+                track.getArtist(), track.getName(), track.getAlbum());
+    }
+
+    List<TrackInfo> parseSearchResults(String jsonResponse) {
         List<TrackInfo> tracks = new ArrayList<>();
         try {
             JsonNode root = objectMapper.readTree(jsonResponse);
@@ -484,7 +476,7 @@ public class LastFmService {
         return tracks;
     }
 
-    private List<TrackInfo> parseTopTracks(String jsonResponse) {
+    List<TrackInfo> parseTopTracks(String jsonResponse) {
         List<TrackInfo> tracks = new ArrayList<>();
         try {
             JsonNode root = objectMapper.readTree(jsonResponse);
@@ -522,14 +514,13 @@ public class LastFmService {
 
                 tracks.add(track);
             }
-            enhanceTracksWithAlbumInfo(tracks);
         } catch (Exception e) {
             logger.error("Error parsing top tracks", e);
         }
         return tracks;
     }
 
-    private TrackInfo parseTrackInfo(String jsonResponse) {
+    TrackInfo parseTrackInfo(String jsonResponse) {
         try {
             JsonNode root = objectMapper.readTree(jsonResponse);
             JsonNode trackNode = root.path("track");
@@ -619,7 +610,7 @@ public class LastFmService {
 
     // Остальные методы (getMockTracks, getMockPopularTracks, getMockTrackInfo) остаются без изменений...
     // Мок-данные для поиска
-    private List<TrackInfo> getMockTracks(String query) {
+    List<TrackInfo> getMockTracks(String query) {
         List<TrackInfo> mockTracks = new ArrayList<>();
         String[] mockData = {
                 "Bohemian Rhapsody|Queen|A Night at the Opera|354|Rock|2500000000",
@@ -648,7 +639,7 @@ public class LastFmService {
     }
 
     // Мок-данные для популярных треков
-    private List<TrackInfo> getMockPopularTracks() {
+    List<TrackInfo> getMockPopularTracks() {
         List<TrackInfo> mockTracks = new ArrayList<>();
         String[][] mockData = {
                 {"Blinding Lights", "The Weeknd", "After Hours", "200", "Pop", "2850000000"},
@@ -682,7 +673,7 @@ public class LastFmService {
         return mockTracks;
     }
 
-    private TrackInfo getMockTrackInfo(String artist, String track) {
+    TrackInfo getMockTrackInfo(String artist, String track) {
         TrackInfo mockTrack = new TrackInfo();
         mockTrack.setName(track);
         mockTrack.setArtist(artist);
@@ -703,28 +694,11 @@ public class LastFmService {
         }
 
         try {
-            String encodedArtist = URLEncoder.encode(artist, StandardCharsets.UTF_8);
-            String encodedTrack = URLEncoder.encode(trackName, StandardCharsets.UTF_8);
-
             // 🔥 Запрашиваем больше треков у API
-            String url = String.format("%s?method=track.getSimilar&artist=%s&track=%s&api_key=%s&format=json&limit=%d",
-                    baseUrl, encodedArtist, encodedTrack, apiKey, Math.max(limit, 10)); // Минимум 10
-
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(url))
-                    .GET()
-                    .build();
-
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            String body = fetch("track.getSimilar", params("artist", artist, "track", trackName,
+                    "limit", String.valueOf(Math.max(limit, 10)))); // Минимум 10
 
-            if (response.statusCode() == 200) {
-                return parseSimilarTracksResponse(response.body(), limit);
-            } else {
-                logger.error("Last.fm API error for similar tracks: {}", response.statusCode());
-                return getMockSimilarTracks(artist, trackName).stream()
-                        .limit(limit)
-                        .collect(Collectors.toList());
-            }
+            return parseSimilarTracksResponse(body, limit);
         } catch (Exception e) {
             logger.error("Error getting similar tracks from Last.fm for: {} - {}", artist, trackName, e);
             return getMockSimilarTracks(artist, trackName).stream()
@@ -739,32 +713,10 @@ public class LastFmService {
     private List<TrackInfo> parseSimilarTracksResponse(String jsonResponse, int limit) {
         List<TrackInfo> similarTracks = new ArrayList<>();
         try {
-            JsonNode root = objectMapper.readTree(jsonResponse);
-            JsonNode similarTracksNode = root.path("similartracks").path("track");
-
-            int count = 0;
-            for (JsonNode trackNode : similarTracksNode) {
-                if (count >= limit) break;
-
-                TrackInfo track = new TrackInfo();
-                track.setName(trackNode.path("name").asText());
-                track.setArtist(trackNode.path("artist").path("name").asText());
-                track.setUrl(trackNode.path("url").asText());
-
+            for (TrackInfo track : parseSimilarTracks(jsonResponse, limit)) {
                 // Получаем дополнительную информацию о треке
-                TrackInfo fullInfo = getTrackInfo(track.getArtist(), track.getName());
-                if (fullInfo != null) {
-                    track.setAlbum(fullInfo.getAlbum());
-                    track.setDuration(fullInfo.getDuration());
-                    track.setGenres(fullInfo.getGenres());
-                    track.setPlayCount(fullInfo.getPlayCount());
-                }
-
+                applySimilarDetails(track, getTrackInfo(track.getArtist(), track.getName()));
                 similarTracks.add(track);
-                count++;
-
-                // Задержка чтобы не перегружать API
-                Thread.sleep(100);
             }
         } catch (Exception e) {
             logger.error("Error parsing similar tracks response", e);
@@ -772,10 +724,35 @@ public class LastFmService {
         return similarTracks;
     }
 
+    List<TrackInfo> parseSimilarTracks(String jsonResponse, int limit) throws IOException {
+        List<TrackInfo> similarTracks = new ArrayList<>();
+        JsonNode similarTracksNode = objectMapper.readTree(jsonResponse).path("similartracks").path("track");
+
+        for (JsonNode trackNode : similarTracksNode) {
+            if (similarTracks.size() >= limit) break;
+
+            TrackInfo track = new TrackInfo();
+            track.setName(trackNode.path("name").asText());
+            track.setArtist(trackNode.path("artist").path("name").asText());
+            track.setUrl(trackNode.path("url").asText());
+            similarTracks.add(track);
+        }
+        return similarTracks;
+    }
+
+    static void applySimilarDetails(TrackInfo track, TrackInfo fullInfo) {
+        if (fullInfo != null) {
+            track.setAlbum(fullInfo.getAlbum());
+            track.setDuration(fullInfo.getDuration());
+            track.setGenres(fullInfo.getGenres());
+            track.setPlayCount(fullInfo.getPlayCount());
+        }
+    }
+
     /**
      * Мок-данные для похожих треков
      */
-    private List<TrackInfo> getMockSimilarTracks(String artist, String trackName) {
+    List<TrackInfo> getMockSimilarTracks(String artist, String trackName) {
         // Базовые мок-данные на основе артиста
         Map<String, List<String[]>> mockSimilarData = Map.of(
                 "Queen", List.of(
@@ -814,23 +791,8 @@ public class LastFmService {
         }
 
         try {
-            String encodedQuery = URLEncoder.encode(query, StandardCharsets.UTF_8);
-            String url = String.format("%s?method=album.search&album=%s&api_key=%s&format=json",
-                    baseUrl, encodedQuery, apiKey);
-
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(url))
-                    .GET()
-                    .build();
-
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-
-            if (response.statusCode() == 200) {
-                return parseAlbumSearchResults(response.body());
-            } else {
-                logger.error("Last.fm API error for album search: {}", response.statusCode());
-                return getMockAlbums(query);
-            }
+            String body = fetch("album.search", params("album", query));
+            return parseAlbumSearchResults(body);
         } catch (Exception e) {
             logger.error("Error searching albums from Last.fm: {}", query, e);
             return getMockAlbums(query);
@@ -841,37 +803,32 @@ public class LastFmService {
      * Получение информации об альбоме
      */
     public AlbumInfo getAlbumInfo(String artist, String album) {
-        if (Config.isApiMockEnabled()) {
-            return getMockAlbumInfo(artist, album);
-        }
-
         try {
-            String encodedArtist = URLEncoder.encode(artist, StandardCharsets.UTF_8);
-            String encodedAlbum = URLEncoder.encode(album, StandardCharsets.UTF_8);
-
-            String url = String.format("%s?method=album.getInfo&artist=%s&album=%s&api_key=%s&format=json",
-                    baseUrl, encodedArtist, encodedAlbum, apiKey);
-
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(url))
-                    .GET()
-                    .build();
-
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-
-            if (response.statusCode() == 200) {
-                return parseAlbumInfo(response.body());
-            } else {
-                logger.error("Last.fm API error for album info: {}", response.statusCode());
-                return getMockAlbumInfo(artist, album);
-            }
+            return fetchAlbumInfo(artist, album);
         } catch (Exception e) {
             logger.error("Error getting album info from Last.fm: {} - {}", artist, album, e);
             return getMockAlbumInfo(artist, album);
         }
     }
 
-    private List<AlbumInfo> parseAlbumSearchResults(String jsonResponse) {
+    /**
+     * Информация об альбоме без подстановки мок-данных: ошибка запроса или разбора ответа
+     * приводит к исключению, поэтому результат можно кэшировать
+     */
+    public AlbumInfo fetchAlbumInfo(String artist, String album) throws Exception {
+        if (Config.isApiMockEnabled()) {
+            return getMockAlbumInfo(artist, album);
+        }
+
+        String body = fetch("album.getInfo", params("artist", artist, "album", album));
+        AlbumInfo info = parseAlbumInfo(body);
+        if (info == null) {
+            throw new IOException("Unparseable album.getInfo response: " + artist + " - " + album);
+        }
+        return info;
+    }
+
+    List<AlbumInfo> parseAlbumSearchResults(String jsonResponse) {
         List<AlbumInfo> albums = new ArrayList<>();
         try {
             JsonNode root = objectMapper.readTree(jsonResponse);
@@ -896,7 +853,7 @@ public class LastFmService {
         return albums;
     }
 
-    private AlbumInfo parseAlbumInfo(String jsonResponse) {
+    AlbumInfo parseAlbumInfo(String jsonResponse) {
         try {
             JsonNode root = objectMapper.readTree(jsonResponse);
             JsonNode albumNode = root.path("album");
@@ -943,7 +900,7 @@ public class LastFmService {
     }
 
     // Мок-данные для альбомов
-    private List<AlbumInfo> getMockAlbums(String query) {
+    List<AlbumInfo> getMockAlbums(String query) {
         List<AlbumInfo> mockAlbums = new ArrayList<>();
         String[][] mockData = {
                 {"After Hours", "The Weeknd", "2020", "Pop,R&B", "https://lastfm.freetls.fastly.net/i/u/300x300/0c2509f3e8c142dd9deb6a012a2c9f29.png"},
@@ -966,7 +923,7 @@ public class LastFmService {
         return mockAlbums;
     }
 
-    private AlbumInfo getMockAlbumInfo(String artist, String album) {
+    AlbumInfo getMockAlbumInfo(String artist, String album) {
         AlbumInfo mockAlbum = new AlbumInfo();
         mockAlbum.setName(album);
         mockAlbum.setArtist(artist);
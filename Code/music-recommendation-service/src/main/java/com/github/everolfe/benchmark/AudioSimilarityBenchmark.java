@@ -0,0 +1,105 @@
+package com.github.everolfe.benchmark;
+
+import com.github.everolfe.service.AudioFeatureKernel;
+import com.github.everolfe.service.AudioFeatureKernels;
+import com.github.everolfe.service.AudioFeatures;
+import com.github.everolfe.service.ScalarAudioFeatureKernel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Полный перебор каталога по аудио-признакам: сравнение скалярной и SIMD-реализации
+ * AudioFeatureKernel на синтетических нормализованных векторах. Печатает медианное время
+ * одного прохода и пропускную способность для каждой метрики. БД не нужна.
+ *
+ * Запуск (SIMD-вариант участвует, только если собран профиль vector-api и подключён модуль):
+ * MAVEN_OPTS="--add-modules jdk.incubator.vector" mvn -P vector-api compile exec:java
+ *     -Dexec.mainClass=com.github.everolfe.benchmark.AudioSimilarityBenchmark -Dexec.args="1000000 50"
+ */
+public class AudioSimilarityBenchmark {
+
+    private static final int WARMUP_SCANS = 20;
+
+    public static void main(String[] args) {
+        int tracks = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int scans = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+
+        Random random = new Random(42);
+        float[][] columns = new float[AudioFeatures.DIMENSIONS][tracks];
+        for (float[] column : columns) {
+            for (int row = 0; row < tracks; row++) {
+                column[row] = random.nextFloat();
+            }
+        }
+        float[][] queries = new float[scans][AudioFeatures.DIMENSIONS];
+        for (float[] query : queries) {
+            for (int d = 0; d < query.length; d++) {
+                query[d] = random.nextFloat();
+            }
+        }
+
+        List<AudioFeatureKernel> kernels = new ArrayList<>();
+        kernels.add(new ScalarAudioFeatureKernel());
+        AudioFeatureKernel vectorKernel = AudioFeatureKernels.newVectorKernel();
+        if (vectorKernel != null) {
+            kernels.add(vectorKernel);
+        } else {
+            System.out.println("Vector API kernel is not available: build with -P vector-api "
+                    + "and run with --add-modules jdk.incubator.vector");
+        }
+
+        System.out.printf("%,d tracks x %d features, %d scans per run, Java %s%n",
+                tracks, AudioFeatures.DIMENSIONS, scans, System.getProperty("java.version"));
+
+        float[] expected = new float[tracks];
+        float[] out = new float[tracks];
+        for (AudioFeatures.Metric metric : AudioFeatures.Metric.values()) {
+            scan(kernels.get(0), metric, columns, queries[0], tracks, expected);
+            for (AudioFeatureKernel kernel : kernels) {
+                for (int i = 0; i < WARMUP_SCANS; i++) {
+                    scan(kernel, metric, columns, queries[i % scans], tracks, out);
+                }
+
+                long[] nanos = new long[scans];
+                for (int i = 0; i < scans; i++) {
+                    long start = System.nanoTime();
+                    scan(kernel, metric, columns, queries[i], tracks, out);
+                    nanos[i] = System.nanoTime() - start;
+                }
+
+                scan(kernel, metric, columns, queries[0], tracks, out);
+                report(kernel, metric, tracks, nanos, maxDifference(expected, out, tracks));
+            }
+        }
+    }
+
+    private static void scan(AudioFeatureKernel kernel, AudioFeatures.Metric metric, float[][] columns,
+                             float[] query, int tracks, float[] out) {
+        if (metric == AudioFeatures.Metric.COSINE) {
+            kernel.dotProducts(columns, query, tracks, out);
+        } else {
+            kernel.squaredDistances(columns, query, tracks, out);
+        }
+    }
+
+    // Разница с скалярной реализацией: FMA округляет иначе, но не больше чем на ~1e-6
+    private static float maxDifference(float[] expected, float[] actual, int tracks) {
+        float max = 0f;
+        for (int row = 0; row < tracks; row++) {
+            max = Math.max(max, Math.abs(expected[row] - actual[row]));
+        }
+        return max;
+    }
+
+    private static void report(AudioFeatureKernel kernel, AudioFeatures.Metric metric, int tracks,
+                               long[] nanos, float maxDifference) {
+        Arrays.sort(nanos);
+        double medianMillis = nanos[nanos.length / 2] / 1_000_000.0;
+        double bestMillis = nanos[0] / 1_000_000.0;
+        System.out.printf("%-10s %-22s median %7.2f ms  best %7.2f ms  %8.1f M tracks/s  max diff %.1e%n",
+                metric, kernel.name(), medianMillis, bestMillis, tracks / medianMillis / 1000.0, maxDifference);
+    }
+}
@@ -0,0 +1,484 @@
+package com.github.everolfe.benchmark;
+
+import com.github.everolfe.database.CatalogImporter;
+import com.github.everolfe.database.DatabaseConnection;
+import com.github.everolfe.util.LongHashSet;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Детерминированный генератор синтетических данных для нагрузочного тестирования.
+ * При одинаковых параметрах и seed выдаёт один и тот же набор:
+ * <ul>
+ *     <li>каталог: популярность артистов и треков внутри артиста распределена по Ципфу,
+ *     у артиста основной жанр и с некоторой вероятностью - связанный второй (Rock/Metal, Pop/Dance...)</li>
+ *     <li>пользователи: число оценок на пользователя с тяжёлым хвостом (Парето),
+ *     у каждого любимый жанр, к которому смещены выбор треков и высокие оценки</li>
+ * </ul>
+ * Данные пишутся в CSV-файлы (каталог - в формате CatalogImporter) или сразу загружаются через COPY.
+ *
+ * Запуск: mvn exec:java -Dexec.mainClass=com.github.everolfe.benchmark.DatasetGenerator
+ *     -Dexec.args="--users 100000 --tracks 1000000 --preferences 10000000 --seed 42 --copy"
+ * Вместо --copy: --out DIR (записать файлы) или --load DIR (загрузить ранее записанные файлы).
+ */
+public class DatasetGenerator {
+    private static final Logger logger = LoggerFactory.getLogger(DatasetGenerator.class);
+
+    private static final String[] GENRES = {
+            "Rock", "Pop", "Hip-Hop", "Electronic", "R&B", "Jazz", "Classical", "Metal",
+            "Indie", "Folk", "Blues", "Country", "Dance", "Soul", "Punk", "Ambient"
+    };
+    // Жанры, которые часто встречаются вместе с жанром того же индекса в GENRES
+    private static final int[][] RELATED_GENRES = {
+            {7, 8, 14, 10}, {12, 4, 3, 8}, {4, 13, 3}, {12, 15, 1}, {13, 2, 1}, {10, 13, 6},
+            {5, 15}, {0, 14}, {0, 9, 1}, {11, 8, 10}, {5, 0, 13}, {9, 10}, {3, 1}, {4, 5, 10},
+            {0, 7}, {3, 6}
+    };
+
+    private static final int TRACKS_PER_ARTIST = 20;
+    private static final int TRACKS_PER_ALBUM = 10;
+    private static final double SECONDARY_GENRE_PROBABILITY = 0.4;
+    private static final double TASTE_PICK_PROBABILITY = 0.6;
+    private static final double PREFERENCE_PARETO_ALPHA = 1.5;
+
+    private final int users;
+    private final int tracks;
+    private final long preferences;
+    private final long seed;
+
+    private final int artistCount;
+    private final int maxTracksPerArtist;
+    private final int[] primaryGenre;
+    private final int[] secondaryGenre;
+    private final int[][] artistsByGenre;
+    private final ZipfDistribution genrePopularity;
+    private final ZipfDistribution artistPopularity;
+    private final ZipfDistribution[] artistPopularityByGenre;
+    private final ZipfDistribution trackPopularity;
+    private final ZipfDistribution ratingDrop = new ZipfDistribution(5, 1.5);
+    private final ZipfDistribution listenCounts = new ZipfDistribution(200, 1.2);
+
+    public DatasetGenerator(int users, int tracks, long preferences, long seed) {
+        if (users <= 0 || tracks <= 0 || preferences < 0) {
+            throw new IllegalArgumentException("Users and tracks must be positive, preferences non-negative");
+        }
+        this.users = users;
+        this.tracks = tracks;
+        this.preferences = preferences;
+        this.seed = seed;
+
+        this.artistCount = Math.max(1, (tracks + TRACKS_PER_ARTIST - 1) / TRACKS_PER_ARTIST);
+        this.maxTracksPerArtist = (tracks + artistCount - 1) / artistCount;
+        this.genrePopularity = new ZipfDistribution(GENRES.length, 1.0);
+        this.artistPopularity = new ZipfDistribution(artistCount, 1.0);
+        this.trackPopularity = new ZipfDistribution(maxTracksPerArtist, 0.8);
+
+        // Ранг популярности артиста совпадает с его номером: артист 0 - самый популярный
+        SplittableRandom random = new SplittableRandom(seed);
+        this.primaryGenre = new int[artistCount];
+        this.secondaryGenre = new int[artistCount];
+        int[] perGenre = new int[GENRES.length];
+        for (int artist = 0; artist < artistCount; artist++) {
+            int genre = genrePopularity.sample(random);
+            primaryGenre[artist] = genre;
+            secondaryGenre[artist] = random.nextDouble() < SECONDARY_GENRE_PROBABILITY
+                    ? RELATED_GENRES[genre][random.nextInt(RELATED_GENRES[genre].length)]
+                    : -1;
+            perGenre[genre]++;
+        }
+
+        this.artistsByGenre = new int[GENRES.length][];
+        this.artistPopularityByGenre = new ZipfDistribution[GENRES.length];
+        for (int genre = 0; genre < GENRES.length; genre++) {
+            artistsByGenre[genre] = new int[perGenre[genre]];
+            artistPopularityByGenre[genre] = perGenre[genre] > 0 ? new ZipfDistribution(perGenre[genre], 1.0) : null;
+        }
+        int[] filled = new int[GENRES.length];
+        for (int artist = 0; artist < artistCount; artist++) {
+            int genre = primaryGenre[artist];
+            artistsByGenre[genre][filled[genre]++] = artist;
+        }
+    }
+
+    public static void main(String[] args) {
+        int users = 1000;
+        int tracks = 100_000;
+        long preferences = 100_000;
+        long seed = 42;
+        String mode = "--copy";
+        Path directory = null;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--users": users = Integer.parseInt(args[++i]); break;
+                case "--tracks": tracks = Integer.parseInt(args[++i]); break;
+                case "--preferences": preferences = Long.parseLong(args[++i]); break;
+                case "--seed": seed = Long.parseLong(args[++i]); break;
+                case "--copy": mode = args[i]; break;
+                case "--out":
+                case "--load":
+                    mode = args[i];
+                    directory = Paths.get(args[++i]);
+                    break;
+                default:
+                    System.err.println("Unknown argument: " + args[i]);
+                    return;
+            }
+        }
+
+        DatasetGenerator generator = new DatasetGenerator(users, tracks, preferences, seed);
+        try {
+            if ("--out".equals(mode)) {
+                generator.writeFiles(directory);
+                return;
+            }
+
+            DatabaseConnection.initialize();
+            if (!DatabaseConnection.isInitialized()) {
+                System.err.println("Database is not available");
+                return;
+            }
+            if ("--load".equals(mode)) {
+                loadFiles(directory);
+            } else {
+                generator.load();
+            }
+        } catch (IOException | SQLException e) {
+            logger.error("Dataset generation failed", e);
+        } finally {
+            DatabaseConnection.closeDataSource();
+        }
+    }
+
+    /**
+     * Записывает catalog.csv, users.csv и preferences.csv в каталог
+     */
+    public void writeFiles(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        writeLines(directory.resolve("catalog.csv"), catalogLines());
+        writeLines(directory.resolve("users.csv"), userLines());
+        writeLines(directory.resolve("preferences.csv"), preferenceLines());
+        logger.info("Dataset written to {}: {} users, {} tracks, {} preferences", directory, users, tracks, preferences);
+    }
+
+    /**
+     * Генерирует данные и сразу загружает их через COPY, не создавая промежуточных файлов
+     */
+    public void load() throws IOException, SQLException {
+        new CatalogImporter().importCatalog(new LineSourceReader(catalogLines()), false);
+        loadUsers(new LineSourceReader(userLines()));
+        loadPreferences(new LineSourceReader(preferenceLines()));
+    }
+
+    public static void loadFiles(Path directory) throws IOException, SQLException {
+        new CatalogImporter().importFile(directory.resolve("catalog.csv"));
+        try (BufferedReader reader = Files.newBufferedReader(directory.resolve("users.csv"), StandardCharsets.UTF_8)) {
+            loadUsers(reader);
+        }
+        try (BufferedReader reader = Files.newBufferedReader(directory.resolve("preferences.csv"), StandardCharsets.UTF_8)) {
+            loadPreferences(reader);
+        }
+    }
+
+    // ---- Генерация ----
+
+    LineSource catalogLines() {
+        SplittableRandom random = new SplittableRandom(seed + 1);
+        return new LineSource() {
+            private int track = -1;
+
+            @Override
+            public String nextLine() {
+                if (track == -1) {
+                    track++;
+                    return "artist,album,title,duration,genres\n";
+                }
+                if (track >= tracks) return null;
+
+                int artist = track % artistCount;
+                int local = track / artistCount;
+                track++;
+
+                StringBuilder line = new StringBuilder(96);
+                CatalogImporter.appendCsvField(line, artistName(artist)).append(',');
+                CatalogImporter.appendCsvField(line, albumTitle(artist, local / TRACKS_PER_ALBUM)).append(',');
+                CatalogImporter.appendCsvField(line, trackTitle(artist, local)).append(',');
+                line.append(150 + random.nextInt(90) + random.nextInt(90)).append(',');
+                CatalogImporter.appendCsvField(line, trackGenres(artist, random)).append('\n');
+                return line.toString();
+            }
+        };
+    }
+
+    LineSource userLines() {
+        return new LineSource() {
+            private int user = -1;
+
+            @Override
+            public String nextLine() {
+                if (user == -1) {
+                    user++;
+                    return "username,email\n";
+                }
+                if (user >= users) return null;
+                String username = username(user++);
+                return username + "," + username + "@load.test\n";
+            }
+        };
+    }
+
+    LineSource preferenceLines() {
+        SplittableRandom random = new SplittableRandom(seed + 2);
+        int[] counts = preferenceCounts(new SplittableRandom(seed + 3));
+
+        return new LineSource() {
+            private int user = -1;
+            private int remaining;
+            private int attempts;
+            private int tasteGenre;
+            private LongHashSet picked;
+
+            @Override
+            public String nextLine() {
+                if (user == -1) {
+                    nextUser();
+                    return "username,artist,title,rating,is_favorite,listened_count\n";
+                }
+                while (user < users) {
+                    // Ограничение попыток: у пользователя с очень длинным списком повторы неизбежны
+                    if (remaining > 0 && attempts-- > 0) {
+                        String line = pick();
+                        if (line != null) {
+                            remaining--;
+                            return line;
+                        }
+                    } else {
+                        nextUser();
+                    }
+                }
+                return null;
+            }
+
+            private void nextUser() {
+                user++;
+                if (user >= users) return;
+                remaining = counts[user];
+                attempts = remaining * 10;
+                tasteGenre = genrePopularity.sample(random);
+                picked = new LongHashSet(remaining);
+            }
+
+            private String pick() {
+                int artist;
+                if (random.nextDouble() < TASTE_PICK_PROBABILITY && artistPopularityByGenre[tasteGenre] != null) {
+                    artist = artistsByGenre[tasteGenre][artistPopularityByGenre[tasteGenre].sample(random)];
+                } else {
+                    artist = artistPopularity.sample(random);
+                }
+                int local = trackPopularity.sample(random);
+                long track = (long) local * artistCount + artist;
+                if (track >= tracks || !picked.add(track)) {
+                    return null;
+                }
+
+                boolean tasteMatch = primaryGenre[artist] == tasteGenre || secondaryGenre[artist] == tasteGenre;
+                int rating = Math.max(1, (tasteMatch ? 5 : 4) - ratingDrop.sample(random));
+                boolean favorite = rating == 5 && random.nextDouble() < 0.25;
+                int listened = 1 + listenCounts.sample(random);
+
+                StringBuilder line = new StringBuilder(80);
+                line.append(username(user)).append(',');
+                CatalogImporter.appendCsvField(line, artistName(artist)).append(',');
+                CatalogImporter.appendCsvField(line, trackTitle(artist, local)).append(',');
+                return line.append(rating).append(',').append(favorite).append(',').append(listened).append('\n').toString();
+            }
+        };
+    }
+
+    // Веса пользователей по Парето масштабируются так, чтобы сумма была равна preferences
+    private int[] preferenceCounts(SplittableRandom random) {
+        double[] weights = new double[users];
+        double total = 0;
+        for (int user = 0; user < users; user++) {
+            weights[user] = Math.pow(1.0 - random.nextDouble(), -1.0 / PREFERENCE_PARETO_ALPHA);
+            total += weights[user];
+        }
+
+        int maxPerUser = Math.max(1, tracks / 2);
+        int[] counts = new int[users];
+        long assigned = 0;
+        for (int user = 0; user < users; user++) {
+            counts[user] = (int) Math.min(maxPerUser, (long) (preferences * weights[user] / total));
+            assigned += counts[user];
+        }
+        for (int user = 0; assigned < preferences && user < users; user++) {
+            if (counts[user] < maxPerUser) {
+                counts[user]++;
+                assigned++;
+            }
+        }
+        return counts;
+    }
+
+    private String trackGenres(int artist, SplittableRandom random) {
+        List<String> genres = new ArrayList<>(3);
+        genres.add(GENRES[primaryGenre[artist]]);
+        if (secondaryGenre[artist] >= 0) {
+            genres.add(GENRES[secondaryGenre[artist]]);
+        }
+        if (random.nextDouble() < 0.1) {
+            int[] related = RELATED_GENRES[primaryGenre[artist]];
+            String extra = GENRES[related[random.nextInt(related.length)]];
+            if (!genres.contains(extra)) genres.add(extra);
+        }
+        return String.join("|", genres);
+    }
+
+    // String.format заметно медленнее на десятках миллионов строк
+    private static String artistName(int artist) {
+        return pad(new StringBuilder("Artist "), artist, 6).toString();
+    }
+
+    private static String albumTitle(int artist, int album) {
+        return pad(pad(new StringBuilder("Album "), artist, 6).append('-'), album, 3).toString();
+    }
+
+    private static String trackTitle(int artist, int track) {
+        return pad(pad(new StringBuilder("Track "), artist, 6).append('-'), track, 4).toString();
+    }
+
+    private static String username(int user) {
+        return pad(new StringBuilder("loaduser"), user, 7).toString();
+    }
+
+    private static StringBuilder pad(StringBuilder builder, int value, int width) {
+        String digits = Integer.toString(value);
+        for (int i = digits.length(); i < width; i++) {
+            builder.append('0');
+        }
+        return builder.append(digits);
+    }
+
+    // ---- Загрузка ----
+
+    private static void loadUsers(Reader csv) throws IOException, SQLException {
+        loadThroughStaging(csv, "users",
+                "CREATE TEMP TABLE dataset_users (username TEXT, email TEXT) ON COMMIT DROP",
+                "COPY dataset_users FROM STDIN WITH (FORMAT csv, HEADER true)",
+                "INSERT INTO users (username, email) SELECT username, email FROM dataset_users ON CONFLICT DO NOTHING");
+    }
+
+    private static void loadPreferences(Reader csv) throws IOException, SQLException {
+        loadThroughStaging(csv, "user_preferences",
+                "CREATE TEMP TABLE dataset_preferences (username TEXT, artist TEXT, title TEXT, " +
+                        "rating INTEGER, is_favorite BOOLEAN, listened_count INTEGER) ON COMMIT DROP",
+                "COPY dataset_preferences FROM STDIN WITH (FORMAT csv, HEADER true)",
+                "INSERT INTO user_preferences (user_id, track_id, rating, listened_count, is_favorite) " +
+                        "SELECT u.id, t.id, s.rating, s.listened_count, s.is_favorite FROM dataset_preferences s " +
+                        "JOIN users u ON u.username = s.username " +
+                        "JOIN (SELECT DISTINCT ON (lower(name)) id, lower(name) AS artist_key FROM artists " +
+                        "ORDER BY lower(name), id) a ON a.artist_key = lower(s.artist) " +
+                        "JOIN tracks t ON t.artist_id = a.id AND lower(t.title) = lower(s.title) " +
+                        "ON CONFLICT (user_id, track_id) DO NOTHING");
+    }
+
+    private static void loadThroughStaging(Reader csv, String table, String createSql, String copySql, String mergeSql)
+            throws IOException, SQLException {
+        long startNanos = System.nanoTime();
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute(createSql);
+                CopyManager copyManager = conn.unwrap(PGConnection.class).getCopyAPI();
+                long copied = copyManager.copyIn(copySql, csv, 64 * 1024);
+                report(table + " copy", copied, startNanos);
+
+                long mergeStart = System.nanoTime();
+                int inserted = stmt.executeUpdate(mergeSql);
+                report(table, inserted, mergeStart);
+                conn.commit();
+            } catch (IOException | SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    private static void report(String stage, long rows, long startNanos) {
+        double seconds = (System.nanoTime() - startNanos) / 1_000_000_000.0;
+        logger.info("Dataset load {}: {} rows in {} s ({} rows/s)", stage, rows,
+                String.format("%.2f", seconds), String.format("%.0f", seconds > 0 ? rows / seconds : rows));
+    }
+
+    private static void writeLines(Path file, LineSource lines) throws IOException {
+        try (Writer writer = new BufferedWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8), 64 * 1024)) {
+            String line;
+            while ((line = lines.nextLine()) != null) {
+                writer.write(line);
+            }
+        }
+    }
+
+    /**
+     * Источник строк, генерируемых по требованию; null - конец данных
+     */
+    interface LineSource {
+        String nextLine();
+    }
+
+    /**
+     * Reader поверх LineSource: COPY читает данные по мере генерации
+     */
+    static final class LineSourceReader extends Reader {
+        private final LineSource source;
+        private String line = "";
+        private int position;
+
+        LineSourceReader(LineSource source) {
+            this.source = source;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) {
+            if (length == 0) return 0;
+            int read = 0;
+            while (read < length) {
+                if (position == line.length()) {
+                    String next = source.nextLine();
+                    if (next == null) break;
+                    line = next;
+                    position = 0;
+                }
+                int chunk = Math.min(length - read, line.length() - position);
+                line.getChars(position, position + chunk, buffer, offset + read);
+                position += chunk;
+                read += chunk;
+            }
+            return read == 0 ? -1 : read;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
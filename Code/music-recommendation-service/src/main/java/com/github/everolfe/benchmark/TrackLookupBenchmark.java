@@ -0,0 +1,89 @@
+package com.github.everolfe.benchmark;
+
+import com.github.everolfe.database.DatabaseConnection;
+import com.github.everolfe.database.dao.TrackDAO;
+import com.github.everolfe.model.Track;
+import com.github.everolfe.service.ServiceRegistry;
+import com.github.everolfe.service.TrackService;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Сравнение построчной загрузки треков (getTrackById в цикле) с пакетной (getTracksByIds).
+ * Печатает число обращений к пулу соединений и время для каждого варианта.
+ *
+ * Запуск: mvn exec:java -Dexec.mainClass=com.github.everolfe.benchmark.TrackLookupBenchmark -Dexec.args="25"
+ */
+public class TrackLookupBenchmark {
+
+    public static void main(String[] args) {
+        int batchSize = args.length > 0 ? Integer.parseInt(args[0]) : 25;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+
+        DatabaseConnection.initialize();
+        if (!DatabaseConnection.isInitialized()) {
+            System.err.println("Database is not available");
+            return;
+        }
+
+        // Курсор читает только первые batchSize строк, а не всю таблицу
+        List<Long> trackIds;
+        try (Stream<Track> tracks = new TrackDAO().streamAll()) {
+            trackIds = tracks.limit(batchSize).map(Track::getId).collect(Collectors.toList());
+        }
+        if (trackIds.isEmpty()) {
+            System.err.println("No tracks in database");
+            DatabaseConnection.closeDataSource();
+            return;
+        }
+
+        ServiceRegistry registry = ServiceRegistry.getInstance();
+        // Фоновая загрузка каталога и индексов берёт соединения из пула и исказила бы счётчик обращений
+        registry.awaitWarmUp();
+        TrackService trackService = registry.getTrackService();
+
+        // Прогрев пула соединений и JIT
+        for (int i = 0; i < 3; i++) {
+            loadOneByOne(trackService, trackIds);
+            trackService.getTracksByIds(trackIds);
+        }
+
+        long requestsBefore = DatabaseConnection.getConnectionRequestCount();
+        long start = System.nanoTime();
+        int loaded = 0;
+        for (int i = 0; i < iterations; i++) {
+            loaded = loadOneByOne(trackService, trackIds);
+        }
+        report("getTrackById x N", loaded, iterations, requestsBefore, start);
+
+        requestsBefore = DatabaseConnection.getConnectionRequestCount();
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            Map<Long, Track> tracks = trackService.getTracksByIds(trackIds);
+            loaded = tracks.size();
+        }
+        report("getTracksByIds", loaded, iterations, requestsBefore, start);
+
+        ServiceRegistry.shutdown();
+    }
+
+    private static int loadOneByOne(TrackService trackService, List<Long> trackIds) {
+        int loaded = 0;
+        for (Long trackId : trackIds) {
+            if (trackService.getTrackById(trackId) != null) {
+                loaded++;
+            }
+        }
+        return loaded;
+    }
+
+    private static void report(String name, int loaded, int iterations, long requestsBefore, long startNanos) {
+        long roundTrips = DatabaseConnection.getConnectionRequestCount() - requestsBefore;
+        double millis = (System.nanoTime() - startNanos) / 1_000_000.0 / iterations;
+        System.out.printf("%-18s tracks=%d round-trips/call=%d time/call=%.2f ms%n",
+                name, loaded, roundTrips / iterations, millis);
+    }
+}
@@ -36,15 +36,34 @@ public class Config {
         properties.setProperty("db.username", "postgres");
         properties.setProperty("db.password", "0916310");
         properties.setProperty("db.pool.size", "10");
+        properties.setProperty("db.fetch.size", "1000");
 
         // Last.fm API configuration
         properties.setProperty("lastfm.api.key", "fbc9ee44e9e0fee6ace0f3a8f3273e17");
         properties.setProperty("lastfm.api.secret", "b029df9b5e450b4248327ad36c1f2722");
         properties.setProperty("lastfm.base.url", "https://ws.audioscrobbler.com/2.0/");
+        properties.setProperty("lastfm.request.timeout.seconds", "10");
+        properties.setProperty("lastfm.rate.limit.per.second", "5");
+        properties.setProperty("lastfm.rate.limit.burst", "5");
+        properties.setProperty("lastfm.cache.memory.entries", "1000");
+        properties.setProperty("lastfm.cache.max.stale.hours", "168");
+        properties.setProperty("cover.cache.memory.mb", "32");
+        properties.setProperty("cover.cache.disk.max.mb", "200");
+        properties.setProperty("cover.cache.downloads", "4");
 
         // Application settings
         properties.setProperty("app.name", "Music Recommendation Service");
         properties.setProperty("app.version", "1.0.0");
+        properties.setProperty("app.io.threads", "32");
+        properties.setProperty("recommendations.timeout.millis", "8000");
+        properties.setProperty("recommendations.timeout.millis.content", "2000");
+        properties.setProperty("recommendations.timeout.millis.lastfm", "6000");
+        properties.setProperty("recommendations.timeout.millis.popular", "4000");
+        properties.setProperty("recommendations.timeout.millis.recent", "2000");
+        properties.setProperty("recommendations.audio.weight", "0.2");
+        properties.setProperty("recommendations.audio.metric", "euclidean");
+        properties.setProperty("recommendations.audio.vector.api", "true");
+        properties.setProperty("ui.stall.threshold.millis", "50");
 
         // Development settings
         //properties.setProperty("demo.mode", "true");
@@ -68,6 +87,10 @@ public class Config {
         return Integer.parseInt(properties.getProperty("db.pool.size", "10"));
     }
 
+    public static int getDbFetchSize() {
+        return Integer.parseInt(properties.getProperty("db.fetch.size", "1000"));
+    }
+
     // Last.fm API configuration
     public static String getLastFmApiKey() {
         return properties.getProperty("lastfm.api.key");
@@ -81,6 +104,50 @@ public class Config {
         return properties.getProperty("lastfm.base.url");
     }
 
+    public static long getLastFmRequestTimeoutSeconds() {
+        return Long.parseLong(properties.getProperty("lastfm.request.timeout.seconds", "10"));
+    }
+
+    public static double getLastFmRateLimitPerSecond() {
+        return Double.parseDouble(properties.getProperty("lastfm.rate.limit.per.second", "5"));
+    }
+
+    public static int getLastFmRateLimitBurst() {
+        return Integer.parseInt(properties.getProperty("lastfm.rate.limit.burst", "5"));
+    }
+
+    // Last.fm response cache
+    public static String getLastFmCacheDirectory() {
+        return properties.getProperty("lastfm.cache.dir",
+                System.getProperty("user.home") + "/.music-recommendation/lastfm-cache");
+    }
+
+    public static int getLastFmCacheMemoryEntries() {
+        return Integer.parseInt(properties.getProperty("lastfm.cache.memory.entries", "1000"));
+    }
+
+    public static long getLastFmCacheMaxStaleHours() {
+        return Long.parseLong(properties.getProperty("lastfm.cache.max.stale.hours", "168"));
+    }
+
+    // Album cover cache
+    public static String getCoverCacheDirectory() {
+        return properties.getProperty("cover.cache.dir",
+                System.getProperty("user.home") + "/.music-recommendation/cover-cache");
+    }
+
+    public static int getCoverCacheMemoryMb() {
+        return Integer.parseInt(properties.getProperty("cover.cache.memory.mb", "32"));
+    }
+
+    public static int getCoverCacheDiskMaxMb() {
+        return Integer.parseInt(properties.getProperty("cover.cache.disk.max.mb", "200"));
+    }
+
+    public static int getCoverCacheDownloads() {
+        return Integer.parseInt(properties.getProperty("cover.cache.downloads", "4"));
+    }
+
     // Application settings
     public static String getAppName() {
         return properties.getProperty("app.name");
@@ -90,6 +157,41 @@ public class Config {
         return properties.getProperty("app.version");
     }
 
+    // Используется, только если JVM не поддерживает виртуальные потоки
+    public static int getIoThreads() {
+        return Integer.parseInt(properties.getProperty("app.io.threads", "32"));
+    }
+
+    public static long getRecommendationsTimeoutMillis() {
+        return Long.parseLong(properties.getProperty("recommendations.timeout.millis", "8000"));
+    }
+
+    // Срок отдельного источника рекомендаций; без настройки ограничен только общим сроком
+    public static long getRecommendationSourceTimeoutMillis(String source) {
+        String value = properties.getProperty("recommendations.timeout.millis." + source);
+        return value != null ? Long.parseLong(value) : getRecommendationsTimeoutMillis();
+    }
+
+    // Доля схожести по аудио-признакам в оценке похожих треков; 0 отключает сигнал
+    public static double getRecommendationsAudioWeight() {
+        return Double.parseDouble(properties.getProperty("recommendations.audio.weight", "0.2"));
+    }
+
+    // euclidean или cosine
+    public static String getRecommendationsAudioMetric() {
+        return properties.getProperty("recommendations.audio.metric", "euclidean");
+    }
+
+    // SIMD-сравнение признаков, если JVM запущена с --add-modules jdk.incubator.vector
+    public static boolean isRecommendationsAudioVectorApiEnabled() {
+        return Boolean.parseBoolean(properties.getProperty("recommendations.audio.vector.api", "true"));
+    }
+
+    // Порог, после которого занятость FX-потока пишется в лог; 0 отключает проверку
+    public static long getUiStallThresholdMillis() {
+        return Long.parseLong(properties.getProperty("ui.stall.threshold.millis", "50"));
+    }
+
     // Development settings
     public static boolean isDemoMode() {
         return Boolean.parseBoolean(properties.getProperty("demo.mode", "true"));
@@ -0,0 +1,109 @@
+package com.github.everolfe.controller;
+
+import com.github.everolfe.api.AlbumCoverStore;
+import com.github.everolfe.config.Config;
+import com.github.everolfe.service.ServiceRegistry;
+import javafx.scene.image.Image;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Кэш миниатюр обложек в памяти: изображение декодируется сразу в размере окна обложки
+ * и хранится в LRU, ограниченном суммарным объёмом пикселей. Промах загружает обложку
+ * через AlbumCoverStore (диск или сеть). Общий для всех экранов приложения.
+ */
+public final class AlbumCoverCache {
+    private static final Logger logger = LoggerFactory.getLogger(AlbumCoverCache.class);
+
+    // Размер ImageView обложки в main.fxml
+    static final int THUMBNAIL_SIZE = 180;
+
+    private static AlbumCoverCache instance;
+
+    private final AlbumCoverStore store;
+    private final long maxMemoryBytes;
+    private final Map<String, Image> thumbnails = new LinkedHashMap<>(16, 0.75f, true);
+    private long memoryBytes;
+
+    private AlbumCoverCache(AlbumCoverStore store, long maxMemoryBytes) {
+        this.store = store;
+        this.maxMemoryBytes = maxMemoryBytes;
+    }
+
+    public static synchronized AlbumCoverCache getInstance() {
+        if (instance == null) {
+            instance = new AlbumCoverCache(ServiceRegistry.getInstance().getAlbumCoverStore(),
+                    Config.getCoverCacheMemoryMb() * 1024L * 1024L);
+        }
+        return instance;
+    }
+
+    /**
+     * Миниатюра из памяти без обращения к диску и сети, иначе null
+     */
+    public Image getCached(String artist, String album) {
+        synchronized (thumbnails) {
+            return thumbnails.get(key(artist, album));
+        }
+    }
+
+    /**
+     * Загружает и декодирует миниатюру. Блокирующий метод для фоновых потоков.
+     *
+     * @return миниатюра или null, если обложки нет
+     */
+    public Image load(String artist, String album) throws Exception {
+        String key = key(artist, album);
+        Image cached = getCached(artist, album);
+        if (cached != null) {
+            return cached;
+        }
+
+        byte[] bytes = store.getCover(artist, album);
+        if (bytes == null) {
+            return null;
+        }
+        // Декодирование с уменьшением: в памяти не держим полноразмерную картинку
+        Image thumbnail = new Image(new ByteArrayInputStream(bytes), THUMBNAIL_SIZE, THUMBNAIL_SIZE, true, true);
+        if (thumbnail.isError()) {
+            logger.warn("Failed to decode album cover: {} - {}", artist, album, thumbnail.getException());
+            return null;
+        }
+        put(key, thumbnail);
+        return thumbnail;
+    }
+
+    private void put(String key, Image thumbnail) {
+        synchronized (thumbnails) {
+            Image previous = thumbnails.put(key, thumbnail);
+            if (previous != null) {
+                memoryBytes -= sizeOf(previous);
+            }
+            memoryBytes += sizeOf(thumbnail);
+
+            Iterator<Map.Entry<String, Image>> eldest = thumbnails.entrySet().iterator();
+            while (memoryBytes > maxMemoryBytes && eldest.hasNext()) {
+                Image evicted = eldest.next().getValue();
+                if (evicted == thumbnail) {
+                    break;
+                }
+                memoryBytes -= sizeOf(evicted);
+                eldest.remove();
+            }
+        }
+    }
+
+    // Декодированное изображение занимает 4 байта на пиксель
+    private static long sizeOf(Image image) {
+        return (long) image.getWidth() * (long) image.getHeight() * 4;
+    }
+
+    private static String key(String artist, String album) {
+        return (artist.trim() + "|" + album.trim()).toLowerCase();
+    }
+}
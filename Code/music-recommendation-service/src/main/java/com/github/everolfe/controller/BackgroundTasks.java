@@ -0,0 +1,173 @@
+package com.github.everolfe.controller;
+
+import javafx.beans.binding.Bindings;
+import javafx.beans.property.IntegerProperty;
+import javafx.beans.property.ReadOnlyBooleanProperty;
+import javafx.beans.property.ReadOnlyBooleanWrapper;
+import javafx.beans.property.ReadOnlyDoubleProperty;
+import javafx.beans.property.ReadOnlyDoubleWrapper;
+import javafx.beans.property.ReadOnlyStringProperty;
+import javafx.beans.property.ReadOnlyStringWrapper;
+import javafx.beans.property.SimpleIntegerProperty;
+import javafx.concurrent.Task;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+/**
+ * Фоновые задачи контроллера: работа с БД и сетью выполняется на исполнителе ввода-вывода,
+ * а результат и ошибка передаются обратно в FX-поток. Задачи именуются ключом:
+ * run() не запускает задачу, пока предыдущая с тем же ключом ещё идёт (повторные клики),
+ * restart() отменяет предыдущую (устаревшая загрузка не перезапишет свежую).
+ * Все методы вызываются только из FX-потока.
+ */
+public final class BackgroundTasks {
+    private static final Logger logger = LoggerFactory.getLogger(BackgroundTasks.class);
+
+    private final Executor executor;
+    private final Map<String, Task<?>> running = new HashMap<>();
+    private final IntegerProperty activeCount = new SimpleIntegerProperty();
+    private final ReadOnlyBooleanWrapper busy = new ReadOnlyBooleanWrapper();
+    private final ReadOnlyStringWrapper message = new ReadOnlyStringWrapper("");
+    private final ReadOnlyDoubleWrapper progress = new ReadOnlyDoubleWrapper(-1);
+
+    public BackgroundTasks(Executor executor) {
+        this.executor = executor;
+        busy.bind(Bindings.greaterThan(activeCount, 0));
+    }
+
+    /**
+     * Фоновая работа; через progress можно сообщать о ходе выполнения и проверять отмену
+     */
+    @FunctionalInterface
+    public interface Work<T> {
+        T call(Progress progress) throws Exception;
+    }
+
+    public interface Progress {
+        void update(long done, long total);
+
+        boolean isCancelled();
+    }
+
+    /**
+     * Запускает задачу, если задача с тем же ключом сейчас не выполняется
+     *
+     * @return false, если запуск пропущен
+     */
+    public <T> boolean run(String key, String description, Work<T> work,
+                           Consumer<T> onSuccess, Consumer<Throwable> onFailure) {
+        if (running.containsKey(key)) {
+            logger.debug("Task '{}' is already running, request ignored", key);
+            return false;
+        }
+        start(key, description, work, onSuccess, onFailure);
+        return true;
+    }
+
+    /**
+     * Запускает задачу, отменяя выполняющуюся с тем же ключом
+     */
+    public <T> void restart(String key, String description, Work<T> work,
+                            Consumer<T> onSuccess, Consumer<Throwable> onFailure) {
+        cancel(key);
+        start(key, description, work, onSuccess, onFailure);
+    }
+
+    public void cancel(String key) {
+        Task<?> task = running.remove(key);
+        if (task != null) {
+            task.cancel(true);
+            finished();
+        }
+    }
+
+    public void cancelAll() {
+        for (String key : new ArrayList<>(running.keySet())) {
+            cancel(key);
+        }
+    }
+
+    /** Выполняется ли хотя бы одна задача */
+    public ReadOnlyBooleanProperty busyProperty() {
+        return busy.getReadOnlyProperty();
+    }
+
+    /** Описание последней запущенной задачи */
+    public ReadOnlyStringProperty messageProperty() {
+        return message.getReadOnlyProperty();
+    }
+
+    /** Ход последней запущенной задачи, -1 - неопределённый */
+    public ReadOnlyDoubleProperty progressProperty() {
+        return progress.getReadOnlyProperty();
+    }
+
+    private <T> void start(String key, String description, Work<T> work,
+                           Consumer<T> onSuccess, Consumer<Throwable> onFailure) {
+        BackgroundTask<T> task = new BackgroundTask<>(work);
+        long startNanos = System.nanoTime();
+
+        task.setOnSucceeded(event -> {
+            if (complete(key, task)) {
+                logger.debug("Task '{}' finished in {} ms", key, (System.nanoTime() - startNanos) / 1_000_000);
+                onSuccess.accept(task.getValue());
+            }
+        });
+        task.setOnFailed(event -> {
+            if (complete(key, task)) {
+                logger.error("Task '{}' failed", key, task.getException());
+                onFailure.accept(task.getException());
+            }
+        });
+
+        running.put(key, task);
+        activeCount.set(activeCount.get() + 1);
+        message.set(description);
+        progress.unbind();
+        progress.bind(task.progressProperty());
+
+        executor.execute(task);
+    }
+
+    // Отменённая задача уже удалена из running и не должна трогать UI
+    private boolean complete(String key, Task<?> task) {
+        if (!running.remove(key, task)) {
+            return false;
+        }
+        finished();
+        return true;
+    }
+
+    private void finished() {
+        activeCount.set(activeCount.get() - 1);
+        if (activeCount.get() == 0) {
+            message.set("");
+            progress.unbind();
+            progress.set(-1);
+        }
+    }
+
+    private static final class BackgroundTask<T> extends Task<T> implements Progress {
+        private final Work<T> work;
+
+        private BackgroundTask(Work<T> work) {
+            this.work = work;
+        }
+
+        @Override
+        protected T call() throws Exception {
+            return work.call(this);
+        }
+
+        @Override
+        public void update(long done, long total) {
+            updateProgress(done, total);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.github.everolfe.controller;
+
+import javafx.application.Platform;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сторож FX-потока: фоновый поток каждые CHECK_INTERVAL_MILLIS ставит в очередь FX-потока
+ * пустую задачу и замеряет, через сколько она выполнится. Если FX-поток не отвечает дольше
+ * порога, в лог пишется длительность зависания и стек FX-потока в момент зависания.
+ */
+public final class FxWatchdog {
+    private static final Logger logger = LoggerFactory.getLogger(FxWatchdog.class);
+
+    private static final long CHECK_INTERVAL_MILLIS = 10;
+
+    private final long thresholdNanos;
+    private final Thread thread;
+    private volatile Thread fxThread;
+    private volatile long answeredNanos;
+
+    private FxWatchdog(long thresholdMillis) {
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+        this.thread = new Thread(this::watch, "fx-watchdog");
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * @param thresholdMillis порог зависания; 0 или меньше - сторож не запускается
+     */
+    public static FxWatchdog start(long thresholdMillis) {
+        FxWatchdog watchdog = new FxWatchdog(thresholdMillis);
+        if (thresholdMillis > 0) {
+            watchdog.thread.start();
+            logger.info("FX thread watchdog started, stall threshold {} ms", thresholdMillis);
+        }
+        return watchdog;
+    }
+
+    public void stop() {
+        thread.interrupt();
+    }
+
+    private void watch() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                long sentNanos = System.nanoTime();
+                answeredNanos = 0;
+                Platform.runLater(() -> {
+                    fxThread = Thread.currentThread();
+                    answeredNanos = System.nanoTime();
+                });
+
+                StackTraceElement[] stallStack = null;
+                while (answeredNanos == 0) {
+                    Thread.sleep(CHECK_INTERVAL_MILLIS);
+                    // Стек снимаем, пока FX-поток ещё занят, - он показывает виновника
+                    if (stallStack == null && fxThread != null && System.nanoTime() - sentNanos > thresholdNanos) {
+                        stallStack = fxThread.getStackTrace();
+                    }
+                }
+
+                long stallNanos = answeredNanos - sentNanos;
+                if (stallNanos > thresholdNanos) {
+                    logger.warn("FX application thread stalled for {} ms{}",
+                            TimeUnit.NANOSECONDS.toMillis(stallNanos), format(stallStack));
+                }
+                Thread.sleep(CHECK_INTERVAL_MILLIS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static String format(StackTraceElement[] stack) {
+        if (stack == null) {
+            return "";
+        }
+        StringBuilder text = new StringBuilder(":");
+        for (StackTraceElement element : stack) {
+            text.append(System.lineSeparator()).append("\tat ").append(element);
+        }
+        return text.toString();
+    }
+}
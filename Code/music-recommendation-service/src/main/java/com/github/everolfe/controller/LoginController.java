@@ -2,6 +2,7 @@ package com.github.everolfe.controller;
 
 import com.github.everolfe.Main;
 import com.github.everolfe.model.User;
+import com.github.everolfe.service.ServiceRegistry;
 import com.github.everolfe.service.UserService;
 import javafx.fxml.FXML;
 import javafx.scene.control.Alert;
@@ -10,12 +11,11 @@ import javafx.scene.control.TextField;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Optional;
-
 public class LoginController {
     private static final Logger logger = LoggerFactory.getLogger(LoginController.class);
 
     private UserService userService;
+    private BackgroundTasks backgroundTasks;
     private Main mainApp;
 
     @FXML private TextField usernameField;
@@ -25,7 +25,9 @@ public class LoginController {
     @FXML private PasswordField registerPasswordField;
 
     public LoginController() {
-        this.userService = new UserService();
+        ServiceRegistry services = ServiceRegistry.getInstance();
+        this.userService = services.getUserService();
+        this.backgroundTasks = new BackgroundTasks(services.getExecutor());
     }
 
     public void setMainApp(Main mainApp) {
@@ -47,19 +49,18 @@ public class LoginController {
             return;
         }
 
-        try {
-            Optional<User> user = userService.login(username, password);
-            if (user.isPresent()) {
-                logger.info("User successfully logged in: {}", username);
-                mainApp.showMainScreen(user.get()); // Передаем пользователя
-                clearLoginFields();
-            } else {
-                showAlert(Alert.AlertType.ERROR, "Ошибка входа", "Неверное имя пользователя или пароль");
-            }
-        } catch (Exception e) {
-            logger.error("Login error", e);
-            showAlert(Alert.AlertType.ERROR, "Ошибка", "Произошла ошибка при входе");
-        }
+        // Повторное нажатие, пока идёт проверка, игнорируется
+        backgroundTasks.run("login", "Вход...", progress -> userService.login(username, password),
+                user -> {
+                    if (user.isPresent()) {
+                        logger.info("User successfully logged in: {}", username);
+                        mainApp.showMainScreen(user.get()); // Передаем пользователя
+                        clearLoginFields();
+                    } else {
+                        showAlert(Alert.AlertType.ERROR, "Ошибка входа", "Неверное имя пользователя или пароль");
+                    }
+                },
+                error -> showAlert(Alert.AlertType.ERROR, "Ошибка", "Произошла ошибка при входе"));
     }
 
     @FXML
@@ -73,25 +74,26 @@ public class LoginController {
             return;
         }
 
-        try {
-            boolean success = userService.register(username, email, password);
-            if (success) {
-                showAlert(Alert.AlertType.INFORMATION, "Успех", "Регистрация прошла успешно!");
-
-                // Автоматически входим после регистрации
-                Optional<User> user = userService.login(username, password);
-                if (user.isPresent()) {
-                    mainApp.showMainScreen(user.get());
-                }
-
-                clearRegisterFields();
-            } else {
-                showAlert(Alert.AlertType.ERROR, "Ошибка регистрации", "Пользователь с таким именем уже существует");
-            }
-        } catch (Exception e) {
-            logger.error("Registration error", e);
-            showAlert(Alert.AlertType.ERROR, "Ошибка", "Произошла ошибка при регистрации");
-        }
+        // null - пользователь уже существует; иначе результат входа после регистрации
+        backgroundTasks.run("register", "Регистрация...",
+                progress -> userService.register(username, email, password)
+                        ? userService.login(username, password)
+                        : null,
+                user -> {
+                    if (user != null) {
+                        showAlert(Alert.AlertType.INFORMATION, "Успех", "Регистрация прошла успешно!");
+
+                        // Автоматически входим после регистрации
+                        if (user.isPresent()) {
+                            mainApp.showMainScreen(user.get());
+                        }
+
+                        clearRegisterFields();
+                    } else {
+                        showAlert(Alert.AlertType.ERROR, "Ошибка регистрации", "Пользователь с таким именем уже существует");
+                    }
+                },
+                error -> showAlert(Alert.AlertType.ERROR, "Ошибка", "Произошла ошибка при регистрации"));
     }
 
     @FXML
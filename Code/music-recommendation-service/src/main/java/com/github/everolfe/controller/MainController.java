@@ -1,7 +1,6 @@
 package com.github.everolfe.controller;
 
 import com.github.everolfe.Main;
-import com.github.everolfe.api.LastFmService;
 import com.github.everolfe.model.Album;
 import com.github.everolfe.model.Recommendation;
 import com.github.everolfe.model.SearchCriteria;
@@ -10,16 +9,19 @@ import com.github.everolfe.model.User;
 import com.github.everolfe.service.MusicCollectionService;
 import com.github.everolfe.service.RecommendationService;
 import com.github.everolfe.service.SearchService;
+import com.github.everolfe.service.ServiceRegistry;
 import com.github.everolfe.service.TrackService;
 import com.github.everolfe.service.UserService;
 import java.util.ArrayList;
 import java.util.stream.Collectors;
+import javafx.animation.PauseTransition;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
 import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.scene.image.Image;
+import javafx.util.Duration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -29,6 +31,11 @@ import javax.swing.text.html.*;
 
 public class MainController {
     private static final Logger logger = LoggerFactory.getLogger(MainController.class);
+    private static final int AUTO_SEARCH_MIN_LENGTH = 2;
+
+    // Ключи фоновых задач, которые перезапускаются при повторной загрузке
+    private static final String RECOMMENDATIONS_TASK = "recommendations";
+    private static final String ALBUM_COVER_TASK = "albumCover";
 
     private Main mainApp;
     private User currentUser;
@@ -36,11 +43,14 @@ public class MainController {
     private MusicCollectionService collectionService;
     private RecommendationService recommendationService;
     private UserService userService;
-    private LastFmService lastFmService;
+    private AlbumCoverCache albumCovers;
+    private Image coverPlaceholder;
 
     // Основные элементы интерфейса
     @FXML private TabPane mainTabPane;
     @FXML private Label userInfoLabel;
+    @FXML private ProgressIndicator backgroundProgress;
+    @FXML private Label backgroundStatusLabel;
 
     // Вкладка поиска музыки
     @FXML private TextField searchField;
@@ -93,21 +103,30 @@ public class MainController {
     @FXML private Label albumInfoLabel;
 
     private SearchService searchService;
+    private BackgroundTasks backgroundTasks;
+    private TrackPager trackPager;
+
+    // Поиск по мере ввода запускается после паузы в наборе
+    private final PauseTransition searchDebounce = new PauseTransition(Duration.millis(300));
+    private SearchService.SearchHandle activeSearch;
+    private long searchGeneration;
 
     private ObservableList<Track> tracksData;
     private ObservableList<Track> collectionData;
     private ObservableList<Recommendation> recommendationsData;
 
     public MainController() {
-        this.trackService = new TrackService();
-        this.collectionService = new MusicCollectionService();
-        this.recommendationService = new RecommendationService();
-        this.userService = new UserService();
-        this.lastFmService = new LastFmService(); //
+        ServiceRegistry services = ServiceRegistry.getInstance();
+        this.trackService = services.getTrackService();
+        this.collectionService = services.getCollectionService();
+        this.recommendationService = services.getRecommendationService();
+        this.userService = services.getUserService();
+        this.albumCovers = AlbumCoverCache.getInstance();
         this.tracksData = FXCollections.observableArrayList();
         this.collectionData = FXCollections.observableArrayList();
         this.recommendationsData = FXCollections.observableArrayList();
-        this.searchService = new SearchService();
+        this.searchService = services.getSearchService();
+        this.backgroundTasks = new BackgroundTasks(services.getExecutor());
     }
 
     public void setMainApp(Main mainApp) {
@@ -122,7 +141,11 @@ public class MainController {
     @FXML
     private void initialize() {
         logger.info("MainController initialized");
+        backgroundProgress.visibleProperty().bind(backgroundTasks.busyProperty());
+        backgroundProgress.progressProperty().bind(backgroundTasks.progressProperty());
+        backgroundStatusLabel.textProperty().bind(backgroundTasks.messageProperty());
         setupTracksTable();
+        trackPager = new TrackPager(tracksTable, tracksData, trackService, backgroundTasks);
         setupCollectionTable();
         setupRecommendationsTable();
         loadAllTracks();
@@ -137,6 +160,15 @@ public class MainController {
         recommendationsTable.getSelectionModel().selectedItemProperty().addListener(
                 (observable, oldValue, newValue) -> onRecommendationSelected(newValue));
 
+        searchDebounce.setOnFinished(event -> handleSearch());
+        searchField.textProperty().addListener((observable, oldValue, newValue) -> {
+            if (newValue != null && newValue.trim().length() >= AUTO_SEARCH_MIN_LENGTH) {
+                searchDebounce.playFromStart();
+            } else {
+                searchDebounce.stop();
+            }
+        });
+
         ratingSlider.valueProperty().addListener((observable, oldValue, newValue) -> {
             ratingLabel.setText(String.format("Оценка: %.0f", newValue));
         });
@@ -192,14 +224,6 @@ public class MainController {
         }
     }
 
-    private void updateTrackCount() {
-        int totalTracks = tracksData.size();
-        int dbTracks = (int) tracksData.stream().filter(t -> t.getId() > 0).count();
-        int apiTracks = (int) tracksData.stream().filter(t -> t.getId() <= 0).count();
-
-        logger.info("Total tracks: {} (DB: {}, API: {})", totalTracks, dbTracks, apiTracks);
-    }
-
     private void onCollectionTrackSelected(Track track) {
         if (track != null && currentUser != null) {
             // Устанавливаем слайдер рейтинга на значение из коллекции
@@ -262,30 +286,96 @@ public class MainController {
         String query = searchField.getText();
 
         if (query == null || query.trim().isEmpty()) {
+            searchDebounce.stop();
+            cancelActiveSearch();
             loadAllTracks();
             return;
         }
 
         logger.info("Starting quick search for: '{}'", query);
 
-        try {
-            tracksTable.setPlaceholder(new Label("Поиск..."));
-            List<Track> searchResults = searchService.quickSearch(query);
-            tracksData.setAll(searchResults);
+        SearchCriteria criteria = new SearchCriteria();
+        criteria.setQuery(query);
+        startSearch(criteria, "Ничего не найдено для: " + query);
+    }
 
-            logger.info("Quick search completed, found {} tracks for: '{}'", searchResults.size(), query);
+    /**
+     * Потоковый поиск: локальные результаты показываются сразу, результаты Last.fm
+     * дописываются по готовности, а треки обновляются по мере загрузки сведений об альбоме.
+     * Предыдущий незавершённый поиск отменяется.
+     */
+    private void startSearch(SearchCriteria criteria, String emptyMessage) {
+        searchDebounce.stop();
+        cancelActiveSearch();
+        trackPager.stop();
+        long generation = searchGeneration;
+        long start = System.nanoTime();
+
+        tracksData.clear();
+        tracksTable.setPlaceholder(new Label("Поиск..."));
+
+        activeSearch = searchService.streamSearch(criteria, new SearchService.SearchListener() {
+            @Override
+            public void onLocalResults(List<Track> tracks) {
+                runIfCurrentSearch(generation, () -> {
+                    tracksData.addAll(tracks);
+                    logger.debug("Local search results shown in {} ms", (System.nanoTime() - start) / 1_000_000);
+                });
+            }
 
-            if (searchResults.isEmpty()) {
-                tracksTable.setPlaceholder(new Label("Ничего не найдено для: " + query));
+            @Override
+            public void onRemoteResults(List<Track> tracks) {
+                runIfCurrentSearch(generation, () -> tracksData.addAll(tracks));
             }
 
-        } catch (Exception e) {
-            logger.error("Error during quick search for: '{}'", query, e);
-            tracksTable.setPlaceholder(new Label("Ошибка при поиске"));
-            showAlert(Alert.AlertType.ERROR, "Ошибка поиска", "Произошла ошибка при поиске: " + e.getMessage());
+            @Override
+            public void onTrackReplaced(Track previous, Track replacement) {
+                runIfCurrentSearch(generation, () -> {
+                    // Track.equals сравнивает название и исполнителя, поэтому ищем именно этот объект
+                    for (int i = 0; i < tracksData.size(); i++) {
+                        if (tracksData.get(i) == previous) {
+                            if (replacement != null) {
+                                tracksData.set(i, replacement);
+                            } else {
+                                tracksData.remove(i);
+                            }
+                            break;
+                        }
+                    }
+                });
+            }
+
+            @Override
+            public void onComplete() {
+                runIfCurrentSearch(generation, () -> {
+                    activeSearch = null;
+                    if (tracksData.isEmpty()) {
+                        tracksTable.setPlaceholder(new Label(emptyMessage));
+                    }
+                    logger.info("Search completed in {} ms, found {} tracks",
+                            (System.nanoTime() - start) / 1_000_000, tracksData.size());
+                });
+            }
+        });
+    }
+
+    private void cancelActiveSearch() {
+        // Уже поставленные в очередь FX-потока обновления отсеиваются по номеру поиска
+        searchGeneration++;
+        if (activeSearch != null) {
+            activeSearch.cancel();
+            activeSearch = null;
         }
     }
 
+    private void runIfCurrentSearch(long generation, Runnable update) {
+        javafx.application.Platform.runLater(() -> {
+            if (generation == searchGeneration) {
+                update.run();
+            }
+        });
+    }
+
     @FXML
     private void handleAddToCollection() {
         if (currentUser == null) {
@@ -299,25 +389,21 @@ public class MainController {
             return;
         }
 
-        try {
+        int rating = (int) ratingSlider.getValue();
+        Long userId = currentUser.getId();
 
-            int rating = (int) ratingSlider.getValue();
-
-
-            MusicCollectionService.AddTrackResult result =
-                    collectionService.addTrackToCollection(currentUser.getId(), selectedTrack, rating);
-
-            if (result.isSuccess()) {
-                showAlert(Alert.AlertType.INFORMATION, "Успех", result.getMessage());
-                loadUserCollection(); // Обновляем коллекцию
-                ratingSlider.setValue(3);
-            } else {
-                showAlert(Alert.AlertType.WARNING, "Внимание", result.getMessage());
-            }
-        } catch (Exception e) {
-            logger.error("Error adding track to collection", e);
-            showAlert(Alert.AlertType.ERROR, "Ошибка", "Произошла ошибка при добавлении трека");
-        }
+        backgroundTasks.run("addToCollection", "Добавление в коллекцию...",
+                progress -> collectionService.addTrackToCollection(userId, selectedTrack, rating),
+                result -> {
+                    if (result.isSuccess()) {
+                        showAlert(Alert.AlertType.INFORMATION, "Успех", result.getMessage());
+                        loadUserCollection(); // Обновляем коллекцию
+                        ratingSlider.setValue(3);
+                    } else {
+                        showAlert(Alert.AlertType.WARNING, "Внимание", result.getMessage());
+                    }
+                },
+                error -> showAlert(Alert.AlertType.ERROR, "Ошибка", "Произошла ошибка при добавлении трека"));
     }
 
     @FXML
@@ -333,21 +419,11 @@ public class MainController {
             return;
         }
 
-        try {
-            int rating = (int) ratingSliderCollection.getValue();
-            boolean success = collectionService.updateRating(currentUser.getId(), selectedTrack.getId(), rating);
-            if (success) {
-                showAlert(Alert.AlertType.INFORMATION, "Успех",
-                        "Рейтинг трека '" + selectedTrack.getTitle() + "' обновлен на " + rating);
-                loadUserCollection(); // Обновляем коллекцию
-            } else {
-                showAlert(Alert.AlertType.ERROR, "Ошибка", "Не удалось обновить рейтинг");
-            }
-        } catch (Exception e) {
-            logger.error("Error updating rating in collection", e);
-            showAlert(Alert.AlertType.ERROR, "Ошибка", "Произошла ошибка при обновлении рейтинга");
-        }
+        int rating = (int) ratingSliderCollection.getValue();
+        updateRating(selectedTrack, rating,
+                "Рейтинг трека '" + selectedTrack.getTitle() + "' обновлен на " + rating);
     }
+
     @FXML
     private void handleRemoveFromCollection() {
         if (currentUser == null) {
@@ -361,18 +437,18 @@ public class MainController {
             return;
         }
 
-        try {
-            boolean success = collectionService.removeFromCollection(currentUser.getId(), selectedTrack.getId());
-            if (success) {
-                showAlert(Alert.AlertType.INFORMATION, "Успех", "Трек удален из коллекции");
-                loadUserCollection(); // Обновляем коллекцию
-            } else {
-                showAlert(Alert.AlertType.ERROR, "Ошибка", "Не удалось удалить трек из коллекции");
-            }
-        } catch (Exception e) {
-            logger.error("Error removing track from collection", e);
-            showAlert(Alert.AlertType.ERROR, "Ошибка", "Произошла ошибка при удалении трека");
-        }
+        Long userId = currentUser.getId();
+        backgroundTasks.run("removeFromCollection", "Удаление из коллекции...",
+                progress -> collectionService.removeFromCollection(userId, selectedTrack.getId()),
+                success -> {
+                    if (success) {
+                        showAlert(Alert.AlertType.INFORMATION, "Успех", "Трек удален из коллекции");
+                        loadUserCollection(); // Обновляем коллекцию
+                    } else {
+                        showAlert(Alert.AlertType.ERROR, "Ошибка", "Не удалось удалить трек из коллекции");
+                    }
+                },
+                error -> showAlert(Alert.AlertType.ERROR, "Ошибка", "Произошла ошибка при удалении трека"));
     }
 
     @FXML
@@ -388,19 +464,22 @@ public class MainController {
             return;
         }
 
-        try {
-            int rating = (int) ratingSlider.getValue();
-            boolean success = collectionService.updateRating(currentUser.getId(), selectedTrack.getId(), rating);
-            if (success) {
-                showAlert(Alert.AlertType.INFORMATION, "Успех", "Рейтинг обновлен");
-                loadUserCollection(); // Обновляем коллекцию
-            } else {
-                showAlert(Alert.AlertType.ERROR, "Ошибка", "Не удалось обновить рейтинг");
-            }
-        } catch (Exception e) {
-            logger.error("Error updating rating", e);
-            showAlert(Alert.AlertType.ERROR, "Ошибка", "Произошла ошибка при обновлении рейтинга");
-        }
+        updateRating(selectedTrack, (int) ratingSlider.getValue(), "Рейтинг обновлен");
+    }
+
+    private void updateRating(Track track, int rating, String successMessage) {
+        Long userId = currentUser.getId();
+        backgroundTasks.run("updateRating", "Обновление рейтинга...",
+                progress -> collectionService.updateRating(userId, track.getId(), rating),
+                success -> {
+                    if (success) {
+                        showAlert(Alert.AlertType.INFORMATION, "Успех", successMessage);
+                        loadUserCollection(); // Обновляем коллекцию
+                    } else {
+                        showAlert(Alert.AlertType.ERROR, "Ошибка", "Не удалось обновить рейтинг");
+                    }
+                },
+                error -> showAlert(Alert.AlertType.ERROR, "Ошибка", "Произошла ошибка при обновлении рейтинга"));
     }
 
     @FXML
@@ -416,19 +495,19 @@ public class MainController {
             return;
         }
 
-        try {
-            boolean success = collectionService.toggleFavorite(currentUser.getId(), selectedTrack.getId());
-            if (success) {
-                String message = selectedTrack.getFavorite() ? "Трек убран из избранного" : "Трек добавлен в избранное";
-                showAlert(Alert.AlertType.INFORMATION, "Успех", message);
-                loadUserCollection(); // Обновляем коллекцию
-            } else {
-                showAlert(Alert.AlertType.ERROR, "Ошибка", "Не удалось обновить статус избранного");
-            }
-        } catch (Exception e) {
-            logger.error("Error toggling favorite", e);
-            showAlert(Alert.AlertType.ERROR, "Ошибка", "Произошла ошибка при обновлении статуса");
-        }
+        Long userId = currentUser.getId();
+        String message = selectedTrack.getFavorite() ? "Трек убран из избранного" : "Трек добавлен в избранное";
+        backgroundTasks.run("toggleFavorite", "Обновление избранного...",
+                progress -> collectionService.toggleFavorite(userId, selectedTrack.getId()),
+                success -> {
+                    if (success) {
+                        showAlert(Alert.AlertType.INFORMATION, "Успех", message);
+                        loadUserCollection(); // Обновляем коллекцию
+                    } else {
+                        showAlert(Alert.AlertType.ERROR, "Ошибка", "Не удалось обновить статус избранного");
+                    }
+                },
+                error -> showAlert(Alert.AlertType.ERROR, "Ошибка", "Произошла ошибка при обновлении статуса"));
     }
 
     @FXML
@@ -438,41 +517,29 @@ public class MainController {
             return;
         }
 
-        try {
-            // Показываем индикатор загрузки
-            recommendationsTable.setPlaceholder(new Label("Генерация новых рекомендаций..."));
-
-            // 🔥 ИСПРАВЛЕНИЕ: Используем новый метод принудительной генерации
-            new Thread(() -> {
-                try {
-                    List<Recommendation> newRecommendations =
-                            recommendationService.generateNewRecommendations(currentUser.getId());
-
-                    // Обновляем UI в главном потоке
-                    javafx.application.Platform.runLater(() -> {
-                        recommendationsData.setAll(newRecommendations);
+        Long userId = currentUser.getId();
+        // Пока рекомендации генерируются, повторные нажатия игнорируются
+        boolean started = backgroundTasks.run(RECOMMENDATIONS_TASK, "Генерация рекомендаций...",
+                progress -> recommendationService.generateNewRecommendations(userId),
+                newRecommendations -> {
+                    recommendationsData.setAll(newRecommendations);
 
-                        if (newRecommendations.isEmpty()) {
-                            recommendationsTable.setPlaceholder(new Label("Не удалось сгенерировать рекомендации. Добавьте больше треков в коллекцию."));
-                        } else {
-                            recommendationsTable.setPlaceholder(null);
-                            showAlert(Alert.AlertType.INFORMATION, "Успех",
-                                    "Сгенерировано " + newRecommendations.size() + " новых рекомендаций!");
-                        }
-                    });
-
-                } catch (Exception e) {
-                    logger.error("Error generating new recommendations", e);
-                    javafx.application.Platform.runLater(() -> {
-                        showAlert(Alert.AlertType.ERROR, "Ошибка", "Не удалось сгенерировать новые рекомендации");
-                        recommendationsTable.setPlaceholder(new Label("Ошибка генерации рекомендаций"));
-                    });
-                }
-            }).start();
+                    if (newRecommendations.isEmpty()) {
+                        recommendationsTable.setPlaceholder(new Label("Не удалось сгенерировать рекомендации. Добавьте больше треков в коллекцию."));
+                    } else {
+                        recommendationsTable.setPlaceholder(null);
+                        showAlert(Alert.AlertType.INFORMATION, "Успех",
+                                "Сгенерировано " + newRecommendations.size() + " новых рекомендаций!");
+                    }
+                },
+                error -> {
+                    showAlert(Alert.AlertType.ERROR, "Ошибка", "Не удалось сгенерировать новые рекомендации");
+                    recommendationsTable.setPlaceholder(new Label("Ошибка генерации рекомендаций"));
+                });
 
-        } catch (Exception e) {
-            logger.error("Error refreshing recommendations", e);
-            showAlert(Alert.AlertType.ERROR, "Ошибка", "Не удалось обновить рекомендации");
+        if (started) {
+            // Показываем индикатор загрузки
+            recommendationsTable.setPlaceholder(new Label("Генерация новых рекомендаций..."));
         }
     }
 
@@ -486,16 +553,15 @@ public class MainController {
             return;
         }
 
-        try {
-            boolean success = recommendationService.markRecommendationAsViewed(selectedRec.getId());
-            if (success) {
-                loadUserRecommendations(); // Обновляем список
-                showAlert(Alert.AlertType.INFORMATION, "Успех", "Рекомендация отмечена как просмотренная");
-            }
-        } catch (Exception e) {
-            logger.error("Error marking recommendation as viewed", e);
-            showAlert(Alert.AlertType.ERROR, "Ошибка", "Ошибка при отметке рекомендации");
-        }
+        backgroundTasks.run("markAsViewed", "Обновление рекомендации...",
+                progress -> recommendationService.markRecommendationAsViewed(selectedRec.getId()),
+                success -> {
+                    if (success) {
+                        loadUserRecommendations(); // Обновляем список
+                        showAlert(Alert.AlertType.INFORMATION, "Успех", "Рекомендация отмечена как просмотренная");
+                    }
+                },
+                error -> showAlert(Alert.AlertType.ERROR, "Ошибка", "Ошибка при отметке рекомендации"));
     }
 
     @FXML
@@ -511,36 +577,42 @@ public class MainController {
             return;
         }
 
-        try {
-            // Получаем полную информацию о треке
-            Track recommendedTrack = trackService.getTrackById(selectedRec.getTrackId());
-            if (recommendedTrack == null) {
-                showAlert(Alert.AlertType.ERROR, "Ошибка", "Трек не найден");
-                return;
-            }
-
-            MusicCollectionService.AddTrackResult result =
-                    collectionService.addTrackToCollection(currentUser.getId(), recommendedTrack,3);
-
-            if (result.isSuccess()) {
-                // Помечаем рекомендацию как просмотренную
-                recommendationService.markRecommendationAsViewed(selectedRec.getId());
-
-                showAlert(Alert.AlertType.INFORMATION, "Успех",
-                        "Трек '" + recommendedTrack.getTitle() + "' добавлен в коллекцию!");
-
-                // Обновляем коллекцию и рекомендации
-                loadUserCollection();
-                loadUserRecommendations();
+        Long userId = currentUser.getId();
+        // null - трек не найден
+        backgroundTasks.run("addRecommended", "Добавление в коллекцию...", progress -> {
+                    // Получаем полную информацию о треке
+                    Track recommendedTrack = trackService.getTrackById(selectedRec.getTrackId());
+                    if (recommendedTrack == null) {
+                        return null;
+                    }
+                    progress.update(1, 3);
 
-            } else {
-                showAlert(Alert.AlertType.WARNING, "Внимание", result.getMessage());
-            }
+                    MusicCollectionService.AddTrackResult result =
+                            collectionService.addTrackToCollection(userId, recommendedTrack, 3);
+                    progress.update(2, 3);
 
-        } catch (Exception e) {
-            logger.error("Error adding recommended track to collection", e);
-            showAlert(Alert.AlertType.ERROR, "Ошибка", "Произошла ошибка при добавлении трека");
-        }
+                    if (result.isSuccess()) {
+                        // Помечаем рекомендацию как просмотренную
+                        recommendationService.markRecommendationAsViewed(selectedRec.getId());
+                    }
+                    progress.update(3, 3);
+                    return result;
+                },
+                result -> {
+                    if (result == null) {
+                        showAlert(Alert.AlertType.ERROR, "Ошибка", "Трек не найден");
+                    } else if (result.isSuccess()) {
+                        showAlert(Alert.AlertType.INFORMATION, "Успех",
+                                "Трек '" + selectedRec.getTrackTitle() + "' добавлен в коллекцию!");
+
+                        // Обновляем коллекцию и рекомендации
+                        loadUserCollection();
+                        loadUserRecommendations();
+                    } else {
+                        showAlert(Alert.AlertType.WARNING, "Внимание", result.getMessage());
+                    }
+                },
+                error -> showAlert(Alert.AlertType.ERROR, "Ошибка", "Произошла ошибка при добавлении трека"));
     }
 
     private void onRecommendationSelected(Recommendation recommendation) {
@@ -557,67 +629,61 @@ public class MainController {
     @FXML
     private void handleLogout() {
         logger.info("User logging out");
+        cancelActiveSearch();
+        backgroundTasks.cancelAll();
         if (mainApp != null) {
             mainApp.showLoginScreen();
         }
     }
 
     private void loadAllTracks() {
-        try {
-            tracksTable.setPlaceholder(new Label("Загрузка треков..."));
-            List<Track> tracks = trackService.getAllTracks();
-            tracksData.setAll(tracks);
-            logger.info("Successfully loaded {} tracks", tracks.size());
-            updateTrackCount();
-        } catch (Exception e) {
-            logger.error("Error loading tracks", e);
-            tracksTable.setPlaceholder(new Label("Ошибка загрузки треков"));
-            showAlert(Alert.AlertType.ERROR, "Ошибка", "Не удалось загрузить треки: " + e.getMessage());
-        }
+        // Каталог подгружается страницами по мере прокрутки таблицы
+        trackPager.start();
     }
 
     private void loadUserCollection() {
         if (currentUser != null) {
-            try {
-                logger.info("Loading collection for user: {}", currentUser.getUsername());
-
-                List<Track> userTracks = collectionService.getUserCollection(currentUser.getId());
-                collectionData.setAll(userTracks);
-
-                logger.info("Successfully loaded {} tracks to collection table", userTracks.size());
-
-                // Обновляем таблицу
-                collectionTable.refresh();
-
-            } catch (Exception e) {
-                logger.error("Error loading user collection", e);
-                collectionData.clear();
-                showAlert(Alert.AlertType.ERROR, "Ошибка", "Не удалось загрузить коллекцию");
-            }
+            logger.info("Loading collection for user: {}", currentUser.getUsername());
+
+            Long userId = currentUser.getId();
+            backgroundTasks.restart("collection", "Загрузка коллекции...",
+                    progress -> collectionService.getUserCollection(userId),
+                    userTracks -> {
+                        collectionData.setAll(userTracks);
+
+                        logger.info("Successfully loaded {} tracks to collection table", userTracks.size());
+
+                        // Обновляем таблицу
+                        collectionTable.refresh();
+                    },
+                    error -> {
+                        collectionData.clear();
+                        showAlert(Alert.AlertType.ERROR, "Ошибка", "Не удалось загрузить коллекцию");
+                    });
         }
     }
 
     private void loadUserRecommendations() {
         if (currentUser != null) {
-            try {
-                logger.info("Loading recommendations for user: {}", currentUser.getUsername());
+            logger.info("Loading recommendations for user: {}", currentUser.getUsername());
 
-                List<Recommendation> userRecommendations =
-                        recommendationService.generateNewRecommendations(currentUser.getId());
+            Long userId = currentUser.getId();
+            recommendationsTable.setPlaceholder(new Label("Загрузка рекомендаций..."));
+            backgroundTasks.restart(RECOMMENDATIONS_TASK, "Загрузка рекомендаций...",
+                    progress -> recommendationService.generateNewRecommendations(userId),
+                    userRecommendations -> {
+                        recommendationsData.setAll(userRecommendations);
 
-                recommendationsData.setAll(userRecommendations);
+                        logger.info("Successfully loaded {} recommendations", userRecommendations.size());
 
-                logger.info("Successfully loaded {} recommendations", userRecommendations.size());
-
-                if (userRecommendations.isEmpty()) {
-                    recommendationsTable.setPlaceholder(new Label("Нет новых рекомендаций. Обновите список."));
-                }
-
-            } catch (Exception e) {
-                logger.error("Error loading user recommendations", e);
-                recommendationsData.clear();
-                recommendationsTable.setPlaceholder(new Label("Ошибка загрузки рекомендаций"));
-            }
+                        if (userRecommendations.isEmpty()) {
+                            recommendationsTable.setPlaceholder(new Label("Нет новых рекомендаций. Обновите список."));
+                        }
+                    },
+                    error -> {
+                        recommendationsData.clear();
+                        recommendationsTable.setPlaceholder(new Label("Ошибка загрузки рекомендаций"));
+                    });
         }
     }
 
@@ -650,16 +716,7 @@ public class MainController {
             }
 
             // Выполняем поиск треков
-            List<Track> results = searchService.searchTracks(criteria);
-            tracksData.setAll(results);
-
-            if (results.isEmpty()) {
-                tracksTable.setPlaceholder(new Label("Ничего не найдено"));
-            } else {
-                tracksTable.setPlaceholder(null);
-            }
-
-            logger.info("Advanced search completed. Found {} tracks", results.size());
+            startSearch(criteria, "Ничего не найдено");
 
         } catch (Exception e) {
             logger.error("Error during advanced search", e);
@@ -746,51 +803,52 @@ public class MainController {
                 artist.isEmpty() || albumTitle.isEmpty() ||
                 albumTitle.startsWith("[АЛЬБОМ]") || albumTitle.startsWith("[ИСПОЛНИТЕЛЬ]")) {
 
-            // Устанавливаем placeholder (если файл существует)
-            try {
-                Image placeholder = new Image(getClass().getResourceAsStream("/images/placeholder_album.png"));
-                albumCoverImage.setImage(placeholder);
-            } catch (Exception e) {
-                // Если файла нет, создаем пустое изображение
-                albumCoverImage.setImage(null);
-            }
-            albumInfoLabel.setText("Обложка не доступна");
+            backgroundTasks.cancel(ALBUM_COVER_TASK);
+            showCoverPlaceholder("Обложка не доступна");
             return;
         }
 
-        try {
-            // Используем Last.fm для получения обложки
-            LastFmService.AlbumInfo albumInfo = lastFmService.getAlbumInfo(artist, albumTitle);
+        // Повторный показ обложки не требует ни диска, ни сети
+        Image cached = albumCovers.getCached(artist, albumTitle);
+        if (cached != null) {
+            backgroundTasks.cancel(ALBUM_COVER_TASK);
+            showCover(cached, artist, albumTitle);
+            return;
+        }
 
-            if (albumInfo != null && albumInfo.getCoverUrl() != null && !albumInfo.getCoverUrl().isEmpty()) {
-                // Загружаем обложку из URL
-                Image image = new Image(albumInfo.getCoverUrl(), true); // true для асинхронной загрузки
+        // Пока обложка загружается, вместо неё показывается заглушка, а не обложка прошлого трека
+        showCoverPlaceholder("Загрузка обложки...");
+        // При быстром переключении треков загружается обложка только последнего
+        backgroundTasks.restart(ALBUM_COVER_TASK, "Загрузка обложки...",
+                progress -> albumCovers.load(artist, albumTitle),
+                image -> {
+                    if (image != null) {
+                        showCover(image, artist, albumTitle);
+                    } else {
+                        // Обложка не найдена
+                        showCoverPlaceholder("Обложка не найдена");
+                    }
+                },
+                error -> showCoverPlaceholder("Ошибка загрузки"));
+    }
 
-                // ✅ Устанавливаем изображение правильно
-                albumCoverImage.setImage(image);
-                albumInfoLabel.setText(albumTitle + " - " + artist);
+    private void showCover(Image image, String artist, String albumTitle) {
+        albumCoverImage.setImage(image);
+        albumInfoLabel.setText(albumTitle + " - " + artist);
+        logger.debug("Album cover shown: {} - {}", artist, albumTitle);
+    }
 
-                logger.info("Album cover loaded: {} - {}", artist, albumTitle);
-            } else {
-                // Обложка не найдена
-                try {
-                    Image placeholder = new Image(getClass().getResourceAsStream("/images/placeholder_album.png"));
-                    albumCoverImage.setImage(placeholder);
-                } catch (Exception e) {
-                    albumCoverImage.setImage(null);
-                }
-                albumInfoLabel.setText("Обложка не найдена");
-            }
-        } catch (Exception e) {
-            logger.error("Error loading album cover for: {} - {}", artist, albumTitle, e);
+    private void showCoverPlaceholder(String message) {
+        if (coverPlaceholder == null) {
             try {
-                Image placeholder = new Image(getClass().getResourceAsStream("/images/placeholder_album.png"));
-                albumCoverImage.setImage(placeholder);
-            } catch (Exception ex) {
-                albumCoverImage.setImage(null);
+                coverPlaceholder = new Image(getClass().getResourceAsStream("/images/placeholder_album.png"));
+            } catch (Exception e) {
+                // Если файла нет, показываем пустое изображение
+                logger.debug("Album cover placeholder is not available", e);
             }
-            albumInfoLabel.setText("Ошибка загрузки");
         }
+        albumCoverImage.setImage(coverPlaceholder);
+        albumInfoLabel.setText(message);
     }
 
     private void clearTrackDetails() {
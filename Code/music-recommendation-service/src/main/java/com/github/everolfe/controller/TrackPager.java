@@ -0,0 +1,139 @@
+package com.github.everolfe.controller;
+
+import com.github.everolfe.model.Track;
+import com.github.everolfe.service.TrackService;
+import javafx.collections.ObservableList;
+import javafx.scene.control.Label;
+import javafx.scene.control.TableRow;
+import javafx.scene.control.TableView;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Постраничный просмотр каталога в таблице треков. Следующая страница запрашивается
+ * по ключу последнего загруженного трека, когда таблица отрисовывает строки рядом с концом
+ * списка (TableView создаёт строки только для видимой области). После последней страницы
+ * локального каталога один раз дописываются популярные треки Last.fm.
+ * Все методы вызываются из FX-потока.
+ */
+public final class TrackPager {
+    private static final Logger logger = LoggerFactory.getLogger(TrackPager.class);
+
+    static final int PAGE_SIZE = 200;
+    // Следующая страница запрашивается, когда до конца загруженного списка осталось столько строк
+    private static final int PREFETCH_ROWS = 50;
+    private static final String PAGE_TASK = "tracksPage";
+
+    private final TableView<Track> table;
+    private final ObservableList<Track> items;
+    private final TrackService trackService;
+    private final BackgroundTasks backgroundTasks;
+
+    private boolean active;
+    private boolean catalogExhausted;
+    private boolean finished;
+    private Track lastCatalogTrack;
+
+    public TrackPager(TableView<Track> table, ObservableList<Track> items,
+                      TrackService trackService, BackgroundTasks backgroundTasks) {
+        this.table = table;
+        this.items = items;
+        this.trackService = trackService;
+        this.backgroundTasks = backgroundTasks;
+
+        table.setRowFactory(view -> new TableRow<>() {
+            @Override
+            public void updateIndex(int index) {
+                super.updateIndex(index);
+                if (index >= 0 && index >= items.size() - PREFETCH_ROWS) {
+                    loadNextPage();
+                }
+            }
+        });
+    }
+
+    /**
+     * Начинает просмотр каталога с первой страницы
+     */
+    public void start() {
+        stop();
+        items.clear();
+        active = true;
+        catalogExhausted = false;
+        finished = false;
+        lastCatalogTrack = null;
+        table.setPlaceholder(new Label("Загрузка треков..."));
+        loadNextPage();
+    }
+
+    /**
+     * Прекращает подгрузку страниц, например когда таблица показывает результаты поиска
+     */
+    public void stop() {
+        active = false;
+        backgroundTasks.cancel(PAGE_TASK);
+    }
+
+    private void loadNextPage() {
+        if (!active || finished) {
+            return;
+        }
+        if (catalogExhausted) {
+            loadPopularTracks();
+            return;
+        }
+
+        Track after = lastCatalogTrack;
+        // Пока страница загружается, повторные запросы от прокрутки игнорируются
+        backgroundTasks.run(PAGE_TASK, "Загрузка треков...",
+                progress -> trackService.getCatalogPage(after, PAGE_SIZE),
+                page -> {
+                    if (!page.isEmpty()) {
+                        lastCatalogTrack = page.get(page.size() - 1);
+                        items.addAll(page);
+                    }
+                    if (page.size() < PAGE_SIZE) {
+                        catalogExhausted = true;
+                        logger.info("Catalog loaded: {} tracks", items.size());
+                    }
+                    // Страница могла не заполнить видимую область - тогда прокрутки не будет
+                    if (items.size() < PREFETCH_ROWS || catalogExhausted) {
+                        loadNextPage();
+                    }
+                },
+                error -> table.setPlaceholder(new Label("Ошибка загрузки треков")));
+    }
+
+    private void loadPopularTracks() {
+        backgroundTasks.run(PAGE_TASK, "Загрузка популярных треков...",
+                progress -> trackService.getPopularTracks(),
+                popular -> {
+                    finished = true;
+                    Set<String> shown = new HashSet<>();
+                    for (Track track : items) {
+                        shown.add(key(track));
+                    }
+                    List<Track> unique = new ArrayList<>();
+                    for (Track track : popular) {
+                        if (shown.add(key(track))) {
+                            unique.add(track);
+                        }
+                    }
+                    items.addAll(unique);
+                    if (items.isEmpty()) {
+                        table.setPlaceholder(new Label("Треки не найдены"));
+                    }
+                    logger.info("Added {} popular tracks from Last.fm", unique.size());
+                },
+                error -> finished = true);
+    }
+
+    private static String key(Track track) {
+        return (track.getTitle() + "|" + track.getArtistName()).toLowerCase();
+    }
+}
@@ -0,0 +1,277 @@
+package com.github.everolfe.database;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.everolfe.database.dao.TrackDAO;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Загрузка большого каталога (артисты, альбомы, треки, жанры) для нагрузочного тестирования.
+ * Файл потоком передаётся через COPY во временную staging-таблицу, после чего каталог
+ * сливается в artists, albums, tracks, genres и track_genres несколькими INSERT ... SELECT
+ * в одной транзакции. Уже существующие записи (сравнение без учёта регистра) не дублируются.
+ *
+ * Форматы:
+ * <ul>
+ *     <li>CSV с заголовком: artist,album,title,duration,genres (жанры через '|')</li>
+ *     <li>JSONL: {"artist": ..., "album": ..., "title": ..., "duration": 200, "genres": ["Rock", "Pop"]}</li>
+ * </ul>
+ *
+ * Запуск: mvn exec:java -Dexec.mainClass=com.github.everolfe.database.CatalogImporter -Dexec.args="catalog.csv"
+ */
+public class CatalogImporter {
+    private static final Logger logger = LoggerFactory.getLogger(CatalogImporter.class);
+
+    private static final String STAGING_TABLE = "catalog_staging";
+    private static final int COPY_BUFFER_CHARS = 64 * 1024;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.err.println("Usage: CatalogImporter <catalog.csv|catalog.jsonl>");
+            return;
+        }
+
+        DatabaseConnection.initialize();
+        if (!DatabaseConnection.isInitialized()) {
+            System.err.println("Database is not available");
+            return;
+        }
+
+        try {
+            new CatalogImporter().importFile(Paths.get(args[0]));
+        } catch (IOException | SQLException e) {
+            logger.error("Catalog import failed: {}", args[0], e);
+        } finally {
+            DatabaseConnection.closeDataSource();
+        }
+    }
+
+    /**
+     * Импортирует файл каталога; формат определяется по расширению (.jsonl или .csv)
+     */
+    public void importFile(Path file) throws IOException, SQLException {
+        boolean jsonLines = file.getFileName().toString().toLowerCase().endsWith(".jsonl");
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            importCatalog(reader, jsonLines);
+        }
+        logger.info("Catalog file imported: {}", file);
+    }
+
+    /**
+     * Импортирует каталог из потока (CSV с заголовком или JSONL) в одной транзакции
+     */
+    public void importCatalog(Reader source, boolean jsonLines) throws IOException, SQLException {
+        long startNanos = System.nanoTime();
+
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                try (PreparedStatement stmt = conn.prepareStatement("SELECT pg_advisory_xact_lock(?)")) {
+                    stmt.setLong(1, TrackDAO.IMPORT_LOCK_KEY);
+                    stmt.execute();
+                }
+                createStagingTable(conn);
+
+                CopyManager copyManager = conn.unwrap(PGConnection.class).getCopyAPI();
+                long copied = jsonLines
+                        ? copyJsonLines(copyManager, new BufferedReader(source, COPY_BUFFER_CHARS))
+                        : copyCsv(copyManager, source);
+                report("copy", copied, startNanos);
+
+                merge(conn);
+                conn.commit();
+            } catch (IOException | SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+
+        logger.info("Catalog imported in {} ms", (System.nanoTime() - startNanos) / 1_000_000);
+    }
+
+    private void createStagingTable(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            // Временная таблица не пишется в WAL и удаляется вместе с транзакцией
+            stmt.execute("CREATE TEMP TABLE " + STAGING_TABLE + " (" +
+                    "artist TEXT, album TEXT, title TEXT, duration INTEGER, genres TEXT" +
+                    ") ON COMMIT DROP");
+        }
+    }
+
+    private long copyCsv(CopyManager copyManager, Reader reader) throws SQLException, IOException {
+        return copyManager.copyIn("COPY " + STAGING_TABLE + " (artist, album, title, duration, genres) " +
+                "FROM STDIN WITH (FORMAT csv, HEADER true)", reader, COPY_BUFFER_CHARS);
+    }
+
+    // JSONL построчно переводится в CSV и отправляется в COPY буферами, файл целиком в память не читается
+    private long copyJsonLines(CopyManager copyManager, BufferedReader reader) throws SQLException, IOException {
+        CopyIn copyIn = copyManager.copyIn("COPY " + STAGING_TABLE + " (artist, album, title, duration, genres) " +
+                "FROM STDIN WITH (FORMAT csv)");
+        try {
+            StringBuilder buffer = new StringBuilder(COPY_BUFFER_CHARS + 1024);
+            String line;
+            long lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.trim().isEmpty()) continue;
+
+                JsonNode row;
+                try {
+                    row = objectMapper.readTree(line);
+                } catch (IOException e) {
+                    throw new IOException("Invalid JSON at line " + lineNumber, e);
+                }
+                appendCsvRow(buffer, row);
+
+                if (buffer.length() >= COPY_BUFFER_CHARS) {
+                    writeToCopy(copyIn, buffer);
+                }
+            }
+            writeToCopy(copyIn, buffer);
+            return copyIn.endCopy();
+        } finally {
+            if (copyIn.isActive()) {
+                copyIn.cancelCopy();
+            }
+        }
+    }
+
+    private void appendCsvRow(StringBuilder buffer, JsonNode row) {
+        JsonNode genres = row.path("genres");
+        String genreList;
+        if (genres.isArray()) {
+            StringBuilder joined = new StringBuilder();
+            for (JsonNode genre : genres) {
+                if (joined.length() > 0) joined.append('|');
+                joined.append(genre.asText());
+            }
+            genreList = joined.toString();
+        } else {
+            genreList = genres.isMissingNode() || genres.isNull() ? null : genres.asText();
+        }
+
+        appendCsvField(buffer, text(row, "artist")).append(',');
+        appendCsvField(buffer, text(row, "album")).append(',');
+        appendCsvField(buffer, text(row, "title")).append(',');
+        appendCsvField(buffer, row.hasNonNull("duration") ? String.valueOf(row.get("duration").asInt()) : null).append(',');
+        appendCsvField(buffer, genreList).append('\n');
+    }
+
+    private static String text(JsonNode row, String field) {
+        return row.hasNonNull(field) ? row.get(field).asText() : null;
+    }
+
+    /**
+     * Добавляет поле CSV в кавычках; null записывается пустым полем без кавычек, которое COPY читает как NULL
+     */
+    public static StringBuilder appendCsvField(StringBuilder buffer, String value) {
+        if (value == null) {
+            return buffer;
+        }
+        buffer.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') buffer.append('"');
+            buffer.append(c);
+        }
+        return buffer.append('"');
+    }
+
+    private static void writeToCopy(CopyIn copyIn, StringBuilder buffer) throws SQLException {
+        if (buffer.length() == 0) return;
+        byte[] bytes = buffer.toString().getBytes(StandardCharsets.UTF_8);
+        copyIn.writeToCopy(bytes, 0, bytes.length);
+        buffer.setLength(0);
+    }
+
+    private void merge(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("DELETE FROM " + STAGING_TABLE + " WHERE coalesce(trim(artist), '') = '' OR coalesce(trim(title), '') = ''");
+            stmt.execute("ANALYZE " + STAGING_TABLE);
+
+            // 1. Артисты: по одной записи на имя без учёта регистра
+            runStage(stmt, "artists",
+                    "INSERT INTO artists (name, created_at) " +
+                    "SELECT DISTINCT ON (lower(s.artist)) s.artist, CURRENT_TIMESTAMP FROM " + STAGING_TABLE + " s " +
+                    "WHERE NOT EXISTS (SELECT 1 FROM artists a WHERE lower(a.name) = lower(s.artist)) " +
+                    "ORDER BY lower(s.artist)");
+            stmt.execute("CREATE TEMP TABLE catalog_artist_ids ON COMMIT DROP AS " +
+                    "SELECT DISTINCT ON (lower(name)) lower(name) AS artist_key, id AS artist_id FROM artists " +
+                    "ORDER BY lower(name), id");
+            stmt.execute("ALTER TABLE " + STAGING_TABLE + " ADD COLUMN artist_id BIGINT");
+            stmt.execute("UPDATE " + STAGING_TABLE + " s SET artist_id = m.artist_id " +
+                    "FROM catalog_artist_ids m WHERE m.artist_key = lower(s.artist)");
+
+            // 2. Альбомы в пределах артиста
+            runStage(stmt, "albums",
+                    "INSERT INTO albums (title, artist_id, created_at) " +
+                    "SELECT DISTINCT ON (s.artist_id, lower(s.album)) s.album, s.artist_id, CURRENT_TIMESTAMP " +
+                    "FROM " + STAGING_TABLE + " s " +
+                    "WHERE coalesce(trim(s.album), '') <> '' AND NOT EXISTS (SELECT 1 FROM albums al " +
+                    "WHERE al.artist_id = s.artist_id AND lower(al.title) = lower(s.album)) " +
+                    "ORDER BY s.artist_id, lower(s.album)");
+
+            // 3. Треки в пределах артиста; last_fm_id формируется так же, как в TrackDAO
+            runStage(stmt, "tracks",
+                    "INSERT INTO tracks (title, artist_id, album_id, duration, last_fm_id, created_at) " +
+                    "SELECT DISTINCT ON (s.artist_id, lower(s.title)) s.title, s.artist_id, al.id, s.duration, " +
+                    "regexp_replace(lower(s.artist || '_' || s.title), '[^a-z0-9]+', '_', 'g'), CURRENT_TIMESTAMP " +
+                    "FROM " + STAGING_TABLE + " s " +
+                    "LEFT JOIN LATERAL (SELECT id FROM albums WHERE artist_id = s.artist_id " +
+                    "AND lower(title) = lower(s.album) ORDER BY id LIMIT 1) al ON true " +
+                    "WHERE NOT EXISTS (SELECT 1 FROM tracks t " +
+                    "WHERE t.artist_id = s.artist_id AND lower(t.title) = lower(s.title)) " +
+                    "ORDER BY s.artist_id, lower(s.title)");
+
+            // 4. Жанры и связи треков с жанрами
+            stmt.execute("CREATE TEMP TABLE catalog_track_genres ON COMMIT DROP AS " +
+                    "SELECT DISTINCT s.artist_id, lower(s.title) AS title_key, trim(g.name) AS genre " +
+                    "FROM " + STAGING_TABLE + " s, unnest(string_to_array(s.genres, '|')) AS g(name) " +
+                    "WHERE trim(g.name) <> ''");
+            runStage(stmt, "genres",
+                    "INSERT INTO genres (name) " +
+                    "SELECT DISTINCT ON (lower(c.genre)) c.genre FROM catalog_track_genres c " +
+                    "WHERE NOT EXISTS (SELECT 1 FROM genres g WHERE lower(g.name) = lower(c.genre)) " +
+                    "ORDER BY lower(c.genre) " +
+                    "ON CONFLICT (name) DO NOTHING");
+            runStage(stmt, "track_genres",
+                    "INSERT INTO track_genres (track_id, genre_id) " +
+                    "SELECT DISTINCT t.id, g.id FROM catalog_track_genres c " +
+                    "JOIN tracks t ON t.artist_id = c.artist_id AND lower(t.title) = c.title_key " +
+                    "JOIN genres g ON lower(g.name) = lower(c.genre) " +
+                    "ON CONFLICT (track_id, genre_id) DO NOTHING");
+        }
+    }
+
+    private void runStage(Statement stmt, String table, String sql) throws SQLException {
+        long startNanos = System.nanoTime();
+        int inserted = stmt.executeUpdate(sql);
+        report(table, inserted, startNanos);
+    }
+
+    private static void report(String stage, long rows, long startNanos) {
+        double seconds = (System.nanoTime() - startNanos) / 1_000_000_000.0;
+        logger.info("Catalog import {}: {} rows in {} s ({} rows/s)", stage, rows,
+                String.format("%.2f", seconds), String.format("%.0f", seconds > 0 ? rows / seconds : rows));
+    }
+}
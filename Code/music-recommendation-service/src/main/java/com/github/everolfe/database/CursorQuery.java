@@ -0,0 +1,135 @@
+package com.github.everolfe.database;
+
+import com.github.everolfe.config.Config;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Построчное чтение больших выборок. В режиме autocommit драйвер PostgreSQL загружает
+ * весь результат в память; с выключенным autocommit и fetch size запрос выполняется
+ * серверным курсором, строки приходят порциями по db.fetch.size, и расход памяти
+ * не зависит от размера выборки. Соединение занято до конца чтения.
+ */
+public final class CursorQuery {
+    private static final Logger logger = LoggerFactory.getLogger(CursorQuery.class);
+
+    public static final Parameters NO_PARAMETERS = stmt -> {
+    };
+
+    private CursorQuery() {
+    }
+
+    @FunctionalInterface
+    public interface Parameters {
+        void apply(PreparedStatement stmt) throws SQLException;
+    }
+
+    @FunctionalInterface
+    public interface RowMapper<T> {
+        T map(ResultSet rs) throws SQLException;
+    }
+
+    /**
+     * Вызывает action для каждой строки выборки
+     *
+     * @return число прочитанных строк
+     */
+    public static <T> long forEach(String sql, Parameters parameters, RowMapper<T> mapper,
+                                   Consumer<? super T> action) throws SQLException {
+        long rows = 0;
+        try (Cursor cursor = Cursor.open(sql, parameters)) {
+            while (cursor.rs.next()) {
+                action.accept(mapper.map(cursor.rs));
+                rows++;
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Выборка ленивым потоком. Поток держит соединение с БД и должен быть закрыт
+     * (try-with-resources). Ошибка БД во время чтения бросается из операции над потоком
+     * как UncheckedSQLException, чтобы обрыв нельзя было принять за конец выборки.
+     */
+    public static <T> Stream<T> stream(String sql, Parameters parameters, RowMapper<T> mapper) throws SQLException {
+        Cursor cursor = Cursor.open(sql, parameters);
+        Spliterator<T> rows = new Spliterators.AbstractSpliterator<T>(Long.MAX_VALUE,
+                Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super T> action) {
+                try {
+                    if (!cursor.rs.next()) {
+                        return false;
+                    }
+                    action.accept(mapper.map(cursor.rs));
+                    return true;
+                } catch (SQLException e) {
+                    throw new UncheckedSQLException("Error reading query results: " + sql, e);
+                }
+            }
+        };
+        return StreamSupport.stream(rows, false).onClose(cursor::closeQuietly);
+    }
+
+    private static final class Cursor implements AutoCloseable {
+        private final Connection conn;
+        private PreparedStatement stmt;
+        private ResultSet rs;
+
+        private Cursor(Connection conn) {
+            this.conn = conn;
+        }
+
+        static Cursor open(String sql, Parameters parameters) throws SQLException {
+            Cursor cursor = new Cursor(DatabaseConnection.getConnection());
+            try {
+                // Без транзакции драйвер игнорирует fetch size и читает выборку целиком
+                cursor.conn.setAutoCommit(false);
+                cursor.stmt = cursor.conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY,
+                        ResultSet.CONCUR_READ_ONLY);
+                cursor.stmt.setFetchSize(Config.getDbFetchSize());
+                parameters.apply(cursor.stmt);
+                cursor.rs = cursor.stmt.executeQuery();
+                return cursor;
+            } catch (SQLException e) {
+                cursor.closeQuietly();
+                throw e;
+            }
+        }
+
+        @Override
+        public void close() throws SQLException {
+            try {
+                if (rs != null) {
+                    rs.close();
+                }
+                if (stmt != null) {
+                    stmt.close();
+                }
+                // Транзакция только читала - откат просто закрывает её
+                conn.rollback();
+                conn.setAutoCommit(true);
+            } finally {
+                conn.close();
+            }
+        }
+
+        void closeQuietly() {
+            try {
+                close();
+            } catch (SQLException e) {
+                logger.warn("Failed to close database cursor", e);
+            }
+        }
+    }
+}
@@ -8,11 +8,14 @@ import org.slf4j.LoggerFactory;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class DatabaseConnection {
     private static final Logger logger = LoggerFactory.getLogger(DatabaseConnection.class);
     private static HikariDataSource dataSource;
     private static boolean initialized = false;
+    // Число выданных соединений - каждое соответствует отдельному обращению DAO к БД
+    private static final AtomicLong connectionRequests = new AtomicLong();
 
     public static synchronized void initialize() {
         if (initialized) return;
@@ -45,9 +48,14 @@ public class DatabaseConnection {
         if (dataSource == null) {
             throw new SQLException("Database connection is not available. Please check your database configuration.");
         }
+        connectionRequests.incrementAndGet();
         return dataSource.getConnection();
     }
 
+    public static long getConnectionRequestCount() {
+        return connectionRequests.get();
+    }
+
     public static boolean isInitialized() {
         return initialized && dataSource != null;
     }
@@ -10,114 +10,13 @@ public class DatabaseInitializer {
     private static final Logger logger = LoggerFactory.getLogger(DatabaseInitializer.class);
 
     public static void initialize() {
-        createTables();
-        insertSampleData();
-    }
-
-    private static void createTables() {
-        String[] createTables = {
-                // Пользователи
-                "CREATE TABLE IF NOT EXISTS users (" +
-                        "id SERIAL PRIMARY KEY," +
-                        "username VARCHAR(100) UNIQUE NOT NULL," +
-                        "email VARCHAR(255) UNIQUE NOT NULL," +
-                        "password_hash VARCHAR(255)," +
-                        "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP," +
-                        "is_active BOOLEAN DEFAULT true" +
-                        ")",
-
-                // Исполнители
-                "CREATE TABLE IF NOT EXISTS artists (" +
-                        "id SERIAL PRIMARY KEY," +
-                        "name VARCHAR(255) NOT NULL," +
-                        "last_fm_id VARCHAR(100)," +
-                        "bio TEXT," +
-                        "image_url VARCHAR(500)," +
-                        "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
-                        ")",
-
-                // Альбомы
-                "CREATE TABLE IF NOT EXISTS albums (" +
-                        "id SERIAL PRIMARY KEY," +
-                        "title VARCHAR(255) NOT NULL," +
-                        "artist_id INTEGER REFERENCES artists(id)," +
-                        "release_year INTEGER," +
-                        "last_fm_id VARCHAR(100)," +
-                        "cover_url VARCHAR(500)," +
-                        "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
-                        ")",
-
-                // Жанры
-                "CREATE TABLE IF NOT EXISTS genres (" +
-                        "id SERIAL PRIMARY KEY," +
-                        "name VARCHAR(100) UNIQUE NOT NULL," +
-                        "description TEXT" +
-                        ")",
-
-                // Треки
-                "CREATE TABLE IF NOT EXISTS tracks (" +
-                        "id SERIAL PRIMARY KEY," +
-                        "title VARCHAR(255) NOT NULL," +
-                        "artist_id INTEGER REFERENCES artists(id)," +
-                        "album_id INTEGER REFERENCES albums(id)," +
-                        "duration INTEGER," +
-                        "track_number INTEGER," +
-                        "last_fm_id VARCHAR(100)," +
-                        "acousticness DOUBLE PRECISION," +
-                        "danceability DOUBLE PRECISION," +
-                        "energy DOUBLE PRECISION," +
-                        "instrumentalness DOUBLE PRECISION," +
-                        "liveness DOUBLE PRECISION," +
-                        "loudness DOUBLE PRECISION," +
-                        "speechiness DOUBLE PRECISION," +
-                        "tempo DOUBLE PRECISION," +
-                        "valence DOUBLE PRECISION," +
-                        "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
-                        ")",
-
-                // Связь треков и жанров
-                "CREATE TABLE IF NOT EXISTS track_genres (" +
-                        "track_id INTEGER REFERENCES tracks(id)," +
-                        "genre_id INTEGER REFERENCES genres(id)," +
-                        "PRIMARY KEY (track_id, genre_id)" +
-                        ")",
-
-                // Пользовательские предпочтения
-                "CREATE TABLE IF NOT EXISTS user_preferences (" +
-                        "id SERIAL PRIMARY KEY," +
-                        "user_id INTEGER REFERENCES users(id)," +
-                        "track_id INTEGER REFERENCES tracks(id)," +
-                        "rating INTEGER CHECK (rating >= 1 AND rating <= 5)," +
-                        "listened_count INTEGER DEFAULT 0," +
-                        "last_listened TIMESTAMP," +
-                        "is_favorite BOOLEAN DEFAULT false," +
-                        "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP," +
-                        "UNIQUE(user_id, track_id)" +
-                        ")",
-
-                // Рекомендации
-                "CREATE TABLE IF NOT EXISTS recommendations (" +
-                        "id SERIAL PRIMARY KEY," +
-                        "user_id INTEGER REFERENCES users(id)," +
-                        "track_id INTEGER REFERENCES tracks(id)," +
-                        "recommendation_type VARCHAR(50)," +
-                        "score DOUBLE PRECISION," +
-                        "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP," +
-                        "is_viewed BOOLEAN DEFAULT false" +
-                        ")"
-        };
-
-        try (Connection conn = DatabaseConnection.getConnection();
-             Statement stmt = conn.createStatement()) {
-
-            for (String sql : createTables) {
-                stmt.execute(sql);
-            }
-            logger.info("Все таблицы созданы успешно");
-
+        try {
+            SchemaMigrator.migrate();
         } catch (Exception e) {
-            logger.error("Ошибка при создании таблиц: {}", e.getMessage());
+            logger.error("Ошибка при миграции схемы: {}", e.getMessage());
+            return;
         }
+        insertSampleData();
     }
 
     public static void insertSampleData() {
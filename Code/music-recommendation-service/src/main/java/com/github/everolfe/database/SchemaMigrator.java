@@ -0,0 +1,280 @@
+package com.github.everolfe.database;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Версионированные миграции схемы. Применённые версии записываются в schema_version,
+ * каждая новая миграция выполняется в своей транзакции. Миграции только добавляются
+ * в конец списка, уже выпущенные не редактируются.
+ */
+public final class SchemaMigrator {
+    private static final Logger logger = LoggerFactory.getLogger(SchemaMigrator.class);
+
+    /** Ключ pg_advisory_lock: два экземпляра приложения не мигрируют схему одновременно */
+    private static final long MIGRATION_LOCK_KEY = 0x7363_6865_6d61L;
+
+    private static final List<Migration> MIGRATIONS = Arrays.asList(
+            new Migration(1, "Base tables",
+                    // Пользователи
+                    "CREATE TABLE IF NOT EXISTS users (" +
+                            "id SERIAL PRIMARY KEY," +
+                            "username VARCHAR(100) UNIQUE NOT NULL," +
+                            "email VARCHAR(255) UNIQUE NOT NULL," +
+                            "password_hash VARCHAR(255)," +
+                            "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP," +
+                            "is_active BOOLEAN DEFAULT true" +
+                            ")",
+
+                    // Исполнители
+                    "CREATE TABLE IF NOT EXISTS artists (" +
+                            "id SERIAL PRIMARY KEY," +
+                            "name VARCHAR(255) NOT NULL," +
+                            "last_fm_id VARCHAR(100)," +
+                            "bio TEXT," +
+                            "image_url VARCHAR(500)," +
+                            "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
+                            ")",
+
+                    // Альбомы
+                    "CREATE TABLE IF NOT EXISTS albums (" +
+                            "id SERIAL PRIMARY KEY," +
+                            "title VARCHAR(255) NOT NULL," +
+                            "artist_id INTEGER REFERENCES artists(id)," +
+                            "release_year INTEGER," +
+                            "last_fm_id VARCHAR(100)," +
+                            "cover_url VARCHAR(500)," +
+                            "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
+                            ")",
+
+                    // Жанры
+                    "CREATE TABLE IF NOT EXISTS genres (" +
+                            "id SERIAL PRIMARY KEY," +
+                            "name VARCHAR(100) UNIQUE NOT NULL," +
+                            "description TEXT" +
+                            ")",
+
+                    // Треки
+                    "CREATE TABLE IF NOT EXISTS tracks (" +
+                            "id SERIAL PRIMARY KEY," +
+                            "title VARCHAR(255) NOT NULL," +
+                            "artist_id INTEGER REFERENCES artists(id)," +
+                            "album_id INTEGER REFERENCES albums(id)," +
+                            "duration INTEGER," +
+                            "track_number INTEGER," +
+                            "last_fm_id VARCHAR(100)," +
+                            "acousticness DOUBLE PRECISION," +
+                            "danceability DOUBLE PRECISION," +
+                            "energy DOUBLE PRECISION," +
+                            "instrumentalness DOUBLE PRECISION," +
+                            "liveness DOUBLE PRECISION," +
+                            "loudness DOUBLE PRECISION," +
+                            "speechiness DOUBLE PRECISION," +
+                            "tempo DOUBLE PRECISION," +
+                            "valence DOUBLE PRECISION," +
+                            "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
+                            ")",
+
+                    // Связь треков и жанров
+                    "CREATE TABLE IF NOT EXISTS track_genres (" +
+                            "track_id INTEGER REFERENCES tracks(id)," +
+                            "genre_id INTEGER REFERENCES genres(id)," +
+                            "PRIMARY KEY (track_id, genre_id)" +
+                            ")",
+
+                    // Пользовательские предпочтения
+                    "CREATE TABLE IF NOT EXISTS user_preferences (" +
+                            "id SERIAL PRIMARY KEY," +
+                            "user_id INTEGER REFERENCES users(id)," +
+                            "track_id INTEGER REFERENCES tracks(id)," +
+                            "rating INTEGER CHECK (rating >= 1 AND rating <= 5)," +
+                            "listened_count INTEGER DEFAULT 0," +
+                            "last_listened TIMESTAMP," +
+                            "is_favorite BOOLEAN DEFAULT false," +
+                            "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP," +
+                            "UNIQUE(user_id, track_id)" +
+                            ")",
+
+                    // Рекомендации
+                    "CREATE TABLE IF NOT EXISTS recommendations (" +
+                            "id SERIAL PRIMARY KEY," +
+                            "user_id INTEGER REFERENCES users(id)," +
+                            "track_id INTEGER REFERENCES tracks(id)," +
+                            "recommendation_type VARCHAR(50)," +
+                            "score DOUBLE PRECISION," +
+                            "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP," +
+                            "is_viewed BOOLEAN DEFAULT false" +
+                            ")"),
+
+            // Базы, созданные до ограничения, могут содержать дубликаты: остаётся самая свежая строка
+            new Migration(2, "Unique recommendation per user and track",
+                    "DO $$ BEGIN " +
+                            "IF NOT EXISTS (SELECT 1 FROM pg_indexes WHERE tablename = 'recommendations' " +
+                            "AND indexdef LIKE 'CREATE UNIQUE INDEX % (user_id, track_id)') THEN " +
+                            "DELETE FROM recommendations r USING recommendations newer " +
+                            "WHERE r.user_id = newer.user_id AND r.track_id = newer.track_id AND r.id < newer.id; " +
+                            "CREATE UNIQUE INDEX recommendations_user_track_key ON recommendations (user_id, track_id); " +
+                            "END IF; END $$"),
+
+            new Migration(3, "Indexes for hot queries",
+                    // История и последние прослушивания пользователя
+                    "CREATE INDEX IF NOT EXISTS user_preferences_user_created_idx " +
+                            "ON user_preferences (user_id, created_at DESC)",
+                    "CREATE INDEX IF NOT EXISTS user_preferences_user_listened_idx " +
+                            "ON user_preferences (user_id, last_listened DESC)",
+                    "CREATE INDEX IF NOT EXISTS user_preferences_track_idx ON user_preferences (track_id)",
+
+                    // Непросмотренные рекомендации пользователя по убыванию оценки
+                    "CREATE INDEX IF NOT EXISTS recommendations_user_viewed_score_idx " +
+                            "ON recommendations (user_id, is_viewed, score DESC)",
+                    "CREATE INDEX IF NOT EXISTS recommendations_created_idx ON recommendations (created_at)",
+
+                    // Поиск трека и альбома внутри исполнителя при импорте
+                    "CREATE INDEX IF NOT EXISTS tracks_artist_title_idx ON tracks (artist_id, lower(title))",
+                    "CREATE INDEX IF NOT EXISTS tracks_album_number_idx ON tracks (album_id, track_number)",
+                    "CREATE INDEX IF NOT EXISTS albums_artist_title_idx ON albums (artist_id, lower(title))",
+                    "CREATE INDEX IF NOT EXISTS artists_name_lower_idx ON artists (lower(name))",
+
+                    // Первичный ключ (track_id, genre_id) не помогает выборке треков по жанру
+                    "CREATE INDEX IF NOT EXISTS track_genres_genre_idx ON track_genres (genre_id, track_id)"),
+
+            // ILIKE '%...%' не использует B-tree, нужны триграммные индексы
+            new Migration(4, "Trigram indexes for ILIKE search",
+                    "CREATE EXTENSION IF NOT EXISTS pg_trgm",
+                    "CREATE INDEX IF NOT EXISTS artists_name_trgm_idx ON artists USING gin (name gin_trgm_ops)",
+                    "CREATE INDEX IF NOT EXISTS tracks_title_trgm_idx ON tracks USING gin (title gin_trgm_ops)",
+                    "CREATE INDEX IF NOT EXISTS albums_title_trgm_idx ON albums USING gin (title gin_trgm_ops)"),
+
+            // Постраничный просмотр каталога в порядке (исполнитель, название, id) без сортировки всей таблицы
+            new Migration(5, "Indexes for keyset catalog pagination",
+                    "CREATE INDEX IF NOT EXISTS artists_name_id_idx ON artists (name, id)",
+                    "CREATE INDEX IF NOT EXISTS tracks_artist_title_id_idx ON tracks (artist_id, title, id)",
+                    "CREATE INDEX IF NOT EXISTS tracks_no_artist_title_id_idx ON tracks (title, id) " +
+                            "WHERE artist_id IS NULL")
+    );
+
+    /** Версия схемы, с которой работает этот код */
+    public static final int EXPECTED_VERSION = MIGRATIONS.get(MIGRATIONS.size() - 1).version;
+
+    private SchemaMigrator() {
+    }
+
+    /**
+     * Применяет все ещё не применённые миграции по порядку.
+     * Ошибка в миграции откатывает её и останавливает процесс, следующие не применяются.
+     *
+     * @return версия схемы после миграции
+     */
+    public static int migrate() throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection();
+             Statement stmt = conn.createStatement()) {
+
+            // Блокировка берётся до CREATE TABLE: одновременный CREATE TABLE IF NOT EXISTS
+            // из двух процессов может завершиться ошибкой уникальности в pg_type
+            stmt.execute("SELECT pg_advisory_lock(" + MIGRATION_LOCK_KEY + ")");
+            try {
+                stmt.execute("CREATE TABLE IF NOT EXISTS schema_version (" +
+                        "version INTEGER PRIMARY KEY," +
+                        "description VARCHAR(255)," +
+                        "applied_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
+                        ")");
+
+                int version = currentVersion(conn);
+                for (Migration migration : MIGRATIONS) {
+                    if (migration.version > version) {
+                        apply(conn, migration);
+                        version = migration.version;
+                    }
+                }
+                logger.info("Схема БД в версии {}", version);
+                return version;
+            } finally {
+                stmt.execute("SELECT pg_advisory_unlock(" + MIGRATION_LOCK_KEY + ")");
+            }
+        }
+    }
+
+    /**
+     * Текущая версия схемы; 0, если миграции ещё не применялись
+     */
+    public static int currentVersion() throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            return currentVersion(conn);
+        }
+    }
+
+    public static boolean isSchemaUpToDate() {
+        try {
+            int version = currentVersion();
+            if (version != EXPECTED_VERSION) {
+                logger.error("Версия схемы БД {} не совпадает с ожидаемой {}", version, EXPECTED_VERSION);
+                return false;
+            }
+            return true;
+        } catch (SQLException e) {
+            logger.error("Не удалось проверить версию схемы БД: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    private static int currentVersion(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(
+                     "SELECT COALESCE(MAX(version), 0) FROM schema_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        } catch (SQLException e) {
+            // Таблицы schema_version ещё нет
+            if ("42P01".equals(e.getSQLState())) {
+                return 0;
+            }
+            throw e;
+        }
+    }
+
+    private static void apply(Connection conn, Migration migration) throws SQLException {
+        long start = System.nanoTime();
+        conn.setAutoCommit(false);
+        try (Statement stmt = conn.createStatement();
+             PreparedStatement record = conn.prepareStatement(
+                     "INSERT INTO schema_version (version, description) VALUES (?, ?)")) {
+
+            for (String sql : migration.statements) {
+                stmt.execute(sql);
+            }
+            record.setInt(1, migration.version);
+            record.setString(2, migration.description);
+            record.executeUpdate();
+            conn.commit();
+
+            logger.info("Применена миграция V{} ({}) за {} мс", migration.version, migration.description,
+                    (System.nanoTime() - start) / 1_000_000);
+        } catch (SQLException e) {
+            conn.rollback();
+            logger.error("Ошибка миграции V{} ({}): {}", migration.version, migration.description, e.getMessage());
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+
+    private static final class Migration {
+        private final int version;
+        private final String description;
+        private final List<String> statements;
+
+        private Migration(int version, String description, String... statements) {
+            this.version = version;
+            this.description = description;
+            this.statements = Collections.unmodifiableList(Arrays.asList(statements));
+        }
+    }
+}
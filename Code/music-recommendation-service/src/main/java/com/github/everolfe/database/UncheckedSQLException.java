@@ -0,0 +1,20 @@
+package com.github.everolfe.database;
+
+import java.sql.SQLException;
+
+/**
+ * Ошибка БД при чтении ленивого потока строк. Stream не пропускает проверяемые исключения,
+ * а тихое завершение потока выглядело бы как неполный, но успешный результат.
+ */
+public class UncheckedSQLException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public UncheckedSQLException(String message, SQLException cause) {
+        super(message, cause);
+    }
+
+    @Override
+    public synchronized SQLException getCause() {
+        return (SQLException) super.getCause();
+    }
+}
@@ -1,6 +1,8 @@
 package com.github.everolfe.database.dao;
 
+import com.github.everolfe.database.CursorQuery;
 import com.github.everolfe.database.DatabaseConnection;
+import com.github.everolfe.database.UncheckedSQLException;
 import com.github.everolfe.model.Album;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -9,10 +11,15 @@ import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 public class AlbumDAO {
     private static final Logger logger = LoggerFactory.getLogger(AlbumDAO.class);
 
+    private static final String SELECT_ALL_UNORDERED = "SELECT a.*, ar.name as artist_name FROM albums a " +
+            "LEFT JOIN artists ar ON a.artist_id = ar.id ";
+
     public Optional<Album> findById(Long id) {
         String sql = "SELECT a.*, ar.name as artist_name FROM albums a " +
                 "LEFT JOIN artists ar ON a.artist_id = ar.id " +
@@ -76,9 +83,7 @@ public class AlbumDAO {
 
     public List<Album> findAll() {
         List<Album> albums = new ArrayList<>();
-        String sql = "SELECT a.*, ar.name as artist_name FROM albums a " +
-                "LEFT JOIN artists ar ON a.artist_id = ar.id " +
-                "ORDER BY a.title";
+        String sql = SELECT_ALL_UNORDERED + "ORDER BY a.title";
 
         try (Connection conn = DatabaseConnection.getConnection();
              Statement stmt = conn.createStatement();
@@ -93,6 +98,32 @@ public class AlbumDAO {
         return albums;
     }
 
+    /**
+     * Обходит все альбомы серверным курсором, не загружая выборку в память
+     *
+     * @return false, если чтение прервалось ошибкой БД
+     */
+    public boolean forEach(Consumer<? super Album> action) {
+        try {
+            CursorQuery.forEach(SELECT_ALL_UNORDERED, CursorQuery.NO_PARAMETERS, this::mapResultSetToAlbum, action);
+            return true;
+        } catch (SQLException e) {
+            logger.error("Error streaming all albums", e);
+            return false;
+        }
+    }
+
+    /**
+     * Все альбомы ленивым потоком; поток нужно закрыть (try-with-resources), ошибка БД - UncheckedSQLException
+     */
+    public Stream<Album> streamAll() {
+        try {
+            return CursorQuery.stream(SELECT_ALL_UNORDERED, CursorQuery.NO_PARAMETERS, this::mapResultSetToAlbum);
+        } catch (SQLException e) {
+            throw new UncheckedSQLException("Error streaming all albums", e);
+        }
+    }
+
     public boolean save(Album album) {
         if (album.getId() == null) {
             return insert(album);
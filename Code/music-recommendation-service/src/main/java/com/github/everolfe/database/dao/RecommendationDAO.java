@@ -1,18 +1,39 @@
 package com.github.everolfe.database.dao;
 
+import com.github.everolfe.database.CursorQuery;
 import com.github.everolfe.database.DatabaseConnection;
+import com.github.everolfe.database.UncheckedSQLException;
 import com.github.everolfe.model.Recommendation;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 public class RecommendationDAO {
     private static final Logger logger = LoggerFactory.getLogger(RecommendationDAO.class);
 
+    // 5 параметров на строку; держимся далеко от лимита протокола в 32767 параметров
+    private static final int SAVE_ALL_CHUNK_SIZE = 500;
+    // SQLSTATE 42P10: нет уникального ограничения для ON CONFLICT (миграция 2 не применена)
+    private static final String NO_MATCHING_CONSTRAINT = "42P10";
+
+    private static final String SELECT_BY_USER_ID =
+            "SELECT r.*, t.title as track_title, a.name as artist_name, al.title as album_title " +
+            "FROM recommendations r " +
+            "JOIN tracks t ON r.track_id = t.id " +
+            "JOIN artists a ON t.artist_id = a.id " +
+            "LEFT JOIN albums al ON t.album_id = al.id " +
+            "WHERE r.user_id = ? " +
+            "ORDER BY r.score DESC, r.created_at DESC";
+
     public Optional<Recommendation> findById(Long id) {
         String sql = "SELECT r.*, t.title as track_title, a.name as artist_name, al.title as album_title " +
                 "FROM recommendations r " +
@@ -37,16 +58,9 @@ public class RecommendationDAO {
 
     public List<Recommendation> findByUserId(Long userId) {
         List<Recommendation> recommendations = new ArrayList<>();
-        String sql = "SELECT r.*, t.title as track_title, a.name as artist_name, al.title as album_title " +
-                "FROM recommendations r " +
-                "JOIN tracks t ON r.track_id = t.id " +
-                "JOIN artists a ON t.artist_id = a.id " +
-                "LEFT JOIN albums al ON t.album_id = al.id " +
-                "WHERE r.user_id = ? " +
-                "ORDER BY r.score DESC, r.created_at DESC";
 
         try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
+             PreparedStatement stmt = conn.prepareStatement(SELECT_BY_USER_ID)) {
 
             stmt.setLong(1, userId);
             ResultSet rs = stmt.executeQuery();
@@ -60,6 +74,34 @@ public class RecommendationDAO {
         return recommendations;
     }
 
+    /**
+     * Обходит рекомендации пользователя серверным курсором в порядке findByUserId
+     *
+     * @return false, если чтение прервалось ошибкой БД
+     */
+    public boolean forEachByUserId(Long userId, Consumer<? super Recommendation> action) {
+        try {
+            CursorQuery.forEach(SELECT_BY_USER_ID, stmt -> stmt.setLong(1, userId),
+                    this::mapResultSetToRecommendation, action);
+            return true;
+        } catch (SQLException e) {
+            logger.error("Error streaming recommendations by user id: {}", userId, e);
+            return false;
+        }
+    }
+
+    /**
+     * Рекомендации пользователя ленивым потоком; поток нужно закрыть (try-with-resources), ошибка БД - UncheckedSQLException
+     */
+    public Stream<Recommendation> streamByUserId(Long userId) {
+        try {
+            return CursorQuery.stream(SELECT_BY_USER_ID, stmt -> stmt.setLong(1, userId),
+                    this::mapResultSetToRecommendation);
+        } catch (SQLException e) {
+            throw new UncheckedSQLException("Error streaming recommendations by user id: " + userId, e);
+        }
+    }
+
     public List<Recommendation> findUnviewedByUserId(Long userId) {
         List<Recommendation> recommendations = new ArrayList<>();
         String sql = "SELECT r.*, t.title as track_title, a.name as artist_name, al.title as album_title " +
@@ -119,6 +161,117 @@ public class RecommendationDAO {
         }
     }
 
+    /**
+     * Сохраняет рекомендации многострочным INSERT ... ON CONFLICT (user_id, track_id) DO UPDATE
+     * в одной транзакции: повторная генерация обновляет существующие строки, а не добавляет дубликаты.
+     * Всем переданным объектам проставляется id сохранённой строки.
+     * Уникальный индекс создаёт миграция 2 при запуске; если она не применена,
+     * рекомендации сохраняются по одной, как до появления индекса.
+     */
+    public boolean saveAll(List<Recommendation> recommendations) {
+        if (recommendations.isEmpty()) {
+            return true;
+        }
+
+        // Одна строка на пару (user_id, track_id): PostgreSQL не даёт обновить строку дважды за запрос
+        Map<String, Recommendation> unique = new LinkedHashMap<>();
+        for (Recommendation rec : recommendations) {
+            unique.merge(key(rec.getUserId(), rec.getTrackId()), rec,
+                    (kept, candidate) -> candidate.getScore() > kept.getScore() ? candidate : kept);
+        }
+        List<Recommendation> rows = new ArrayList<>(unique.values());
+
+        Map<String, Long> savedIds = new LinkedHashMap<>();
+        boolean missingUniqueIndex = false;
+        Connection conn = null;
+        try {
+            conn = DatabaseConnection.getConnection();
+            conn.setAutoCommit(false);
+
+            for (int from = 0; from < rows.size(); from += SAVE_ALL_CHUNK_SIZE) {
+                List<Recommendation> chunk = rows.subList(from, Math.min(rows.size(), from + SAVE_ALL_CHUNK_SIZE));
+                upsertChunk(conn, chunk, savedIds);
+            }
+            conn.commit();
+        } catch (SQLException e) {
+            if (conn != null) {
+                try {
+                    conn.rollback();
+                } catch (SQLException ex) {
+                    logger.error("Error rolling back transaction", ex);
+                }
+            }
+            if (NO_MATCHING_CONSTRAINT.equals(e.getSQLState())) {
+                missingUniqueIndex = true;
+            } else {
+                logger.error("Error saving {} recommendations", rows.size(), e);
+                return false;
+            }
+        } finally {
+            if (conn != null) {
+                try {
+                    conn.setAutoCommit(true);
+                    conn.close();
+                } catch (SQLException e) {
+                    logger.error("Error closing connection", e);
+                }
+            }
+        }
+
+        if (missingUniqueIndex) {
+            logger.warn("Unique index on recommendations (user_id, track_id) is missing, " +
+                    "saving {} recommendations one by one until schema migration 2 is applied", rows.size());
+            boolean saved = true;
+            for (Recommendation rec : rows) {
+                saved &= insert(rec);
+            }
+            for (Recommendation rec : recommendations) {
+                rec.setId(unique.get(key(rec.getUserId(), rec.getTrackId())).getId());
+            }
+            return saved;
+        }
+
+        for (Recommendation rec : recommendations) {
+            rec.setId(savedIds.get(key(rec.getUserId(), rec.getTrackId())));
+        }
+        logger.debug("Saved {} recommendations in one transaction", rows.size());
+        return true;
+    }
+
+    private void upsertChunk(Connection conn, List<Recommendation> chunk, Map<String, Long> savedIds)
+            throws SQLException {
+        StringBuilder sql = new StringBuilder(
+                "INSERT INTO recommendations (user_id, track_id, recommendation_type, score, is_viewed) VALUES ");
+        sql.append(String.join(", ", Collections.nCopies(chunk.size(), "(?, ?, ?, ?, ?)")));
+        sql.append(" ON CONFLICT (user_id, track_id) DO UPDATE SET " +
+                "recommendation_type = EXCLUDED.recommendation_type, " +
+                "score = EXCLUDED.score, " +
+                "is_viewed = EXCLUDED.is_viewed, " +
+                "created_at = CURRENT_TIMESTAMP " +
+                "RETURNING id, user_id, track_id");
+
+        try (PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+            int index = 1;
+            for (Recommendation rec : chunk) {
+                stmt.setLong(index++, rec.getUserId());
+                stmt.setLong(index++, rec.getTrackId());
+                stmt.setString(index++, rec.getRecommendationType());
+                stmt.setDouble(index++, rec.getScore());
+                stmt.setBoolean(index++, rec.getIsViewed() != null && rec.getIsViewed());
+            }
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    savedIds.put(key(rs.getLong("user_id"), rs.getLong("track_id")), rs.getLong("id"));
+                }
+            }
+        }
+    }
+
+    private static String key(Long userId, Long trackId) {
+        return userId + ":" + trackId;
+    }
+
     private boolean insert(Recommendation recommendation) {
         String sql = "INSERT INTO recommendations (user_id, track_id, recommendation_type, score, is_viewed) " +
                 "VALUES (?, ?, ?, ?, ?)";
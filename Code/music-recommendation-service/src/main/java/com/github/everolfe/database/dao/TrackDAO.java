@@ -1,18 +1,42 @@
 package com.github.everolfe.database.dao;
 
+import com.github.everolfe.database.CursorQuery;
 import com.github.everolfe.database.DatabaseConnection;
+import com.github.everolfe.database.UncheckedSQLException;
 import com.github.everolfe.model.Track;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 public class TrackDAO {
     private static final Logger logger = LoggerFactory.getLogger(TrackDAO.class);
 
+    // Ключ advisory-блокировки импорта: у artists и albums нет уникальных ограничений,
+    // поэтому параллельные импорты (в том числе CatalogImporter) сериализуются, чтобы не создать дубликаты
+    public static final long IMPORT_LOCK_KEY = 0x7472_6163_6b73L;
+
+    public static final int MAX_SEARCH_LIMIT = 200;
+    public static final int MAX_PAGE_LIMIT = 500;
+
+    private static final String SELECT_ALL_UNORDERED = "SELECT t.*, a.name as artist_name, al.title as album_title " +
+            "FROM tracks t " +
+            "LEFT JOIN artists a ON t.artist_id = a.id " +
+            "LEFT JOIN albums al ON t.album_id = al.id ";
+    private static final int SEARCH_CANDIDATE_CAP = 1000;
+
     public Optional<Track> findById(Long id) {
         String sql = "SELECT t.*, a.name as artist_name, al.title as album_title " +
                 "FROM tracks t " +
@@ -34,13 +58,38 @@ public class TrackDAO {
         return Optional.empty();
     }
 
-    public List<Track> findAll() {
+    /**
+     * Загружает несколько треков одним запросом (id передаются массивом)
+     */
+    public List<Track> findByIds(Collection<Long> ids) {
         List<Track> tracks = new ArrayList<>();
+        if (ids == null || ids.isEmpty()) {
+            return tracks;
+        }
+
         String sql = "SELECT t.*, a.name as artist_name, al.title as album_title " +
                 "FROM tracks t " +
                 "LEFT JOIN artists a ON t.artist_id = a.id " +
                 "LEFT JOIN albums al ON t.album_id = al.id " +
-                "ORDER BY a.name, t.title";
+                "WHERE t.id = ANY(?)";
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setArray(1, conn.createArrayOf("bigint", ids.toArray()));
+            ResultSet rs = stmt.executeQuery();
+
+            while (rs.next()) {
+                tracks.add(mapResultSetToTrack(rs));
+            }
+        } catch (SQLException e) {
+            logger.error("Error finding tracks by ids: {}", ids, e);
+        }
+        return tracks;
+    }
+
+    public List<Track> findAll() {
+        List<Track> tracks = new ArrayList<>();
+        String sql = SELECT_ALL_UNORDERED + "ORDER BY a.name, t.title";
 
         try (Connection conn = DatabaseConnection.getConnection();
              Statement stmt = conn.createStatement();
@@ -55,6 +104,121 @@ public class TrackDAO {
         return tracks;
     }
 
+    /**
+     * Обходит все треки серверным курсором, не загружая выборку в память.
+     * Порядок не задан: сортировка всей таблицы задержала бы первую строку.
+     *
+     * @return false, если чтение прервалось ошибкой БД
+     */
+    public boolean forEach(Consumer<? super Track> action) {
+        try {
+            long rows = CursorQuery.forEach(SELECT_ALL_UNORDERED, CursorQuery.NO_PARAMETERS,
+                    this::mapResultSetToTrack, action);
+            logger.debug("Streamed {} tracks", rows);
+            return true;
+        } catch (SQLException e) {
+            logger.error("Error streaming all tracks", e);
+            return false;
+        }
+    }
+
+    /**
+     * Все треки ленивым потоком в произвольном порядке. Поток держит соединение с БД,
+     * его нужно закрыть (try-with-resources). Ошибка БД при открытии или чтении -
+     * UncheckedSQLException.
+     */
+    public Stream<Track> streamAll() {
+        try {
+            return CursorQuery.stream(SELECT_ALL_UNORDERED, CursorQuery.NO_PARAMETERS, this::mapResultSetToTrack);
+        } catch (SQLException e) {
+            throw new UncheckedSQLException("Error streaming all tracks", e);
+        }
+    }
+
+    /**
+     * Страница каталога в порядке (исполнитель, название, id) после трека с указанным ключом.
+     * Ключ - исполнитель, название и id последнего показанного трека; afterId == null - первая страница.
+     * Треки без исполнителя идут в конце каталога, для них afterArtist == null.
+     * Размер страницы - не больше MAX_PAGE_LIMIT.
+     */
+    public List<Track> findPage(String afterArtist, String afterTitle, Long afterId, int limit) {
+        List<Track> tracks = new ArrayList<>();
+        if (limit <= 0) {
+            return tracks;
+        }
+        int pageSize = Math.min(limit, MAX_PAGE_LIMIT);
+        boolean inArtistPart = afterId == null || afterArtist != null;
+
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            if (inArtistPart) {
+                findPageWithArtist(conn, afterId != null ? afterArtist : null, afterTitle, afterId, pageSize, tracks);
+            }
+            if (tracks.size() < pageSize) {
+                // Треки с исполнителем закончились - продолжаем треками без исполнителя
+                findPageWithoutArtist(conn, inArtistPart ? null : afterTitle, inArtistPart ? null : afterId,
+                        pageSize - tracks.size(), tracks);
+            }
+        } catch (SQLException e) {
+            logger.error("Error finding tracks page after: {} - {}", afterArtist, afterTitle, e);
+        }
+        return tracks;
+    }
+
+    private void findPageWithArtist(Connection conn, String afterArtist, String afterTitle, Long afterId,
+                                    int limit, List<Track> tracks) throws SQLException {
+        // a.name >= ? дублирует сравнение строк, чтобы скан artists_name_id_idx начинался с нужного исполнителя
+        String sql = "SELECT t.*, a.name as artist_name, al.title as album_title " +
+                "FROM tracks t " +
+                "JOIN artists a ON t.artist_id = a.id " +
+                "LEFT JOIN albums al ON t.album_id = al.id " +
+                (afterArtist != null ? "WHERE a.name >= ? AND (a.name, t.title, t.id) > (?, ?, ?) " : "") +
+                "ORDER BY a.name, t.title, t.id " +
+                "LIMIT ?";
+
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            int index = 1;
+            if (afterArtist != null) {
+                stmt.setString(index++, afterArtist);
+                stmt.setString(index++, afterArtist);
+                stmt.setString(index++, afterTitle);
+                stmt.setLong(index++, afterId);
+            }
+            stmt.setInt(index, limit);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    tracks.add(mapResultSetToTrack(rs));
+                }
+            }
+        }
+    }
+
+    private void findPageWithoutArtist(Connection conn, String afterTitle, Long afterId,
+                                       int limit, List<Track> tracks) throws SQLException {
+        String sql = "SELECT t.*, NULL as artist_name, al.title as album_title " +
+                "FROM tracks t " +
+                "LEFT JOIN albums al ON t.album_id = al.id " +
+                "WHERE t.artist_id IS NULL " +
+                (afterId != null ? "AND (t.title, t.id) > (?, ?) " : "") +
+                "ORDER BY t.title, t.id " +
+                "LIMIT ?";
+
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            int index = 1;
+            if (afterId != null) {
+                stmt.setString(index++, afterTitle);
+                stmt.setLong(index++, afterId);
+            }
+            stmt.setInt(index, limit);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    tracks.add(mapResultSetToTrack(rs));
+                }
+            }
+        }
+    }
+
     public List<Track> findByArtist(String artistName) {
         List<Track> tracks = new ArrayList<>();
         String sql = "SELECT t.*, a.name as artist_name, al.title as album_title " +
@@ -153,48 +317,168 @@ public class TrackDAO {
         return tracks;
     }
 
+    /**
+     * Нечёткий поиск по названию трека, исполнителю и альбому (pg_trgm), лучшие совпадения первыми
+     */
+    public List<Track> search(String query, int limit) {
+        return search(query, null, limit).getTracks();
+    }
+
+    /**
+     * Страница результатов поиска после after (null - первая страница).
+     * Кандидаты отбираются по триграммным GIN-индексам: подстрока (ILIKE) или похожее слово (<%).
+     * Каждая ветка (название, исполнитель, альбом) отдаёт не больше SEARCH_CANDIDATE_CAP строк,
+     * лучших по похожести своего столбца, поэтому полная оценка по трём столбцам считается
+     * не более чем для 3 * SEARCH_CANDIDATE_CAP кандидатов даже для очень частого запроса.
+     * Выдача ограничена SEARCH_CANDIDATE_CAP лучшими кандидатами после ранжирования и сортировки
+     * по (оценка, id), поэтому каждая страница видит один и тот же набор. Полные строки читаются
+     * только для страницы; размер страницы - не больше MAX_SEARCH_LIMIT.
+     */
+    public SearchPage search(String query, SearchKey after, int limit) {
+        List<Track> tracks = new ArrayList<>();
+        List<Double> ranks = new ArrayList<>();
+        if (query == null || query.trim().isEmpty() || limit <= 0) {
+            return new SearchPage(tracks, null);
+        }
+
+        String term = query.trim();
+        String pattern = "%" + escapeLike(term) + "%";
+        int pageSize = Math.min(limit, MAX_SEARCH_LIMIT);
+
+        // Каждая ветка отдаёт не больше SEARCH_CANDIDATE_CAP лучших по своему столбцу строк
+        String sql = "WITH candidates AS (" +
+                "(SELECT t.id FROM tracks t WHERE t.title ILIKE ? OR ? <% t.title " +
+                "ORDER BY word_similarity(?, t.title) DESC, t.id LIMIT " + SEARCH_CANDIDATE_CAP + ") " +
+                "UNION (SELECT t.id FROM artists a JOIN tracks t ON t.artist_id = a.id " +
+                "WHERE a.name ILIKE ? OR ? <% a.name " +
+                "ORDER BY word_similarity(?, a.name) DESC, t.id LIMIT " + SEARCH_CANDIDATE_CAP + ") " +
+                "UNION (SELECT t.id FROM albums al JOIN tracks t ON t.album_id = al.id " +
+                "WHERE al.title ILIKE ? OR ? <% al.title " +
+                "ORDER BY word_similarity(?, al.title) DESC, t.id LIMIT " + SEARCH_CANDIDATE_CAP + ")" +
+                "), ranked AS (" +
+                "SELECT t.id, " +
+                // Совпадение в альбоме весит меньше, чем в названии трека или имени исполнителя
+                "GREATEST(word_similarity(?, t.title), word_similarity(?, COALESCE(a.name, '')), " +
+                "0.8 * word_similarity(?, COALESCE(al.title, '')))::double precision as search_rank " +
+                "FROM candidates c " +
+                "JOIN tracks t ON t.id = c.id " +
+                "LEFT JOIN artists a ON t.artist_id = a.id " +
+                "LEFT JOIN albums al ON t.album_id = al.id " +
+                "ORDER BY search_rank DESC, t.id " +
+                "LIMIT " + SEARCH_CANDIDATE_CAP +
+                ") SELECT t.*, a.name as artist_name, al.title as album_title, r.search_rank " +
+                "FROM ranked r " +
+                "JOIN tracks t ON t.id = r.id " +
+                "LEFT JOIN artists a ON t.artist_id = a.id " +
+                "LEFT JOIN albums al ON t.album_id = al.id " +
+                (after != null ? "WHERE r.search_rank < ? OR (r.search_rank = ? AND r.id > ?) " : "") +
+                "ORDER BY r.search_rank DESC, r.id " +
+                "LIMIT ?";
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            int index = 1;
+            for (int i = 0; i < 3; i++) {
+                stmt.setString(index++, pattern);
+                stmt.setString(index++, term);
+                stmt.setString(index++, term);
+            }
+            for (int i = 0; i < 3; i++) {
+                stmt.setString(index++, term);
+            }
+            if (after != null) {
+                stmt.setDouble(index++, after.rank);
+                stmt.setDouble(index++, after.rank);
+                stmt.setLong(index++, after.id);
+            }
+            stmt.setInt(index, pageSize);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    tracks.add(mapResultSetToTrack(rs));
+                    ranks.add(rs.getDouble("search_rank"));
+                }
+            }
+        } catch (SQLException e) {
+            logger.error("Error searching tracks: {}", term, e);
+        }
+
+        SearchKey next = null;
+        if (tracks.size() == pageSize) {
+            int last = tracks.size() - 1;
+            next = new SearchKey(ranks.get(last), tracks.get(last).getId());
+        }
+        return new SearchPage(tracks, next);
+    }
+
+    // Символы шаблона LIKE в запросе пользователя ищутся буквально
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    /**
+     * Сохраняет трек из API через пакетный импорт; если такой трек уже есть, проставляет его id
+     */
     public boolean insertApiTrack(Track track) {
+        return importApiTracks(Collections.singletonList(track)) && track.getId() != null;
+    }
+
+    /**
+     * Пакетный импорт треков из API в одной транзакции. Артисты, альбомы и треки
+     * сравниваются без учёта регистра и дедуплицируются в памяти; существующие находятся,
+     * недостающие создаются по одному запросу на таблицу. Жанры из поля genre
+     * (через запятую) связываются с уже известными жанрами.
+     * Каждому треку проставляются id, artistId и albumId; невалидные треки (без названия
+     * или исполнителя) пропускаются и остаются без id. При ошибке транзакция откатывается,
+     * а id, artistId и albumId всех треков сбрасываются.
+     */
+    public boolean importApiTracks(List<Track> tracks) {
+        List<Track> valid = new ArrayList<>(tracks.size());
+        for (Track track : tracks) {
+            if (!isBlank(track.getTitle()) && !isBlank(track.getArtistName())) {
+                valid.add(track);
+            }
+        }
+        if (valid.isEmpty()) {
+            return true;
+        }
+
         Connection conn = null;
         try {
             conn = DatabaseConnection.getConnection();
-            conn.setAutoCommit(false); // Начинаем транзакцию
-
-            // 1. Создаем или находим артиста
-            Long artistId = findOrCreateArtist(conn, track.getArtistName());
-
-            // 2. Создаем или находим альбом
-            Long albumId = findOrCreateAlbum(conn, track.getAlbumTitle(), artistId);
-
-            // 3. Создаем трек
-            String sql = "INSERT INTO tracks (title, artist_id, album_id, duration, last_fm_id, created_at) " +
-                    "VALUES (?, ?, ?, ?, ?, CURRENT_TIMESTAMP)";
-
-            try (PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-                stmt.setString(1, track.getTitle());
-                stmt.setLong(2, artistId);
-                stmt.setLong(3, albumId);
-                stmt.setInt(4, track.getDuration());
-                stmt.setString(5, generateLastFmId(track.getArtistName(), track.getTitle()));
-
-                int affectedRows = stmt.executeUpdate();
-                if (affectedRows > 0) {
-                    try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
-                        if (generatedKeys.next()) {
-                            track.setId(generatedKeys.getLong(1));
-                            track.setArtistId(artistId);
-                            track.setAlbumId(albumId);
-
-                            conn.commit(); // Подтверждаем транзакцию
-                            return true;
-                        }
-                    }
-                }
+            conn.setAutoCommit(false);
+
+            try (PreparedStatement stmt = conn.prepareStatement("SELECT pg_advisory_xact_lock(?)")) {
+                stmt.setLong(1, IMPORT_LOCK_KEY);
+                stmt.execute();
             }
 
-            conn.rollback(); // Откатываем в случае ошибки
-            return false;
+            // 1. Артисты
+            Map<String, Long> artistIds = resolveArtists(conn, valid);
+            for (Track track : valid) {
+                track.setArtistId(artistIds.get(key(track.getArtistName())));
+            }
 
-        } catch (SQLException e) {
+            // 2. Альбомы (трек без альбома сохраняется с album_id = NULL)
+            Map<String, Long> albumIds = resolveAlbums(conn, valid);
+            for (Track track : valid) {
+                track.setAlbumId(isBlank(track.getAlbumTitle()) ? null
+                        : albumIds.get(key(track.getArtistId(), track.getAlbumTitle())));
+            }
+
+            // 3. Треки и их жанры
+            Map<String, Long> trackIds = resolveTracks(conn, valid);
+            for (Track track : valid) {
+                track.setId(trackIds.get(key(track.getArtistId(), track.getTitle())));
+            }
+            linkGenres(conn, valid);
+
+            conn.commit();
+            logger.debug("Imported {} API tracks in one transaction", valid.size());
+            return true;
+
+        } catch (SQLException | RuntimeException e) {
             if (conn != null) {
                 try {
                     conn.rollback();
@@ -202,7 +486,13 @@ public class TrackDAO {
                     logger.error("Error rolling back transaction", ex);
                 }
             }
-            logger.error("Error inserting API track: {}", track.getTitle(), e);
+            // id проставлялись внутри откаченной транзакции и указывают на несуществующие строки
+            for (Track track : valid) {
+                track.setId(null);
+                track.setArtistId(null);
+                track.setAlbumId(null);
+            }
+            logger.error("Error importing {} API tracks", valid.size(), e);
             return false;
         } finally {
             if (conn != null) {
@@ -216,66 +506,206 @@ public class TrackDAO {
         }
     }
 
-    /**
-     * Находит или создает артиста
-     */
-    private Long findOrCreateArtist(Connection conn, String artistName) throws SQLException {
-        // Сначала ищем существующего артиста
-        String findSql = "SELECT id FROM artists WHERE name ILIKE ?";
+    private Map<String, Long> resolveArtists(Connection conn, List<Track> tracks) throws SQLException {
+        Map<String, String> names = new LinkedHashMap<>();
+        for (Track track : tracks) {
+            names.putIfAbsent(key(track.getArtistName()), track.getArtistName());
+        }
+
+        Map<String, Long> ids = new HashMap<>();
+        String findSql = "SELECT a.id, n.name FROM unnest(?::text[]) AS n(name) " +
+                "JOIN artists a ON lower(a.name) = lower(n.name) ORDER BY a.id";
         try (PreparedStatement stmt = conn.prepareStatement(findSql)) {
-            stmt.setString(1, artistName);
-            ResultSet rs = stmt.executeQuery();
-            if (rs.next()) {
-                return rs.getLong("id");
+            stmt.setArray(1, conn.createArrayOf("text", names.values().toArray()));
+            collectIds(stmt, ids, rs -> key(rs.getString("name")));
+        }
+
+        List<String> missing = new ArrayList<>();
+        names.forEach((key, name) -> {
+            if (!ids.containsKey(key)) missing.add(name);
+        });
+        if (!missing.isEmpty()) {
+            String insertSql = "INSERT INTO artists (name, created_at) " +
+                    "SELECT name, CURRENT_TIMESTAMP FROM unnest(?::text[]) AS n(name) RETURNING id, name";
+            try (PreparedStatement stmt = conn.prepareStatement(insertSql)) {
+                stmt.setArray(1, conn.createArrayOf("text", missing.toArray()));
+                collectIds(stmt, ids, rs -> key(rs.getString("name")));
             }
         }
+        return ids;
+    }
 
-        // Если не нашли, создаем нового
-        String insertSql = "INSERT INTO artists (name, created_at) VALUES (?, CURRENT_TIMESTAMP)";
-        try (PreparedStatement stmt = conn.prepareStatement(insertSql, Statement.RETURN_GENERATED_KEYS)) {
-            stmt.setString(1, artistName);
-            int affectedRows = stmt.executeUpdate();
-            if (affectedRows > 0) {
-                try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
-                    if (generatedKeys.next()) {
-                        return generatedKeys.getLong(1);
-                    }
-                }
+    private Map<String, Long> resolveAlbums(Connection conn, List<Track> tracks) throws SQLException {
+        Map<String, Track> albums = new LinkedHashMap<>();
+        for (Track track : tracks) {
+            if (!isBlank(track.getAlbumTitle())) {
+                albums.putIfAbsent(key(track.getArtistId(), track.getAlbumTitle()), track);
+            }
+        }
+        Map<String, Long> ids = new HashMap<>();
+        if (albums.isEmpty()) {
+            return ids;
+        }
+
+        String findSql = "SELECT al.id, k.artist_id, k.title FROM unnest(?::bigint[], ?::text[]) AS k(artist_id, title) " +
+                "JOIN albums al ON al.artist_id = k.artist_id AND lower(al.title) = lower(k.title) ORDER BY al.id";
+        try (PreparedStatement stmt = conn.prepareStatement(findSql)) {
+            bindArtistTitleArrays(conn, stmt, albums.values(), Track::getAlbumTitle);
+            collectIds(stmt, ids, rs -> key(rs.getLong("artist_id"), rs.getString("title")));
+        }
+
+        List<Track> missing = new ArrayList<>();
+        albums.forEach((key, track) -> {
+            if (!ids.containsKey(key)) missing.add(track);
+        });
+        if (!missing.isEmpty()) {
+            String insertSql = "INSERT INTO albums (artist_id, title, created_at) " +
+                    "SELECT artist_id, title, CURRENT_TIMESTAMP FROM unnest(?::bigint[], ?::text[]) AS k(artist_id, title) " +
+                    "RETURNING id, artist_id, title";
+            try (PreparedStatement stmt = conn.prepareStatement(insertSql)) {
+                bindArtistTitleArrays(conn, stmt, missing, Track::getAlbumTitle);
+                collectIds(stmt, ids, rs -> key(rs.getLong("artist_id"), rs.getString("title")));
             }
         }
-        throw new SQLException("Failed to create artist: " + artistName);
+        return ids;
     }
 
-    /**
-     * Находит или создает альбом
-     */
-    private Long findOrCreateAlbum(Connection conn, String albumTitle, Long artistId) throws SQLException {
-        // Сначала ищем существующий альбом
-        String findSql = "SELECT id FROM albums WHERE title ILIKE ? AND artist_id = ?";
+    private Map<String, Long> resolveTracks(Connection conn, List<Track> tracks) throws SQLException {
+        Map<String, Track> unique = new LinkedHashMap<>();
+        for (Track track : tracks) {
+            unique.putIfAbsent(key(track.getArtistId(), track.getTitle()), track);
+        }
+
+        Map<String, Long> ids = new HashMap<>();
+        String findSql = "SELECT t.id, k.artist_id, k.title FROM unnest(?::bigint[], ?::text[]) AS k(artist_id, title) " +
+                "JOIN tracks t ON t.artist_id = k.artist_id AND lower(t.title) = lower(k.title) ORDER BY t.id";
         try (PreparedStatement stmt = conn.prepareStatement(findSql)) {
-            stmt.setString(1, albumTitle);
-            stmt.setLong(2, artistId);
-            ResultSet rs = stmt.executeQuery();
-            if (rs.next()) {
-                return rs.getLong("id");
+            bindArtistTitleArrays(conn, stmt, unique.values(), Track::getTitle);
+            collectIds(stmt, ids, rs -> key(rs.getLong("artist_id"), rs.getString("title")));
+        }
+
+        List<Track> missing = new ArrayList<>();
+        unique.forEach((key, track) -> {
+            if (!ids.containsKey(key)) missing.add(track);
+        });
+        if (!missing.isEmpty()) {
+            Object[] albumIds = new Object[missing.size()];
+            Object[] durations = new Object[missing.size()];
+            Object[] lastFmIds = new Object[missing.size()];
+            for (int i = 0; i < missing.size(); i++) {
+                Track track = missing.get(i);
+                albumIds[i] = track.getAlbumId();
+                durations[i] = track.getDuration();
+                lastFmIds[i] = generateLastFmId(track.getArtistName(), track.getTitle());
+            }
+
+            String insertSql = "INSERT INTO tracks (artist_id, title, album_id, duration, last_fm_id, created_at) " +
+                    "SELECT artist_id, title, album_id, duration, last_fm_id, CURRENT_TIMESTAMP " +
+                    "FROM unnest(?::bigint[], ?::text[], ?::bigint[], ?::int[], ?::text[]) " +
+                    "AS k(artist_id, title, album_id, duration, last_fm_id) " +
+                    "RETURNING id, artist_id, title";
+            try (PreparedStatement stmt = conn.prepareStatement(insertSql)) {
+                bindArtistTitleArrays(conn, stmt, missing, Track::getTitle);
+                stmt.setArray(3, conn.createArrayOf("bigint", albumIds));
+                stmt.setArray(4, conn.createArrayOf("integer", durations));
+                stmt.setArray(5, conn.createArrayOf("text", lastFmIds));
+                collectIds(stmt, ids, rs -> key(rs.getLong("artist_id"), rs.getString("title")));
             }
         }
+        return ids;
+    }
 
-        // Если не нашли, создаем новый
-        String insertSql = "INSERT INTO albums (title, artist_id, created_at) VALUES (?, ?, CURRENT_TIMESTAMP)";
-        try (PreparedStatement stmt = conn.prepareStatement(insertSql, Statement.RETURN_GENERATED_KEYS)) {
-            stmt.setString(1, albumTitle);
-            stmt.setLong(2, artistId);
-            int affectedRows = stmt.executeUpdate();
-            if (affectedRows > 0) {
-                try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
-                    if (generatedKeys.next()) {
-                        return generatedKeys.getLong(1);
-                    }
+    private void linkGenres(Connection conn, List<Track> tracks) throws SQLException {
+        Map<String, String> genreNames = new LinkedHashMap<>();
+        for (Track track : tracks) {
+            for (String genre : genres(track)) {
+                genreNames.putIfAbsent(key(genre), genre);
+            }
+        }
+        if (genreNames.isEmpty()) {
+            return;
+        }
+
+        Map<String, Long> genreIds = new HashMap<>();
+        String findSql = "SELECT g.id, n.name FROM unnest(?::text[]) AS n(name) " +
+                "JOIN genres g ON lower(g.name) = lower(n.name)";
+        try (PreparedStatement stmt = conn.prepareStatement(findSql)) {
+            stmt.setArray(1, conn.createArrayOf("text", genreNames.values().toArray()));
+            collectIds(stmt, genreIds, rs -> key(rs.getString("name")));
+        }
+
+        List<Object> linkTrackIds = new ArrayList<>();
+        List<Object> linkGenreIds = new ArrayList<>();
+        for (Track track : tracks) {
+            for (String genre : genres(track)) {
+                Long genreId = genreIds.get(key(genre));
+                if (genreId != null) {
+                    linkTrackIds.add(track.getId());
+                    linkGenreIds.add(genreId);
                 }
             }
         }
-        throw new SQLException("Failed to create album: " + albumTitle);
+        if (linkTrackIds.isEmpty()) {
+            return;
+        }
+
+        String insertSql = "INSERT INTO track_genres (track_id, genre_id) " +
+                "SELECT * FROM unnest(?::bigint[], ?::bigint[]) ON CONFLICT (track_id, genre_id) DO NOTHING";
+        try (PreparedStatement stmt = conn.prepareStatement(insertSql)) {
+            stmt.setArray(1, conn.createArrayOf("bigint", linkTrackIds.toArray()));
+            stmt.setArray(2, conn.createArrayOf("bigint", linkGenreIds.toArray()));
+            stmt.executeUpdate();
+        }
+    }
+
+    private static void bindArtistTitleArrays(Connection conn, PreparedStatement stmt, Collection<Track> tracks,
+                                              Function<Track, String> title) throws SQLException {
+        Object[] artistIds = new Object[tracks.size()];
+        Object[] titles = new Object[tracks.size()];
+        int i = 0;
+        for (Track track : tracks) {
+            artistIds[i] = track.getArtistId();
+            titles[i] = title.apply(track);
+            i++;
+        }
+        stmt.setArray(1, conn.createArrayOf("bigint", artistIds));
+        stmt.setArray(2, conn.createArrayOf("text", titles));
+    }
+
+    // При дубликатах в БД берётся строка с наименьшим id (запросы упорядочены по id)
+    private static void collectIds(PreparedStatement stmt, Map<String, Long> ids, RowKey rowKey) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                ids.putIfAbsent(rowKey.of(rs), rs.getLong("id"));
+            }
+        }
+    }
+
+    private static List<String> genres(Track track) {
+        List<String> genres = new ArrayList<>();
+        if (track.getGenre() != null && track.getId() != null) {
+            for (String genre : track.getGenre().split(",\\s*")) {
+                if (!isBlank(genre)) genres.add(genre.trim());
+            }
+        }
+        return genres;
+    }
+
+    private static String key(String name) {
+        return name.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static String key(Long artistId, String title) {
+        return artistId + ":" + key(title);
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.trim().isEmpty();
+    }
+
+    @FunctionalInterface
+    private interface RowKey {
+        String of(ResultSet rs) throws SQLException;
     }
 
     private String generateLastFmId(String artist, String title) {
@@ -321,15 +751,15 @@ public class TrackDAO {
             stmt.setInt(4, track.getDuration());
             stmt.setInt(5, track.getTrackNumber());
             stmt.setString(6, track.getLastFmId());
-            stmt.setDouble(7, track.getAcousticness());
-            stmt.setDouble(8, track.getDanceability());
-            stmt.setDouble(9, track.getEnergy());
-            stmt.setDouble(10, track.getInstrumentalness());
-            stmt.setDouble(11, track.getLiveness());
-            stmt.setDouble(12, track.getLoudness());
-            stmt.setDouble(13, track.getSpeechiness());
-            stmt.setDouble(14, track.getTempo());
-            stmt.setDouble(15, track.getValence());
+            setAudioFeature(stmt, 7, track.getAcousticness());
+            setAudioFeature(stmt, 8, track.getDanceability());
+            setAudioFeature(stmt, 9, track.getEnergy());
+            setAudioFeature(stmt, 10, track.getInstrumentalness());
+            setAudioFeature(stmt, 11, track.getLiveness());
+            setAudioFeature(stmt, 12, track.getLoudness());
+            setAudioFeature(stmt, 13, track.getSpeechiness());
+            setAudioFeature(stmt, 14, track.getTempo());
+            setAudioFeature(stmt, 15, track.getValence());
 
             int affectedRows = stmt.executeUpdate();
             if (affectedRows > 0) {
@@ -360,15 +790,15 @@ public class TrackDAO {
             stmt.setInt(4, track.getDuration());
             stmt.setInt(5, track.getTrackNumber());
             stmt.setString(6, track.getLastFmId());
-            stmt.setDouble(7, track.getAcousticness());
-            stmt.setDouble(8, track.getDanceability());
-            stmt.setDouble(9, track.getEnergy());
-            stmt.setDouble(10, track.getInstrumentalness());
-            stmt.setDouble(11, track.getLiveness());
-            stmt.setDouble(12, track.getLoudness());
-            stmt.setDouble(13, track.getSpeechiness());
-            stmt.setDouble(14, track.getTempo());
-            stmt.setDouble(15, track.getValence());
+            setAudioFeature(stmt, 7, track.getAcousticness());
+            setAudioFeature(stmt, 8, track.getDanceability());
+            setAudioFeature(stmt, 9, track.getEnergy());
+            setAudioFeature(stmt, 10, track.getInstrumentalness());
+            setAudioFeature(stmt, 11, track.getLiveness());
+            setAudioFeature(stmt, 12, track.getLoudness());
+            setAudioFeature(stmt, 13, track.getSpeechiness());
+            setAudioFeature(stmt, 14, track.getTempo());
+            setAudioFeature(stmt, 15, track.getValence());
             stmt.setLong(16, track.getId());
 
             return stmt.executeUpdate() > 0;
@@ -402,15 +832,15 @@ public class TrackDAO {
         track.setLastFmId(rs.getString("last_fm_id"));
 
         // Audio features
-        track.setAcousticness(rs.getDouble("acousticness"));
-        track.setDanceability(rs.getDouble("danceability"));
-        track.setEnergy(rs.getDouble("energy"));
-        track.setInstrumentalness(rs.getDouble("instrumentalness"));
-        track.setLiveness(rs.getDouble("liveness"));
-        track.setLoudness(rs.getDouble("loudness"));
-        track.setSpeechiness(rs.getDouble("speechiness"));
-        track.setTempo(rs.getDouble("tempo"));
-        track.setValence(rs.getDouble("valence"));
+        track.setAcousticness(getAudioFeature(rs, "acousticness"));
+        track.setDanceability(getAudioFeature(rs, "danceability"));
+        track.setEnergy(getAudioFeature(rs, "energy"));
+        track.setInstrumentalness(getAudioFeature(rs, "instrumentalness"));
+        track.setLiveness(getAudioFeature(rs, "liveness"));
+        track.setLoudness(getAudioFeature(rs, "loudness"));
+        track.setSpeechiness(getAudioFeature(rs, "speechiness"));
+        track.setTempo(getAudioFeature(rs, "tempo"));
+        track.setValence(getAudioFeature(rs, "valence"));
 
         track.setCreatedAt(rs.getTimestamp("created_at").toLocalDateTime());
 
@@ -420,4 +850,52 @@ public class TrackDAO {
 
         return track;
     }
-}
\ No newline at end of file
+
+    // NULL в столбцах признаков - признак неизвестен, а не равен 0
+    private static Double getAudioFeature(ResultSet rs, String column) throws SQLException {
+        double value = rs.getDouble(column);
+        return rs.wasNull() ? null : value;
+    }
+
+    private static void setAudioFeature(PreparedStatement stmt, int index, Double value) throws SQLException {
+        if (value != null) {
+            stmt.setDouble(index, value);
+        } else {
+            stmt.setNull(index, Types.DOUBLE);
+        }
+    }
+
+    /**
+     * Позиция в выдаче поиска: оценка и id последнего показанного трека
+     */
+    public static final class SearchKey {
+        private final double rank;
+        private final long id;
+
+        public SearchKey(double rank, long id) {
+            this.rank = rank;
+            this.id = id;
+        }
+    }
+
+    public static final class SearchPage {
+        private final List<Track> tracks;
+        private final SearchKey nextKey;
+
+        private SearchPage(List<Track> tracks, SearchKey nextKey) {
+            this.tracks = tracks;
+            this.nextKey = nextKey;
+        }
+
+        public List<Track> getTracks() {
+            return tracks;
+        }
+
+        /**
+         * Ключ для следующей страницы; null, если результатов больше нет
+         */
+        public SearchKey getNextKey() {
+            return nextKey;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.github.everolfe.database.dao;
 
+import com.github.everolfe.database.CursorQuery;
 import com.github.everolfe.database.DatabaseConnection;
 import com.github.everolfe.model.TrackGenre;
 import org.slf4j.Logger;
@@ -8,6 +9,7 @@ import org.slf4j.LoggerFactory;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 public class TrackGenreDAO {
     private static final Logger logger = LoggerFactory.getLogger(TrackGenreDAO.class);
@@ -58,6 +60,50 @@ public class TrackGenreDAO {
         return trackGenres;
     }
 
+    public List<TrackGenre> findAll() {
+        List<TrackGenre> trackGenres = new ArrayList<>();
+        String sql = "SELECT tg.*, t.title as track_title, g.name as genre_name " +
+                "FROM track_genres tg " +
+                "JOIN tracks t ON tg.track_id = t.id " +
+                "JOIN genres g ON tg.genre_id = g.id " +
+                "ORDER BY tg.track_id";
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+
+            while (rs.next()) {
+                trackGenres.add(mapResultSetToTrackGenre(rs));
+            }
+        } catch (SQLException e) {
+            logger.error("Error finding all track genres", e);
+        }
+        return trackGenres;
+    }
+
+    /**
+     * Все связи трек-жанр курсором, без названия трека (заполнены trackId, genreId и genreName).
+     * Порядок строк не определён.
+     *
+     * @return false, если чтение прервалось ошибкой БД
+     */
+    public boolean forEach(Consumer<? super TrackGenre> action) {
+        String sql = "SELECT tg.track_id, tg.genre_id, g.name as genre_name " +
+                "FROM track_genres tg " +
+                "JOIN genres g ON tg.genre_id = g.id";
+        try {
+            CursorQuery.forEach(sql, CursorQuery.NO_PARAMETERS, rs -> {
+                TrackGenre trackGenre = new TrackGenre(rs.getLong("track_id"), rs.getLong("genre_id"));
+                trackGenre.setGenreName(rs.getString("genre_name"));
+                return trackGenre;
+            }, action);
+            return true;
+        } catch (SQLException e) {
+            logger.error("Error streaming track genres", e);
+            return false;
+        }
+    }
+
     public boolean addGenreToTrack(Long trackId, Long genreId) {
         String sql = "INSERT INTO track_genres (track_id, genre_id) VALUES (?, ?) " +
                 "ON CONFLICT (track_id, genre_id) DO NOTHING";
@@ -1,6 +1,8 @@
 package com.github.everolfe.database.dao;
 
+import com.github.everolfe.database.CursorQuery;
 import com.github.everolfe.database.DatabaseConnection;
+import com.github.everolfe.database.UncheckedSQLException;
 import com.github.everolfe.model.User;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -9,10 +11,14 @@ import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 public class UserDAO {
     private static final Logger logger = LoggerFactory.getLogger(UserDAO.class);
 
+    private static final String SELECT_ALL_UNORDERED = "SELECT * FROM users ";
+
     public Optional<User> findById(Long id) {
         String sql = "SELECT * FROM users WHERE id = ?";
         try (Connection conn = DatabaseConnection.getConnection();
@@ -49,7 +55,7 @@ public class UserDAO {
 
     public List<User> findAll() {
         List<User> users = new ArrayList<>();
-        String sql = "SELECT * FROM users ORDER BY username";
+        String sql = SELECT_ALL_UNORDERED + "ORDER BY username";
 
         try (Connection conn = DatabaseConnection.getConnection();
              Statement stmt = conn.createStatement();
@@ -64,6 +70,32 @@ public class UserDAO {
         return users;
     }
 
+    /**
+     * Обходит всех пользователей серверным курсором, не загружая выборку в память
+     *
+     * @return false, если чтение прервалось ошибкой БД
+     */
+    public boolean forEach(Consumer<? super User> action) {
+        try {
+            CursorQuery.forEach(SELECT_ALL_UNORDERED, CursorQuery.NO_PARAMETERS, this::mapResultSetToUser, action);
+            return true;
+        } catch (SQLException e) {
+            logger.error("Error streaming all users", e);
+            return false;
+        }
+    }
+
+    /**
+     * Все пользователи ленивым потоком; поток нужно закрыть (try-with-resources), ошибка БД - UncheckedSQLException
+     */
+    public Stream<User> streamAll() {
+        try {
+            return CursorQuery.stream(SELECT_ALL_UNORDERED, CursorQuery.NO_PARAMETERS, this::mapResultSetToUser);
+        } catch (SQLException e) {
+            throw new UncheckedSQLException("Error streaming all users", e);
+        }
+    }
+
     public boolean save(User user) {
         if (user.getId() == null) {
             return insert(user);
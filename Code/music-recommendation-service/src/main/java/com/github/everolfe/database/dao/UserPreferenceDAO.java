@@ -2,6 +2,7 @@ package com.github.everolfe.database.dao;
 
 import com.github.everolfe.database.DatabaseConnection;
 import com.github.everolfe.model.UserPreference;
+import com.github.everolfe.util.LongHashSet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -59,6 +60,28 @@ public class UserPreferenceDAO {
         return preferences;
     }
 
+    /**
+     * Возвращает id всех треков в коллекции пользователя одним запросом
+     */
+    public LongHashSet findTrackIdsByUserId(Long userId) {
+        LongHashSet trackIds = new LongHashSet();
+        String sql = "SELECT track_id FROM user_preferences WHERE user_id = ?";
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setLong(1, userId);
+            ResultSet rs = stmt.executeQuery();
+
+            while (rs.next()) {
+                trackIds.add(rs.getLong("track_id"));
+            }
+        } catch (SQLException e) {
+            logger.error("Error finding track ids by user id: {}", userId, e);
+        }
+        return trackIds;
+    }
+
     public List<UserPreference> findFavoritesByUserId(Long userId) {
         List<UserPreference> favorites = new ArrayList<>();
         String sql = "SELECT up.*, t.title as track_title, a.name as artist_name " +
@@ -0,0 +1,21 @@
+package com.github.everolfe.service;
+
+/**
+ * Пакетное сравнение вектора аудио-признаков с признаками всех треков индекса.
+ * Признаки хранятся по столбцам (columns[признак][строка]), результат для строки i
+ * записывается в out[i]. Реализации: скалярная и SIMD на jdk.incubator.vector.
+ */
+public interface AudioFeatureKernel {
+
+    /**
+     * out[i] = сумма (columns[d][i] - query[d])^2 по всем признакам d
+     */
+    void squaredDistances(float[][] columns, float[] query, int size, float[] out);
+
+    /**
+     * out[i] = сумма columns[d][i] * query[d] по всем признакам d
+     */
+    void dotProducts(float[][] columns, float[] query, int size, float[] out);
+
+    String name();
+}
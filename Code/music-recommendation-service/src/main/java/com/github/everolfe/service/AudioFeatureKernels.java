@@ -0,0 +1,50 @@
+package com.github.everolfe.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Выбор реализации AudioFeatureKernel. Проект собирается под Java 11, поэтому
+ * SIMD-реализация загружается через reflection: она есть только в сборке с профилем
+ * vector-api и работает, только если JVM запущена с --add-modules jdk.incubator.vector.
+ * В остальных случаях используется скалярная реализация.
+ */
+public final class AudioFeatureKernels {
+    private static final Logger logger = LoggerFactory.getLogger(AudioFeatureKernels.class);
+
+    private static final String VECTOR_KERNEL_CLASS = "com.github.everolfe.service.VectorAudioFeatureKernel";
+
+    private AudioFeatureKernels() {
+    }
+
+    /**
+     * @param allowVector false - всегда скалярная реализация
+     */
+    public static AudioFeatureKernel create(boolean allowVector) {
+        AudioFeatureKernel kernel = allowVector ? newVectorKernel() : null;
+        if (kernel == null) {
+            kernel = new ScalarAudioFeatureKernel();
+        }
+        logger.info("Audio feature similarity kernel: {}", kernel.name());
+        return kernel;
+    }
+
+    /**
+     * SIMD-реализация или null, если она недоступна
+     */
+    public static AudioFeatureKernel newVectorKernel() {
+        try {
+            Class<?> kernelClass = Class.forName(VECTOR_KERNEL_CLASS);
+            AudioFeatureKernel kernel = (AudioFeatureKernel) kernelClass.getDeclaredConstructor().newInstance();
+            // Проверочный вызов: ошибки связывания с jdk.incubator.vector проявляются при первом вызове
+            float[] out = new float[1];
+            kernel.dotProducts(new float[][]{{1f}}, new float[]{1f}, 1, out);
+            return kernel;
+        } catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+            // ClassNotFoundException - собрано без профиля vector-api,
+            // NoClassDefFoundError - модуль jdk.incubator.vector не подключён
+            logger.debug("Vector API kernel is not available", e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.github.everolfe.service;
+
+import com.github.everolfe.model.Track;
+
+import java.util.Arrays;
+
+/**
+ * Нормализованный вектор аудио-признаков трека: каждый признак приводится к [0, 1],
+ * чтобы громкость (дБ) и темп (BPM) не перевешивали остальные признаки.
+ * Порядок признаков - столбцы TrackStore (ACOUSTICNESS ... VALENCE).
+ */
+public final class AudioFeatures {
+    public static final int DIMENSIONS = TrackStore.FEATURE_COUNT;
+
+    private static final double MIN_LOUDNESS_DB = -60.0;
+    private static final double MAX_TEMPO_BPM = 250.0;
+
+    public enum Metric {
+        COSINE,
+        EUCLIDEAN;
+
+        public static Metric parse(String value) {
+            return "cosine".equalsIgnoreCase(value) ? COSINE : EUCLIDEAN;
+        }
+    }
+
+    private AudioFeatures() {
+    }
+
+    /**
+     * Записывает нормализованные признаки трека в out
+     *
+     * @return false, если хотя бы один признак неизвестен (out в этом случае заполнен нулями)
+     */
+    public static boolean normalize(Track track, float[] out) {
+        Double[] values = {
+                track.getAcousticness(),
+                track.getDanceability(),
+                track.getEnergy(),
+                track.getInstrumentalness(),
+                track.getLiveness(),
+                track.getLoudness(),
+                track.getSpeechiness(),
+                track.getTempo(),
+                track.getValence()
+        };
+        for (int d = 0; d < DIMENSIONS; d++) {
+            if (values[d] == null || values[d].isNaN()) {
+                Arrays.fill(out, 0f);
+                return false;
+            }
+            out[d] = (float) scale(d, values[d]);
+        }
+        return true;
+    }
+
+    /**
+     * То же для строки TrackStore, без создания объектов
+     */
+    public static boolean normalize(TrackStore.TrackView track, float[] out) {
+        for (int d = 0; d < DIMENSIONS; d++) {
+            float value = track.getFeature(d);
+            if (Float.isNaN(value)) {
+                Arrays.fill(out, 0f);
+                return false;
+            }
+            out[d] = (float) scale(d, value);
+        }
+        return true;
+    }
+
+    public static float norm(float[] vector) {
+        float sum = 0f;
+        for (float value : vector) {
+            sum += value * value;
+        }
+        return (float) Math.sqrt(sum);
+    }
+
+    /**
+     * Переводит результат AudioFeatureKernel в схожесть от 0 до 1
+     *
+     * @param raw квадрат расстояния (EUCLIDEAN) или скалярное произведение (COSINE)
+     */
+    public static double similarity(Metric metric, float raw, float sourceNorm, float candidateNorm) {
+        if (metric == Metric.COSINE) {
+            if (sourceNorm == 0f || candidateNorm == 0f) {
+                return 0.0;
+            }
+            // Признаки неотрицательны, поэтому косинус не меньше 0
+            return Math.min(1.0, raw / (sourceNorm * candidateNorm));
+        }
+        // Наибольшее расстояние в единичном кубе - sqrt(DIMENSIONS)
+        return 1.0 - Math.min(1.0, Math.sqrt(raw / DIMENSIONS));
+    }
+
+    private static double scale(int feature, double value) {
+        double scaled;
+        switch (feature) {
+            case TrackStore.LOUDNESS:
+                scaled = (value - MIN_LOUDNESS_DB) / -MIN_LOUDNESS_DB;
+                break;
+            case TrackStore.TEMPO:
+                scaled = value / MAX_TEMPO_BPM;
+                break;
+            default:
+                scaled = value;
+        }
+        return Math.min(1.0, Math.max(0.0, scaled));
+    }
+}
@@ -0,0 +1,129 @@
+package com.github.everolfe.service;
+
+import com.github.everolfe.database.dao.GenreDAO;
+import com.github.everolfe.model.Genre;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Словарь жанров: сопоставляет жанру порядковый номер бита.
+ * Строится по таблице genres, новые жанры (например, теги Last.fm)
+ * дописываются в конец. Жанры трека кодируются компактным битсетом long[].
+ */
+public class GenreVocabulary {
+    private static final Logger logger = LoggerFactory.getLogger(GenreVocabulary.class);
+
+    private static final long[] EMPTY = new long[0];
+
+    private final GenreDAO genreDAO;
+    private final Map<String, Integer> ordinalByName = new HashMap<>();
+
+    public GenreVocabulary(GenreDAO genreDAO) {
+        this.genreDAO = genreDAO;
+    }
+
+    /**
+     * Перечитывает справочник жанров из БД
+     */
+    public synchronized void reload() {
+        ordinalByName.clear();
+
+        List<Genre> genres = genreDAO.findAll();
+        for (Genre genre : genres) {
+            ordinalOf(genre.getName());
+        }
+        logger.debug("Genre vocabulary loaded: {} genres", ordinalByName.size());
+    }
+
+    public synchronized int size() {
+        return ordinalByName.size();
+    }
+
+    /**
+     * Добавляет в битсет один жанр (например, жанр строки TrackStore)
+     */
+    public synchronized long[] addGenre(long[] bits, String name) {
+        int ordinal = ordinalOf(name);
+        return ordinal >= 0 ? setBit(bits, ordinal) : bits;
+    }
+
+    /**
+     * Кодирует строку жанров вида "Rock, Pop" (формат Track.getGenre())
+     */
+    public synchronized long[] encode(String genre) {
+        if (genre == null || genre.isEmpty()) {
+            return EMPTY;
+        }
+
+        long[] bits = EMPTY;
+        for (String name : genre.split(",\\s*")) {
+            int ordinal = ordinalOf(name);
+            if (ordinal >= 0) {
+                bits = setBit(bits, ordinal);
+            }
+        }
+        return bits;
+    }
+
+    private int ordinalOf(String name) {
+        if (name == null) return -1;
+
+        String key = name.trim().toLowerCase();
+        // Заглушки, которые подставляются для треков без тегов, жанрами не считаем
+        if (key.isEmpty() || key.equals("unknown") || key.equals("various")) {
+            return -1;
+        }
+
+        Integer ordinal = ordinalByName.get(key);
+        if (ordinal == null) {
+            ordinal = ordinalByName.size();
+            ordinalByName.put(key, ordinal);
+        }
+        return ordinal;
+    }
+
+    public static long[] union(long[] bits1, long[] bits2) {
+        if (bits2.length == 0) return bits1;
+        if (bits1.length == 0) return bits2;
+
+        long[] result = Arrays.copyOf(bits1, Math.max(bits1.length, bits2.length));
+        for (int i = 0; i < bits2.length; i++) {
+            result[i] |= bits2[i];
+        }
+        return result;
+    }
+
+    public static int cardinality(long[] bits) {
+        int count = 0;
+        for (long word : bits) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    /**
+     * Коэффициент Жаккара |A ∩ B| / |A ∪ B| через popcount.
+     * Мощности множеств передаются заранее посчитанными, поэтому метод не выделяет память.
+     */
+    public static double similarity(long[] bits1, int cardinality1, long[] bits2, int cardinality2) {
+        int words = Math.min(bits1.length, bits2.length);
+        int common = 0;
+        for (int i = 0; i < words; i++) {
+            common += Long.bitCount(bits1[i] & bits2[i]);
+        }
+        int union = cardinality1 + cardinality2 - common;
+        return union == 0 ? 0.0 : (double) common / union;
+    }
+
+    private static long[] setBit(long[] bits, int ordinal) {
+        int word = ordinal >>> 6;
+        long[] result = Arrays.copyOf(bits, Math.max(bits.length, word + 1));
+        result[word] |= 1L << ordinal;
+        return result;
+    }
+}
@@ -6,18 +6,29 @@ import com.github.everolfe.model.UserPreference;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 public class MusicCollectionService {
     private static final Logger logger = LoggerFactory.getLogger(MusicCollectionService.class);
     private final UserPreferenceDAO userPreferenceDAO;
     private final TrackService trackService;
-
-    public MusicCollectionService() {
-        this.userPreferenceDAO = new UserPreferenceDAO();
-        this.trackService = new TrackService();
+    private final RecommendationService recommendationService;
+    private final ExecutorService ioExecutor;
+
+    public MusicCollectionService(UserPreferenceDAO userPreferenceDAO, TrackService trackService,
+                                  RecommendationService recommendationService, ExecutorService ioExecutor) {
+        this.userPreferenceDAO = userPreferenceDAO;
+        this.trackService = trackService;
+        this.recommendationService = recommendationService;
+        this.ioExecutor = ioExecutor;
     }
 
     // Основной метод добавления трека в коллекцию
@@ -69,19 +80,20 @@ public class MusicCollectionService {
     }
 
     private void triggerRecommendationUpdate(Long userId) {
-        new Thread(() -> {
-            try {
-                // Небольшая задержка чтобы гарантировать сохранение трека
-                Thread.sleep(500);
-
-                RecommendationService recService = new RecommendationService();
-                recService.generateNewRecommendations(userId);
+        // Небольшая задержка чтобы гарантировать сохранение трека; поток на время ожидания не занимается
+        try {
+            CompletableFuture.runAsync(() -> {
+                try {
+                    recommendationService.generateNewRecommendations(userId);
 
-                logger.info("Recommendations updated after adding new track for user: {}", userId);
-            } catch (Exception e) {
-                logger.error("Error triggering recommendation update for user: {}", userId, e);
-            }
-        }).start();
+                    logger.info("Recommendations updated after adding new track for user: {}", userId);
+                } catch (Exception e) {
+                    logger.error("Error triggering recommendation update for user: {}", userId, e);
+                }
+            }, CompletableFuture.delayedExecutor(500, TimeUnit.MILLISECONDS, ioExecutor));
+        } catch (RejectedExecutionException e) {
+            logger.warn("Recommendation update skipped, application is shutting down: user {}", userId);
+        }
     }
 
     private Track findExistingTrack(Track apiTrack) {
@@ -113,7 +125,7 @@ public class MusicCollectionService {
             trackToSave.setSource("API-Imported");
 
             // Сохраняем трек в базу данных (создаст артиста и альбом если нужно)
-            boolean saved = trackService.addTrack(trackToSave);
+            boolean saved = trackService.importTracks(Collections.singletonList(trackToSave));
             if (saved && trackToSave.getId() != null && trackToSave.getId() > 0) {
                 logger.info("API track saved to database: {} - {} (ID: {})",
                         trackToSave.getArtistName(), trackToSave.getTitle(), trackToSave.getId());
@@ -212,10 +224,14 @@ public class MusicCollectionService {
             List<UserPreference> preferences = userPreferenceDAO.findByUserId(userId);
             logger.info("Found {} user preferences for user: {}", preferences.size(), userId);
 
+            // Треки коллекции загружаются одним запросом
+            Map<Long, Track> tracksById = trackService.getTracksByIds(preferences.stream()
+                    .map(UserPreference::getTrackId)
+                    .collect(Collectors.toList()));
+
             List<Track> userTracks = preferences.stream()
                     .map(preference -> {
-                        // Получаем полную информацию о треке
-                        Track track = trackService.getTrackById(preference.getTrackId());
+                        Track track = tracksById.get(preference.getTrackId());
                         if (track != null) {
                             // Добавляем информацию из UserPreference
                             track.setRating(preference.getRating());
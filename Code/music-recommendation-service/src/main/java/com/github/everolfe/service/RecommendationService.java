@@ -1,15 +1,25 @@
 package com.github.everolfe.service;
 
+import com.github.everolfe.api.AsyncLastFmService;
 import com.github.everolfe.api.LastFmService;
+import com.github.everolfe.config.Config;
 import com.github.everolfe.database.dao.RecommendationDAO;
 import com.github.everolfe.database.dao.UserPreferenceDAO;
 import com.github.everolfe.model.Recommendation;
 import com.github.everolfe.model.Track;
 import com.github.everolfe.model.UserPreference;
+import com.github.everolfe.util.LongHashSet;
+import com.github.everolfe.util.TaskScope;
+import com.github.everolfe.util.TopKSelector;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 public class RecommendationService {
@@ -18,6 +28,9 @@ public class RecommendationService {
     private final UserPreferenceDAO userPreferenceDAO;
     private final TrackService trackService;
     private final LastFmService lastFmService;
+    private final AsyncLastFmService asyncLastFmService;
+    private final TrackFeatureIndex featureIndex;
+    private final ExecutorService ioExecutor;
 
     private static final int TOTAL_RECOMMENDATIONS_LIMIT = 25; // Было 15
     private static final int CONTENT_BASED_PER_TRACK = 5; // Было 3
@@ -25,17 +38,17 @@ public class RecommendationService {
     private static final int POPULAR_RECOMMENDATIONS_LIMIT = 7; // Было 5
     private static final int RECENT_BASED_LIMIT = 5; // Новый тип рекомендаций
 
-    // Веса для алгоритма рекомендаций
-    private static final double GENRE_WEIGHT = 0.4;
-    private static final double ARTIST_WEIGHT = 0.3;
-    private static final double DURATION_WEIGHT = 0.15;
-    private static final double POPULARITY_WEIGHT = 0.15;
-
-    public RecommendationService() {
-        this.recommendationDAO = new RecommendationDAO();
-        this.userPreferenceDAO = new UserPreferenceDAO();
-        this.trackService = new TrackService();
-        this.lastFmService = new LastFmService();
+    public RecommendationService(RecommendationDAO recommendationDAO, UserPreferenceDAO userPreferenceDAO,
+                                 TrackService trackService, LastFmService lastFmService,
+                                 AsyncLastFmService asyncLastFmService, TrackFeatureIndex featureIndex,
+                                 ExecutorService ioExecutor) {
+        this.recommendationDAO = recommendationDAO;
+        this.userPreferenceDAO = userPreferenceDAO;
+        this.trackService = trackService;
+        this.lastFmService = lastFmService;
+        this.asyncLastFmService = asyncLastFmService;
+        this.featureIndex = featureIndex;
+        this.ioExecutor = ioExecutor;
     }
 
     public List<Recommendation> getRecommendationsForUser(Long userId) {
@@ -52,47 +65,78 @@ public class RecommendationService {
             logger.info("Returning {} valid recommendations for user: {}", unviewed.size(), userId);
             return unviewed;
 
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Collections.emptyList();
         } catch (Exception e) {
             logger.error("Error getting recommendations for user: {}", userId, e);
             return Collections.emptyList();
         }
     }
 
-    private List<Recommendation> generateEnhancedRecommendations(Long userId) {
+    private List<Recommendation> generateEnhancedRecommendations(Long userId) throws InterruptedException {
         List<Recommendation> recommendations = new ArrayList<>();
 
-        // 1. Рекомендации на основе контента (похожие треки) - БОЛЬШЕ рекомендаций
-        recommendations.addAll(generateContentBasedRecommendations(userId));
-
-        // 2. Рекомендации через Last.fm API - БОЛЬШЕ рекомендаций
-        recommendations.addAll(generateLastFmBasedRecommendations(userId));
-
-        // 3. Популярные треки - БОЛЬШЕ рекомендаций
-        recommendations.addAll(generatePopularRecommendations(userId));
-
-        // 4. Рекомендации на основе новых добавлений
-        recommendations.addAll(generateRecentBasedRecommendations(userId));
+        // Коллекция пользователя загружается один раз на весь запрос
+        LongHashSet userTrackIds = userPreferenceDAO.findTrackIdsByUserId(userId);
+
+        // Scatter-gather: источники независимы и выполняются параллельно, каждый со своим сроком.
+        // Общее время - максимум по источникам, а не сумма; не успевший или упавший источник
+        // просто не даёт рекомендаций
+        long startNanos = System.nanoTime();
+        try (TaskScope scope = new TaskScope(ioExecutor)) {
+            List<TaskScope.Subtask<List<Recommendation>>> sources = Arrays.asList(
+                    // 1. Рекомендации на основе контента (похожие треки) - БОЛЬШЕ рекомендаций
+                    forkSource(scope, "content", () -> generateContentBasedRecommendations(userId, userTrackIds)),
+                    // 2. Рекомендации через Last.fm API - БОЛЬШЕ рекомендаций
+                    forkSource(scope, "lastfm", () -> generateLastFmBasedRecommendations(userId, userTrackIds)),
+                    // 3. Популярные треки - БОЛЬШЕ рекомендаций
+                    forkSource(scope, "popular", () -> generatePopularRecommendations(userId, userTrackIds)),
+                    // 4. Рекомендации на основе новых добавлений
+                    forkSource(scope, "recent", () -> generateRecentBasedRecommendations(userId, userTrackIds)));
+
+            scope.join(Config.getRecommendationsTimeoutMillis(), TimeUnit.MILLISECONDS);
+
+            StringJoiner latencyReport = new StringJoiner(", ");
+            for (TaskScope.Subtask<List<Recommendation>> source : sources) {
+                List<Recommendation> sourceRecommendations = source.resultOrElse(Collections.emptyList());
+                if (source.state() == TaskScope.State.FAILED) {
+                    logger.error("Recommendation source '{}' failed for user: {}", source.name(), userId,
+                            source.exception());
+                } else if (source.state() != TaskScope.State.SUCCESS) {
+                    logger.warn("Recommendation source '{}' missed its deadline of {} ms for user: {}",
+                            source.name(), Config.getRecommendationSourceTimeoutMillis(source.name()), userId);
+                }
+                latencyReport.add(source.name() + "=" + source.elapsedMillis() + "ms/"
+                        + source.state() + "/" + sourceRecommendations.size());
+                recommendations.addAll(sourceRecommendations);
+            }
+            logger.info("Recommendation sources for user {} gathered in {} ms: {}", userId,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos), latencyReport);
+        }
 
         // Заполняем информацию о треках
         recommendations = enrichRecommendationsWithTrackInfo(recommendations);
 
         // 🔥 УВЕЛИЧИВАЕМ общий лимит
-        List<Recommendation> finalRecommendations = recommendations.stream()
-                .sorted((r1, r2) -> Double.compare(r2.getScore(), r1.getScore()))
-                .distinct()
-                .limit(TOTAL_RECOMMENDATIONS_LIMIT) // Теперь 25 вместо 15
-                .collect(Collectors.toList());
+        TopKSelector<Recommendation> topRecommendations = new TopKSelector<>(TOTAL_RECOMMENDATIONS_LIMIT); // Теперь 25 вместо 15
+        for (Recommendation rec : recommendations) {
+            topRecommendations.offer(rec, rec.getScore());
+        }
+        List<Recommendation> finalRecommendations = topRecommendations.toSortedList();
 
         logger.info("Generated {} total recommendations for user: {}", finalRecommendations.size(), userId);
 
-        // Сохраняем рекомендации в БД
-        for (Recommendation rec : finalRecommendations) {
-            recommendationDAO.save(rec);
-        }
+        // Сохраняем рекомендации в БД одним запросом
+        recommendationDAO.saveAll(finalRecommendations);
 
         return finalRecommendations;
     }
 
+    private static TaskScope.Subtask<List<Recommendation>> forkSource(TaskScope scope, String name,
+                                                                      Callable<List<Recommendation>> source) {
+        return scope.fork(name, Config.getRecommendationSourceTimeoutMillis(name), TimeUnit.MILLISECONDS, source);
+    }
 
 
     /**
@@ -123,6 +167,9 @@ public class RecommendationService {
 
             return uniqueRecommendations;
 
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Collections.emptyList();
         } catch (Exception e) {
             logger.error("Error generating new recommendations for user: {}", userId, e);
             return Collections.emptyList();
@@ -140,8 +187,15 @@ public class RecommendationService {
     private List<Recommendation> enrichRecommendationsWithTrackInfo(List<Recommendation> recommendations) {
         List<Recommendation> validRecommendations = new ArrayList<>();
 
+        // Все треки загружаются одним запросом вместо запроса на каждую рекомендацию
+        List<Long> trackIds = new ArrayList<>(recommendations.size());
+        for (Recommendation rec : recommendations) {
+            trackIds.add(rec.getTrackId());
+        }
+        Map<Long, Track> tracksById = trackService.getTracksByIds(trackIds);
+
         for (Recommendation rec : recommendations) {
-            Track track = trackService.getTrackById(rec.getTrackId());
+            Track track = tracksById.get(rec.getTrackId());
             if (track != null && isValidTrack(track)) {
                 // Заполняем информацию только для валидных треков
                 rec.setTrackTitle(track.getTitle());
@@ -159,27 +213,30 @@ public class RecommendationService {
     /**
      * Проверяет, является ли трек валидным для рекомендаций
      */
-    private boolean isValidTrack(Track track) {
+    static boolean isValidTrack(Track track) {
         if (track == null) {
             return false;
         }
+        return isValidTrack(track.getTitle(), track.getArtistName());
+    }
 
+    static boolean isValidTrack(String title, String artistName) {
         // Проверяем наличие обязательных полей
-        boolean hasValidTitle = track.getTitle() != null &&
-                !track.getTitle().trim().isEmpty() &&
-                !track.getTitle().equalsIgnoreCase("unknown") &&
-                !track.getTitle().equalsIgnoreCase("неизвестный трек");
+        boolean hasValidTitle = title != null &&
+                !title.trim().isEmpty() &&
+                !title.equalsIgnoreCase("unknown") &&
+                !title.equalsIgnoreCase("неизвестный трек");
 
-        boolean hasValidArtist = track.getArtistName() != null &&
-                !track.getArtistName().trim().isEmpty() &&
-                !track.getArtistName().equalsIgnoreCase("unknown") &&
-                !track.getArtistName().equalsIgnoreCase("неизвестный исполнитель");
+        boolean hasValidArtist = artistName != null &&
+                !artistName.trim().isEmpty() &&
+                !artistName.equalsIgnoreCase("unknown") &&
+                !artistName.equalsIgnoreCase("неизвестный исполнитель");
 
         // Трек валиден если есть название и исполнитель
         return hasValidTitle && hasValidArtist;
     }
 
-    private List<Recommendation> generateContentBasedRecommendations(Long userId) {
+    private List<Recommendation> generateContentBasedRecommendations(Long userId, LongHashSet userTrackIds) {
         List<Recommendation> recommendations = new ArrayList<>();
 
         // Получаем высоко оцененные треки пользователя
@@ -189,26 +246,19 @@ public class RecommendationService {
             return recommendations;
         }
 
-        // Получаем все треки для поиска похожих
-        List<Track> allTracks = trackService.getAllTracks().stream()
-                .filter(this::isValidTrack)
-                .collect(Collectors.toList());
-
         // 🔥 УВЕЛИЧИВАЕМ количество похожих треков для каждого исходного
         for (UserPreference preference : highRated) {
-            Track sourceTrack = trackService.getTrackById(preference.getTrackId());
-            if (sourceTrack == null || !isValidTrack(sourceTrack)) continue;
+            // Похожие треки подбираются по резидентному индексу без запросов к БД
+            List<TrackFeatureIndex.Match> similarTracks =
+                    featureIndex.findSimilar(preference.getTrackId(), CONTENT_BASED_PER_TRACK);
 
-            List<Track> similarTracks = findSimilarTracksEnhanced(sourceTrack, allTracks, CONTENT_BASED_PER_TRACK);
-
-            for (Track similarTrack : similarTracks) {
-                if (!isTrackInUserCollection(userId, similarTrack.getId())) {
-                    double similarityScore = calculateEnhancedSimilarityScore(sourceTrack, similarTrack);
+            for (TrackFeatureIndex.Match similarTrack : similarTracks) {
+                if (!userTrackIds.contains(similarTrack.getTrackId())) {
                     Recommendation rec = new Recommendation(
                             userId,
-                            similarTrack.getId(),
+                            similarTrack.getTrackId(),
                             "content_based",
-                            similarityScore * 0.9
+                            similarTrack.getScore() * 0.9
                     );
                     recommendations.add(rec);
                 }
@@ -222,7 +272,8 @@ public class RecommendationService {
         return recommendations;
     }
 
-    private List<Recommendation> generateLastFmBasedRecommendations(Long userId) {
+    private List<Recommendation> generateLastFmBasedRecommendations(Long userId, LongHashSet userTrackIds)
+            throws InterruptedException, ExecutionException {
         List<Recommendation> recommendations = new ArrayList<>();
 
         // Получаем избранные треки пользователя
@@ -230,22 +281,49 @@ public class RecommendationService {
 
         // 🔥 УВЕЛИЧИВАЕМ количество треков для анализа
         int tracksToProcess = Math.min(favorites.size(), 8); // Обрабатываем до 8 избранных треков
-
+        List<Long> favoriteIds = new ArrayList<>(tracksToProcess);
         for (int i = 0; i < tracksToProcess; i++) {
-            UserPreference favorite = favorites.get(i);
-            Track favoriteTrack = trackService.getTrackById(favorite.getTrackId());
+            favoriteIds.add(favorites.get(i).getTrackId());
+        }
+        Map<Long, Track> favoriteTracks = trackService.getTracksByIds(favoriteIds);
+
+        // Запросы похожих треков к Last.fm уходят одновременно, результаты разбираются по порядку избранного
+        List<CompletableFuture<List<LastFmService.TrackInfo>>> similarRequests = new ArrayList<>();
+        for (Long favoriteId : favoriteIds) {
+            Track favoriteTrack = favoriteTracks.get(favoriteId);
             if (favoriteTrack == null || !isValidTrack(favoriteTrack)) continue;
 
             // 🔥 УВЕЛИЧИВАЕМ количество похожих треков от Last.fm
-            List<LastFmService.TrackInfo> similarTracks = lastFmService.getSimilarTracks(
+            similarRequests.add(asyncLastFmService.getSimilarTracks(
                     favoriteTrack.getArtistName(),
                     favoriteTrack.getTitle(),
                     6 // Было 5
-            );
+            ));
+        }
 
-            for (LastFmService.TrackInfo similarTrackInfo : similarTracks) {
-                Track similarTrack = findOrCreateTrack(similarTrackInfo);
-                if (similarTrack != null && !isTrackInUserCollection(userId, similarTrack.getId())) {
+        try {
+            collectLastFmRecommendations(userId, userTrackIds, similarRequests, recommendations);
+        } finally {
+            // Лимит набран или срок генерации истёк - оставшиеся запросы больше не нужны
+            similarRequests.forEach(request -> request.cancel(true));
+        }
+
+        logger.debug("Generated {} Last.fm based recommendations", recommendations.size());
+        return recommendations;
+    }
+
+    private void collectLastFmRecommendations(Long userId, LongHashSet userTrackIds,
+                                              List<CompletableFuture<List<LastFmService.TrackInfo>>> similarRequests,
+                                              List<Recommendation> recommendations)
+            throws InterruptedException, ExecutionException {
+        for (CompletableFuture<List<LastFmService.TrackInfo>> similarRequest : similarRequests) {
+            if (recommendations.size() >= LASTFM_RECOMMENDATIONS_LIMIT) break;
+            // get(), а не join(): ожидание должно прерываться при отмене источника
+            // Похожие треки одного запроса сохраняются в БД одним пакетом
+            List<Track> similarTracks = importTracks(similarRequest.get());
+
+            for (Track similarTrack : similarTracks) {
+                if (!userTrackIds.contains(similarTrack.getId())) {
                     Recommendation rec = new Recommendation(
                             userId,
                             similarTrack.getId(),
@@ -258,30 +336,25 @@ public class RecommendationService {
                 // 🔥 Ограничиваем общее количество Last.fm рекомендаций
                 if (recommendations.size() >= LASTFM_RECOMMENDATIONS_LIMIT) break;
             }
-
-            if (recommendations.size() >= LASTFM_RECOMMENDATIONS_LIMIT) break;
         }
-
-        logger.debug("Generated {} Last.fm based recommendations", recommendations.size());
-        return recommendations;
     }
 
-    private List<Recommendation> generatePopularRecommendations(Long userId) {
+    private List<Recommendation> generatePopularRecommendations(Long userId, LongHashSet userTrackIds) {
         List<Recommendation> recommendations = new ArrayList<>();
 
         // Используем Last.fm для получения популярных треков
-        List<LastFmService.TrackInfo> popularTracks = lastFmService.getGlobalTopTracks().stream()
-                .filter(this::isValidTrackInfo)
-                .collect(Collectors.toList());
-
         // 🔥 УВЕЛИЧИВАЕМ количество популярных треков
-        List<LastFmService.TrackInfo> topPopular = popularTracks.stream()
-                .limit(POPULAR_RECOMMENDATIONS_LIMIT) // Теперь 7 вместо 5
-                .collect(Collectors.toList());
+        TopKSelector<LastFmService.TrackInfo> popularSelector = new TopKSelector<>(POPULAR_RECOMMENDATIONS_LIMIT); // Теперь 7 вместо 5
+        for (LastFmService.TrackInfo trackInfo : lastFmService.getGlobalTopTracks()) {
+            if (isValidTrackInfo(trackInfo)) {
+                // При равном числе прослушиваний сохраняется порядок чарта
+                popularSelector.offer(trackInfo, trackInfo.getPlayCount() != null ? trackInfo.getPlayCount() : 0);
+            }
+        }
+        List<LastFmService.TrackInfo> topPopular = popularSelector.toSortedList();
 
-        for (LastFmService.TrackInfo popularTrackInfo : topPopular) {
-            Track popularTrack = findOrCreateTrack(popularTrackInfo);
-            if (popularTrack != null && !isTrackInUserCollection(userId, popularTrack.getId())) {
+        for (Track popularTrack : importTracks(topPopular)) {
+            if (!userTrackIds.contains(popularTrack.getId())) {
                 Recommendation rec = new Recommendation(
                         userId,
                         popularTrack.getId(),
@@ -296,7 +369,7 @@ public class RecommendationService {
         return recommendations;
     }
 
-    private List<Recommendation> generateRecentBasedRecommendations(Long userId) {
+    private List<Recommendation> generateRecentBasedRecommendations(Long userId, LongHashSet userTrackIds) {
         List<Recommendation> recommendations = new ArrayList<>();
 
         try {
@@ -304,24 +377,17 @@ public class RecommendationService {
             List<UserPreference> recentPreferences = userPreferenceDAO.findRecentByUserId(userId, 8); // Было 5
 
             for (UserPreference preference : recentPreferences) {
-                Track recentTrack = trackService.getTrackById(preference.getTrackId());
-                if (recentTrack == null || !isValidTrack(recentTrack)) continue;
-
-                List<Track> allTracks = trackService.getAllTracks().stream()
-                        .filter(this::isValidTrack)
-                        .collect(Collectors.toList());
-
                 // 🔥 УВЕЛИЧИВАЕМ количество похожих для недавних треков
-                List<Track> similarTracks = findSimilarTracksEnhanced(recentTrack, allTracks, 4); // Было 3
+                List<TrackFeatureIndex.Match> similarTracks =
+                        featureIndex.findSimilar(preference.getTrackId(), 4); // Было 3
 
-                for (Track similarTrack : similarTracks) {
-                    if (!isTrackInUserCollection(userId, similarTrack.getId())) {
-                        double similarityScore = calculateEnhancedSimilarityScore(recentTrack, similarTrack);
+                for (TrackFeatureIndex.Match similarTrack : similarTracks) {
+                    if (!userTrackIds.contains(similarTrack.getTrackId())) {
                         Recommendation rec = new Recommendation(
                                 userId,
-                                similarTrack.getId(),
+                                similarTrack.getTrackId(),
                                 "recent_based",
-                                similarityScore * 0.7
+                                similarTrack.getScore() * 0.7
                         );
                         recommendations.add(rec);
                     }
@@ -338,122 +404,44 @@ public class RecommendationService {
         return recommendations;
     }
 
-    private List<Track> findSimilarTracksEnhanced(Track sourceTrack, List<Track> allTracks, int limit) {
-        return allTracks.stream()
-                .filter(track -> !track.getId().equals(sourceTrack.getId()))
-                .filter(track -> !track.getArtistName().equalsIgnoreCase(sourceTrack.getArtistName()))
-                .filter(this::isValidTrack)
-                .sorted((t1, t2) -> Double.compare(
-                        calculateEnhancedSimilarityScore(sourceTrack, t2),
-                        calculateEnhancedSimilarityScore(sourceTrack, t1)
-                ))
-                .limit(limit) // 🔥 Этот лимит теперь больше (5 вместо 3)
-                .collect(Collectors.toList());
-    }
     /**
-     * РЕАЛЬНЫЙ алгоритм схожести вместо Math.random()
+     * Находит или создаёт треки для результатов Last.fm одним пакетом.
+     * Возвращает сохранённые треки в исходном порядке, невалидные пропускаются;
+     * если импорт не удался - пустой список.
      */
-    private double calculateEnhancedSimilarityScore(Track track1, Track track2) {
-        double totalScore = 0.0;
-
-        // 1. Схожесть по жанрам (40%)
-        totalScore += calculateGenreSimilarity(track1, track2) * GENRE_WEIGHT;
-
-        // 2. Схожесть по исполнителю (30%)
-        totalScore += calculateArtistSimilarity(track1, track2) * ARTIST_WEIGHT;
-
-        // 3. Схожесть по длительности (15%)
-        totalScore += calculateDurationSimilarity(track1, track2) * DURATION_WEIGHT;
-
-        // 4. Схожесть по популярности (15%)
-        totalScore += calculatePopularitySimilarity(track1, track2) * POPULARITY_WEIGHT;
-
-        return Math.min(1.0, Math.max(0.0, totalScore));
-    }
-
-    private double calculateGenreSimilarity(Track track1, Track track2) {
-        List<String> genres1 = getTrackGenres(track1);
-        List<String> genres2 = getTrackGenres(track2);
-
-        if (genres1.isEmpty() || genres2.isEmpty()) {
-            return 0.3; // Базовая схожесть если жанры неизвестны
-        }
-
-        long commonGenres = genres1.stream()
-                .filter(genres2::contains)
-                .count();
-
-        return (double) commonGenres / Math.max(genres1.size(), genres2.size());
-    }
-
-    private double calculateArtistSimilarity(Track track1, Track track2) {
-        // Пока просто проверяем того же исполнителя
-        // В будущем можно добавить логику для похожих исполнителей
-        return track1.getArtistName().equalsIgnoreCase(track2.getArtistName()) ? 1.0 : 0.0;
-    }
-
-    private double calculateDurationSimilarity(Track track1, Track track2) {
-        int duration1 = track1.getDuration() != null ? track1.getDuration() : 0;
-        int duration2 = track2.getDuration() != null ? track2.getDuration() : 0;
-
-        if (duration1 == 0 || duration2 == 0) return 0.5;
-
-        double ratio = (double) Math.min(duration1, duration2) / Math.max(duration1, duration2);
-        return ratio > 0.7 ? ratio : 0.0; // Считаем схожими если разница < 30%
-    }
-
-    private double calculatePopularitySimilarity(Track track1, Track track2) {
-        // Упрощенная логика - оба трека либо популярные, либо нет
-        boolean isPopular1 = track1.getPlayCount() != null && track1.getPlayCount() > 1000000;
-        boolean isPopular2 = track2.getPlayCount() != null && track2.getPlayCount() > 1000000;
-
-        return isPopular1 == isPopular2 ? 1.0 : 0.0;
-    }
-
-    private List<String> getTrackGenres(Track track) {
-        if (track.getGenre() != null && !track.getGenre().isEmpty()) {
-            return Arrays.asList(track.getGenre().split(",\\s*"));
-        }
-        return Collections.emptyList();
-    }
-
-    private Track findOrCreateTrack(LastFmService.TrackInfo trackInfo) {
-        if (trackInfo == null || !isValidTrackInfo(trackInfo)) {
-            logger.debug("Invalid TrackInfo, skipping recommendation");
-            return null;
-        }
-
-        // Сначала ищем существующий трек
-        List<Track> existingTracks = trackService.getTracksByArtist(trackInfo.getArtist());
-        Track existingTrack = existingTracks.stream()
-                .filter(track -> track.getTitle().equalsIgnoreCase(trackInfo.getName()))
-                .filter(this::isValidTrack) // 🔥 Фильтруем невалидные треки
-                .findFirst()
-                .orElse(null);
+    private List<Track> importTracks(List<LastFmService.TrackInfo> trackInfos) {
+        List<Track> tracks = new ArrayList<>(trackInfos.size());
+        for (LastFmService.TrackInfo trackInfo : trackInfos) {
+            if (!isValidTrackInfo(trackInfo)) {
+                logger.debug("Invalid TrackInfo, skipping recommendation");
+                continue;
+            }
 
-        if (existingTrack != null) {
-            return existingTrack;
+            Track track = new Track();
+            track.setTitle(trackInfo.getName());
+            track.setArtistName(trackInfo.getArtist());
+            track.setAlbumTitle(trackInfo.getAlbum());
+            track.setDuration(trackInfo.getDuration());
+            track.setGenre(trackInfo.getGenres() != null ?
+                    String.join(", ", trackInfo.getGenres()) : "Unknown");
+            track.setSource("LastFM-Recommended");
+
+            // Проверяем валидность перед сохранением
+            if (isValidTrack(track)) {
+                tracks.add(track);
+            } else {
+                logger.debug("Created track is invalid, not saving: {} - {}",
+                        trackInfo.getArtist(), trackInfo.getName());
+            }
         }
 
-        // Создаем новый трек только если данные валидны
-        Track newTrack = new Track();
-        newTrack.setTitle(trackInfo.getName());
-        newTrack.setArtistName(trackInfo.getArtist());
-        newTrack.setAlbumTitle(trackInfo.getAlbum());
-        newTrack.setDuration(trackInfo.getDuration());
-        newTrack.setGenre(trackInfo.getGenres() != null ?
-                String.join(", ", trackInfo.getGenres()) : "Unknown");
-        newTrack.setSource("LastFM-Recommended");
-
-        // Проверяем валидность перед сохранением
-        if (!isValidTrack(newTrack)) {
-            logger.debug("Created track is invalid, not saving: {} - {}",
-                    trackInfo.getArtist(), trackInfo.getName());
-            return null;
+        if (!trackService.importTracks(tracks)) {
+            logger.warn("Failed to import {} recommended tracks", tracks.size());
+            return new ArrayList<>();
         }
-
-        boolean saved = trackService.addTrack(newTrack);
-        return saved ? newTrack : null;
+        return tracks.stream()
+                .filter(track -> track.getId() != null)
+                .collect(Collectors.toList());
     }
 
     /**
@@ -475,10 +463,6 @@ public class RecommendationService {
         return hasValidName && hasValidArtist;
     }
 
-    private boolean isTrackInUserCollection(Long userId, Long trackId) {
-        return userPreferenceDAO.findByUserAndTrack(userId, trackId).isPresent();
-    }
-
     // Остальные методы остаются без изменений
     public boolean markRecommendationAsViewed(Long recommendationId) {
         return recommendationDAO.markAsViewed(recommendationId);
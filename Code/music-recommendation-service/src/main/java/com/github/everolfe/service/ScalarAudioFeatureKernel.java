@@ -0,0 +1,37 @@
+package com.github.everolfe.service;
+
+/**
+ * Скалярная реализация: работает на любой JVM
+ */
+public final class ScalarAudioFeatureKernel implements AudioFeatureKernel {
+
+    @Override
+    public void squaredDistances(float[][] columns, float[] query, int size, float[] out) {
+        int dimensions = query.length;
+        for (int row = 0; row < size; row++) {
+            float sum = 0f;
+            for (int d = 0; d < dimensions; d++) {
+                float diff = columns[d][row] - query[d];
+                sum += diff * diff;
+            }
+            out[row] = sum;
+        }
+    }
+
+    @Override
+    public void dotProducts(float[][] columns, float[] query, int size, float[] out) {
+        int dimensions = query.length;
+        for (int row = 0; row < size; row++) {
+            float sum = 0f;
+            for (int d = 0; d < dimensions; d++) {
+                sum += columns[d][row] * query[d];
+            }
+            out[row] = sum;
+        }
+    }
+
+    @Override
+    public String name() {
+        return "scalar";
+    }
+}
@@ -1,24 +1,37 @@
 package com.github.everolfe.service;
 
+import com.github.everolfe.api.AsyncLastFmService;
 import com.github.everolfe.api.LastFmService;
 import com.github.everolfe.model.SearchCriteria;
 import com.github.everolfe.model.Track;
+import com.github.everolfe.util.Futures;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 import java.util.stream.Collectors;
 
 public class SearchService {
     private static final Logger logger = LoggerFactory.getLogger(SearchService.class);
 
-    private final LastFmService lastFmService;
+    private final AsyncLastFmService asyncLastFmService;
     private final TrackService trackService;
+    private final TrackSearchIndex searchIndex;
+    private final ExecutorService executor;
 
-    public SearchService() {
-        this.lastFmService = new LastFmService();
-        this.trackService = new TrackService();
+    public SearchService(AsyncLastFmService asyncLastFmService, TrackService trackService,
+                         TrackSearchIndex searchIndex, ExecutorService executor) {
+        this.asyncLastFmService = asyncLastFmService;
+        this.trackService = trackService;
+        this.searchIndex = searchIndex;
+        this.executor = executor;
     }
 
     /**
@@ -29,15 +42,17 @@ public class SearchService {
 
         List<Track> allTracks = new ArrayList<>();
 
-        try {
-            // Поиск в Last.fm API
-            if (criteria.getQuery() != null && !criteria.getQuery().trim().isEmpty()) {
-                List<LastFmService.TrackInfo> apiResults = lastFmService.searchTracks(criteria.getQuery());
-                allTracks.addAll(convertToTracks(apiResults));
-            }
+        // Поиск в Last.fm API запускается асинхронно и идёт параллельно с поиском в базе
+        CompletableFuture<List<LastFmService.TrackInfo>> apiSearch =
+                criteria.getQuery() != null && !criteria.getQuery().trim().isEmpty()
+                        ? asyncLastFmService.searchTracks(criteria.getQuery())
+                        : CompletableFuture.completedFuture(Collections.emptyList());
 
+        try {
             // Поиск в локальной базе
             List<Track> localTracks = trackService.searchTracks(criteria.getQuery());
+
+            allTracks.addAll(convertToTracks(apiSearch.join()));
             allTracks.addAll(localTracks);
 
             // Применяем фильтры
@@ -50,46 +65,148 @@ public class SearchService {
             return uniqueTracks;
 
         } catch (Exception e) {
+            apiSearch.cancel(true);
             logger.error("Error during track search", e);
             return new ArrayList<>();
         }
     }
 
+    /**
+     * Потоковый поиск: сначала публикуются локальные результаты, затем дописываются
+     * результаты Last.fm, затем по одному заменяются треки, дополненные сведениями об альбоме.
+     * Колбэки вызываются из фоновых потоков; после SearchHandle.cancel() они больше не вызываются,
+     * а незавершённые запросы к Last.fm отменяются.
+     */
+    public SearchHandle streamSearch(SearchCriteria criteria, SearchListener listener) {
+        SearchHandle handle = new SearchHandle();
+        String query = criteria.getQuery() != null ? criteria.getQuery().trim() : "";
+        Set<String> published = ConcurrentHashMap.newKeySet();
+        logger.info("Streaming search with criteria: {}", criteria);
+
+        // Last.fm запрашивается сразу, параллельно с локальным поиском
+        CompletableFuture<List<LastFmService.TrackInfo>> apiSearch = query.isEmpty()
+                ? CompletableFuture.completedFuture(Collections.emptyList())
+                : asyncLastFmService.searchTracksBasic(query);
+
+        CompletableFuture<Void> localSearch = CompletableFuture.runAsync(() -> {
+            List<Track> localTracks;
+            try {
+                localTracks = query.isEmpty() ? trackService.getAllTracks() : trackService.searchLocalTracks(query);
+            } catch (Exception e) {
+                logger.error("Error during local search: {}", query, e);
+                localTracks = new ArrayList<>();
+            }
+            List<Track> unique = keepUnpublished(applyTrackFilters(localTracks, criteria), published);
+            if (!handle.isCancelled()) {
+                listener.onLocalResults(unique);
+            }
+        }, executor);
+
+        // Результаты Last.fm публикуются только после локальных, чтобы дописываться в конец списка
+        CompletableFuture<Void> pipeline = Futures.compose(localSearch, ignored -> Futures.compose(apiSearch, infos -> {
+            List<Track> remoteTracks = new ArrayList<>();
+            List<CompletableFuture<Void>> enhancements = new ArrayList<>();
+            for (int i = 0; i < infos.size(); i++) {
+                LastFmService.TrackInfo info = infos.get(i);
+                boolean pending = i < AsyncLastFmService.ENHANCE_LIMIT && LastFmService.needsAlbumDetails(info);
+                Track track = convertToTrack(info);
+                if (!matchesFilters(track, criteria, pending) || !published.add(key(track))) continue;
+
+                remoteTracks.add(track);
+                if (pending) {
+                    enhancements.add(enhance(info, track, criteria, handle, listener));
+                }
+            }
+            if (!handle.isCancelled()) {
+                listener.onRemoteResults(remoteTracks);
+            }
+            return Futures.map(Futures.allAsList(enhancements), done -> (Void) null);
+        }));
+
+        handle.pipeline = pipeline;
+        pipeline.whenComplete((ignored, error) -> {
+            if (error != null && !(Futures.unwrap(error) instanceof CancellationException)) {
+                logger.error("Error during streaming search: {}", query, error);
+            }
+            if (!handle.isCancelled()) {
+                listener.onComplete();
+            }
+        });
+        return handle;
+    }
+
+    private CompletableFuture<Void> enhance(LastFmService.TrackInfo info, Track track, SearchCriteria criteria,
+                                           SearchHandle handle, SearchListener listener) {
+        CompletableFuture<Void> enhanced = Futures.map(asyncLastFmService.enhanceWithAlbumInfo(info), enhancedInfo -> {
+            Track replacement = convertToTrack(enhancedInfo);
+            if (!handle.isCancelled()) {
+                // Фильтры по альбому и жанру проверяются, когда эти сведения стали известны
+                listener.onTrackReplaced(track, matchesFilters(replacement, criteria, false) ? replacement : null);
+            }
+            return null;
+        });
+        // Неудачное дополнение не прерывает остальные
+        return Futures.recover(enhanced, error -> null);
+    }
+
+    private List<Track> keepUnpublished(List<Track> tracks, Set<String> published) {
+        List<Track> unique = new ArrayList<>();
+        for (Track track : tracks) {
+            if (published.add(key(track))) {
+                unique.add(track);
+            }
+        }
+        return unique;
+    }
+
+    private static String key(Track track) {
+        return (track.getTitle() + "|" + track.getArtistName()).toLowerCase();
+    }
+
     /**
      * Применяем фильтры к трекам
      */
     private List<Track> applyTrackFilters(List<Track> tracks, SearchCriteria criteria) {
         return tracks.stream()
-                .filter(track -> {
-                    // Фильтр по артисту
-                    if (criteria.getArtist() != null && !criteria.getArtist().isEmpty()) {
-                        if (track.getArtistName() == null ||
-                                !track.getArtistName().toLowerCase().contains(criteria.getArtist().toLowerCase())) {
-                            return false;
-                        }
-                    }
-
-                    // Фильтр по альбому
-                    if (criteria.getAlbum() != null && !criteria.getAlbum().isEmpty()) {
-                        if (track.getAlbumTitle() == null ||
-                                !track.getAlbumTitle().toLowerCase().contains(criteria.getAlbum().toLowerCase())) {
-                            return false;
-                        }
-                    }
-
-                    // Фильтр по жанру
-                    if (criteria.getGenre() != null && !criteria.getGenre().isEmpty()) {
-                        if (track.getGenre() == null ||
-                                !track.getGenre().toLowerCase().contains(criteria.getGenre().toLowerCase())) {
-                            return false;
-                        }
-                    }
-
-                    return true;
-                })
+                .filter(track -> matchesFilters(track, criteria, false))
                 .collect(Collectors.toList());
     }
 
+    /**
+     * @param detailsPending альбом и жанры ещё загружаются, фильтры по ним пока не применяются
+     */
+    private boolean matchesFilters(Track track, SearchCriteria criteria, boolean detailsPending) {
+        // Фильтр по артисту
+        if (criteria.getArtist() != null && !criteria.getArtist().isEmpty()) {
+            if (track.getArtistName() == null ||
+                    !track.getArtistName().toLowerCase().contains(criteria.getArtist().toLowerCase())) {
+                return false;
+            }
+        }
+
+        if (detailsPending) {
+            return true;
+        }
+
+        // Фильтр по альбому
+        if (criteria.getAlbum() != null && !criteria.getAlbum().isEmpty()) {
+            if (track.getAlbumTitle() == null ||
+                    !track.getAlbumTitle().toLowerCase().contains(criteria.getAlbum().toLowerCase())) {
+                return false;
+            }
+        }
+
+        // Фильтр по жанру
+        if (criteria.getGenre() != null && !criteria.getGenre().isEmpty()) {
+            if (track.getGenre() == null ||
+                    !track.getGenre().toLowerCase().contains(criteria.getGenre().toLowerCase())) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
     /**
      * Удаляем дубликаты треков (по названию и исполнителю)
      */
@@ -114,6 +231,21 @@ public class SearchService {
         return searchTracks(criteria);
     }
 
+    /**
+     * Мгновенный поиск по локальному индексу, без БД и Last.fm.
+     * Пока индекс строится, результатов нет.
+     */
+    public List<Track> searchLocal(String query, int limit) {
+        return searchIndex.search(query, limit);
+    }
+
+    /**
+     * Подсказки автодополнения по началу слов запроса
+     */
+    public List<String> suggest(String prefix, int limit) {
+        return searchIndex.suggest(prefix, limit);
+    }
+
     /**
      * Поиск треков конкретного артиста
      */
@@ -159,4 +291,40 @@ public class SearchService {
         track.setSource("LastFM-Search");
         return track;
     }
-}
\ No newline at end of file
+
+    /**
+     * Получатель результатов потокового поиска. Методы вызываются из фоновых потоков.
+     */
+    public interface SearchListener {
+        void onLocalResults(List<Track> tracks);
+
+        void onRemoteResults(List<Track> tracks);
+
+        /**
+         * Трек дополнен сведениями об альбоме; replacement == null - трек больше не проходит фильтры
+         */
+        void onTrackReplaced(Track previous, Track replacement);
+
+        void onComplete();
+    }
+
+    public static final class SearchHandle {
+        private volatile boolean cancelled;
+        private volatile CompletableFuture<Void> pipeline;
+
+        private SearchHandle() {
+        }
+
+        public void cancel() {
+            cancelled = true;
+            CompletableFuture<Void> current = pipeline;
+            if (current != null) {
+                current.cancel(true);
+            }
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.github.everolfe.service;
+
+import com.github.everolfe.api.AlbumCoverStore;
+import com.github.everolfe.api.AsyncLastFmService;
+import com.github.everolfe.api.LastFmRateLimiter;
+import com.github.everolfe.api.LastFmResponseCache;
+import com.github.everolfe.api.LastFmService;
+import com.github.everolfe.config.Config;
+import com.github.everolfe.database.DatabaseConnection;
+import com.github.everolfe.database.dao.GenreDAO;
+import com.github.everolfe.database.dao.RecommendationDAO;
+import com.github.everolfe.database.dao.TrackDAO;
+import com.github.everolfe.database.dao.TrackGenreDAO;
+import com.github.everolfe.database.dao.UserPreferenceDAO;
+import com.github.everolfe.util.IoExecutors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.http.HttpClient;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Реестр сервисов приложения: создаёт по одному экземпляру HTTP-клиента,
+ * исполнителя блокирующего ввода-вывода, кэша Last.fm и всех сервисов и завершает их при выходе.
+ */
+public class ServiceRegistry {
+    private static final Logger logger = LoggerFactory.getLogger(ServiceRegistry.class);
+
+    private static ServiceRegistry instance;
+
+    private final HttpClient httpClient;
+    private final ExecutorService executor;
+    private final ExecutorService lastFmFanOutExecutor;
+    private final CompletableFuture<Void> warmUp;
+    private final ScheduledExecutorService scheduler;
+    private final LastFmRateLimiter rateLimiter;
+    private final LastFmResponseCache responseCache;
+    private final LastFmService lastFmService;
+    private final AsyncLastFmService asyncLastFmService;
+    private final AlbumCoverStore albumCoverStore;
+    private final TrackFeatureIndex featureIndex;
+    private final TrackStore trackStore;
+    private final TrackSearchIndex searchIndex;
+    private final TrackService trackService;
+    private final SearchService searchService;
+    private final RecommendationService recommendationService;
+    private final MusicCollectionService collectionService;
+    private final UserService userService;
+
+    private ServiceRegistry() {
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        this.executor = IoExecutors.newIoExecutor("app-io-", Config.getIoThreads());
+        // Блокирующий LastFmService ждёт свои подзапросы; в общем ограниченном пуле (JDK < 21)
+        // задачи, ждущие подзапросы из очереди того же пула, могут занять все потоки
+        this.lastFmFanOutExecutor = IoExecutors.newIoExecutor("lastfm-io-", Config.getIoThreads());
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(IoExecutors.daemonThreadFactory("app-scheduler-"));
+        this.rateLimiter = new LastFmRateLimiter(Config.getLastFmRateLimitPerSecond(),
+                Config.getLastFmRateLimitBurst(), scheduler);
+        this.responseCache = new LastFmResponseCache(
+                Paths.get(Config.getLastFmCacheDirectory()),
+                Config.getLastFmCacheMemoryEntries(),
+                Duration.ofHours(Config.getLastFmCacheMaxStaleHours()),
+                executor);
+        this.lastFmService = new LastFmService(httpClient, lastFmFanOutExecutor, responseCache, rateLimiter);
+        this.asyncLastFmService = new AsyncLastFmService(httpClient, lastFmService, responseCache, rateLimiter);
+        this.albumCoverStore = new AlbumCoverStore(httpClient, lastFmService,
+                Paths.get(Config.getCoverCacheDirectory()),
+                Config.getCoverCacheDiskMaxMb() * 1024L * 1024L,
+                Config.getCoverCacheDownloads(),
+                executor);
+
+        UserPreferenceDAO userPreferenceDAO = new UserPreferenceDAO();
+        TrackDAO trackDAO = new TrackDAO();
+        this.trackStore = new TrackStore(trackDAO, new TrackGenreDAO());
+        this.searchIndex = new TrackSearchIndex(trackStore);
+        this.featureIndex = new TrackFeatureIndex(trackStore,
+                new GenreVocabulary(new GenreDAO()),
+                AudioFeatureKernels.create(Config.isRecommendationsAudioVectorApiEnabled()),
+                AudioFeatures.Metric.parse(Config.getRecommendationsAudioMetric()),
+                Config.getRecommendationsAudioWeight());
+        this.trackService = new TrackService(trackDAO, lastFmService, featureIndex, trackStore, searchIndex);
+        this.searchService = new SearchService(asyncLastFmService, trackService, searchIndex, executor);
+        this.recommendationService = new RecommendationService(new RecommendationDAO(), userPreferenceDAO,
+                trackService, lastFmService, asyncLastFmService, featureIndex, executor);
+        this.collectionService = new MusicCollectionService(userPreferenceDAO, trackService,
+                recommendationService, executor);
+        this.userService = new UserService();
+
+        // Каталог читается из БД один раз в фоне; поисковый индекс и индекс признаков строятся по нему.
+        // До готовности локальный поиск идёт в БД
+        CompletableFuture<Void> catalog = CompletableFuture.runAsync(trackStore::reload, executor);
+        CompletableFuture<Void> search = catalog.thenRunAsync(searchIndex::reload, executor);
+        // Индекс признаков тоже строится заранее: иначе первая сборка попадает в срок источников content и recent
+        CompletableFuture<Void> features = catalog.thenRunAsync(featureIndex::reload, executor);
+        this.warmUp = CompletableFuture.allOf(search, features);
+
+        logger.info("Service registry initialized");
+    }
+
+    /**
+     * Ждёт фоновую загрузку каталога и индексов, запущенную при создании реестра
+     * (например, чтобы она не искажала замеры в бенчмарках)
+     */
+    public void awaitWarmUp() {
+        try {
+            warmUp.join();
+        } catch (CompletionException | CancellationException e) {
+            logger.warn("Background warm-up failed", e);
+        }
+    }
+
+    public static synchronized ServiceRegistry getInstance() {
+        if (instance == null) {
+            instance = new ServiceRegistry();
+        }
+        return instance;
+    }
+
+    /**
+     * Останавливает пул потоков и закрывает пул соединений с БД
+     */
+    public static synchronized void shutdown() {
+        if (instance != null) {
+            instance.close();
+            instance = null;
+        }
+        DatabaseConnection.closeDataSource();
+    }
+
+    private void close() {
+        // Планировщик останавливаем последним: задачи пула могут ждать разрешения ограничителя
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                logger.warn("I/O tasks did not finish in time, interrupting");
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        lastFmFanOutExecutor.shutdownNow();
+        scheduler.shutdownNow();
+        responseCache.logStats();
+        albumCoverStore.logStats();
+        rateLimiter.logStats();
+        logger.info("Service registry shut down");
+    }
+
+    public HttpClient getHttpClient() { return httpClient; }
+    public ExecutorService getExecutor() { return executor; }
+    public ScheduledExecutorService getScheduler() { return scheduler; }
+    public LastFmService getLastFmService() { return lastFmService; }
+    public AsyncLastFmService getAsyncLastFmService() { return asyncLastFmService; }
+    public AlbumCoverStore getAlbumCoverStore() { return albumCoverStore; }
+    public TrackStore getTrackStore() { return trackStore; }
+    public TrackService getTrackService() { return trackService; }
+    public SearchService getSearchService() { return searchService; }
+    public RecommendationService getRecommendationService() { return recommendationService; }
+    public MusicCollectionService getCollectionService() { return collectionService; }
+    public UserService getUserService() { return userService; }
+}
@@ -0,0 +1,414 @@
+package com.github.everolfe.service;
+
+import com.github.everolfe.model.Track;
+import com.github.everolfe.util.TopKSelector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Резидентный индекс признаков треков для контентных рекомендаций.
+ * Строится по TrackStore (каталог читается из БД один раз), хранит производные
+ * признаки в примитивных массивах (строка = трек) и обновляется инкрементально,
+ * поэтому подбор похожих треков не обращается к БД.
+ * Нормализованные аудио-признаки хранятся по столбцам и сравниваются со всеми
+ * треками сразу через AudioFeatureKernel.
+ */
+public class TrackFeatureIndex {
+    private static final Logger logger = LoggerFactory.getLogger(TrackFeatureIndex.class);
+
+    private static final int INITIAL_CAPACITY = 256;
+    private static final int POPULAR_PLAY_COUNT = 1000000;
+    private static final long[] NO_GENRES = new long[0];
+
+    // Веса для алгоритма рекомендаций
+    private static final double GENRE_WEIGHT = 0.4;
+    private static final double ARTIST_WEIGHT = 0.3;
+    private static final double DURATION_WEIGHT = 0.15;
+    private static final double POPULARITY_WEIGHT = 0.15;
+    // Схожесть по аудио-признакам, если они известны не у обоих треков
+    private static final double UNKNOWN_AUDIO_SIMILARITY = 0.5;
+
+    private final TrackStore trackStore;
+    private final GenreVocabulary genreVocabulary;
+    private final AudioFeatureKernel audioKernel;
+    private final AudioFeatures.Metric audioMetric;
+    private final double audioWeight;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // Буфер результатов AudioFeatureKernel: findSimilar выполняется параллельно под блокировкой
+    // чтения, поэтому буфер у каждого потока свой и переиспользуется между вызовами
+    private final ThreadLocal<float[]> audioScratch = ThreadLocal.withInitial(() -> new float[0]);
+
+    private final Map<Long, Integer> rowByTrackId = new HashMap<>();
+    private final Map<String, Integer> artistOrdinals = new HashMap<>();
+
+    private long[] trackIds = new long[INITIAL_CAPACITY];
+    private int[] artists = new int[INITIAL_CAPACITY];
+    private int[] durations = new int[INITIAL_CAPACITY];
+    private byte[] popularityBuckets = new byte[INITIAL_CAPACITY];
+    private long[][] genreBits = new long[INITIAL_CAPACITY][];
+    private int[] genreCounts = new int[INITIAL_CAPACITY];
+    private float[][] audioFeatures = new float[AudioFeatures.DIMENSIONS][INITIAL_CAPACITY];
+    private float[] audioNorms = new float[INITIAL_CAPACITY];
+    private boolean[] hasAudio = new boolean[INITIAL_CAPACITY];
+    private int size;
+    private volatile boolean loaded;
+
+    /**
+     * @param audioWeight доля аудио-признаков в итоговой оценке (0 - не учитываются)
+     */
+    TrackFeatureIndex(TrackStore trackStore, GenreVocabulary genreVocabulary,
+                      AudioFeatureKernel audioKernel, AudioFeatures.Metric audioMetric, double audioWeight) {
+        this.trackStore = trackStore;
+        this.genreVocabulary = genreVocabulary;
+        this.audioKernel = audioKernel;
+        this.audioMetric = audioMetric;
+        this.audioWeight = Math.min(1.0, Math.max(0.0, audioWeight));
+    }
+
+    /**
+     * Находит наиболее похожие треки для трека из индекса.
+     * Треки того же исполнителя и сам исходный трек пропускаются.
+     */
+    public List<Match> findSimilar(Long sourceTrackId, int limit) {
+        ensureLoaded();
+
+        lock.readLock().lock();
+        try {
+            Integer sourceRow = rowByTrackId.get(sourceTrackId);
+            if (sourceRow == null) {
+                return new ArrayList<>();
+            }
+
+            int source = sourceRow;
+            float[] audioScores = audioScores(source);
+            TopKSelector<Match> topK = new TopKSelector<>(limit);
+            for (int row = 0; row < size; row++) {
+                if (row == source || artists[row] == artists[source]) continue;
+
+                double score = score(source, row, audioScores);
+                if (topK.accepts(score)) {
+                    topK.offer(new Match(trackIds[row], score), score);
+                }
+            }
+
+            return topK.toSortedList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Полностью перестраивает индекс по строкам TrackStore.
+     * Синхронизирован с ensureLoaded, поэтому фоновая и ленивая загрузка не выполняются одновременно.
+     */
+    public synchronized void reload() {
+        lock.writeLock().lock();
+        try {
+            loaded = false;
+            clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (!trackStore.isLoaded()) {
+            // loaded остаётся false: следующий findSimilar повторит загрузку
+            logger.warn("Track feature index was not built: track store is not loaded");
+            return;
+        }
+
+        genreVocabulary.reload();
+        float[] audio = new float[AudioFeatures.DIMENSIONS];
+        trackStore.scan(track -> {
+            lock.writeLock().lock();
+            try {
+                addRow(track, audio);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+
+        lock.writeLock().lock();
+        try {
+            loaded = true;
+            logger.info("Track feature index built: {} tracks, {} artists, {} genres",
+                    size, artistOrdinals.size(), genreVocabulary.size());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Добавляет или обновляет трек в индексе (вызывается после сохранения в БД)
+     */
+    public void upsert(Track track) {
+        if (track == null || track.getId() == null || track.getId() <= 0) {
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (!loaded) {
+                // Индекс ещё не построен - трек попадёт в него при первой загрузке
+                return;
+            }
+            upsertRow(track);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long trackId) {
+        lock.writeLock().lock();
+        try {
+            removeRow(trackId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void ensureLoaded() {
+        if (!loaded) {
+            synchronized (this) {
+                if (!loaded) {
+                    reload();
+                }
+            }
+        }
+    }
+
+    /**
+     * Строка из TrackStore при полной перестройке
+     *
+     * @param audio буфер для нормализованных признаков, общий для всего обхода
+     */
+    private void addRow(TrackStore.TrackView track, float[] audio) {
+        if (!RecommendationService.isValidTrack(track.getTitle(), track.getArtistName())) {
+            return;
+        }
+
+        int row = rowFor(track.getId());
+        long[] genres = NO_GENRES;
+        for (int i = 0; i < track.getGenreCount(); i++) {
+            genres = genreVocabulary.addGenre(genres, track.getGenreName(i));
+        }
+
+        trackIds[row] = track.getId();
+        artists[row] = ordinal(artistOrdinals, track.getArtistName().toLowerCase());
+        durations[row] = track.getDuration();
+        // Число прослушиваний в БД (и в TrackStore) не хранится
+        popularityBuckets[row] = popularityBucket(null);
+        genreBits[row] = genres;
+        genreCounts[row] = GenreVocabulary.cardinality(genres);
+        setAudio(row, audio, AudioFeatures.normalize(track, audio));
+    }
+
+    private void upsertRow(Track track) {
+        if (!RecommendationService.isValidTrack(track)) {
+            // Трек мог стать невалидным после обновления
+            removeRow(track.getId());
+            return;
+        }
+
+        int row = rowFor(track.getId());
+        // TrackDAO не заполняет жанр, поэтому при обновлении из БД сохраняем известные жанры
+        long[] genres = GenreVocabulary.union(genreBits[row], genreVocabulary.encode(track.getGenre()));
+
+        trackIds[row] = track.getId();
+        artists[row] = ordinal(artistOrdinals, track.getArtistName().toLowerCase());
+        durations[row] = track.getDuration() != null ? track.getDuration() : 0;
+        popularityBuckets[row] = popularityBucket(track.getPlayCount());
+        genreBits[row] = genres;
+        genreCounts[row] = GenreVocabulary.cardinality(genres);
+
+        float[] audio = new float[AudioFeatures.DIMENSIONS];
+        setAudio(row, audio, AudioFeatures.normalize(track, audio));
+    }
+
+    // Строка трека; новая строка добавляется в конец без жанров
+    private int rowFor(long trackId) {
+        Integer existingRow = rowByTrackId.get(trackId);
+        if (existingRow != null) {
+            return existingRow;
+        }
+        ensureCapacity(size + 1);
+        int row = size++;
+        rowByTrackId.put(trackId, row);
+        genreBits[row] = NO_GENRES;
+        return row;
+    }
+
+    private void setAudio(int row, float[] audio, boolean known) {
+        hasAudio[row] = known;
+        for (int d = 0; d < AudioFeatures.DIMENSIONS; d++) {
+            audioFeatures[d][row] = audio[d];
+        }
+        audioNorms[row] = AudioFeatures.norm(audio);
+    }
+
+    private void removeRow(Long trackId) {
+        Integer removed = rowByTrackId.remove(trackId);
+        if (removed == null) return;
+
+        // Переносим последнюю строку на место удалённой
+        int row = removed;
+        int last = --size;
+        if (row != last) {
+            trackIds[row] = trackIds[last];
+            artists[row] = artists[last];
+            durations[row] = durations[last];
+            popularityBuckets[row] = popularityBuckets[last];
+            genreBits[row] = genreBits[last];
+            genreCounts[row] = genreCounts[last];
+            for (float[] column : audioFeatures) {
+                column[row] = column[last];
+            }
+            audioNorms[row] = audioNorms[last];
+            hasAudio[row] = hasAudio[last];
+            rowByTrackId.put(trackIds[row], row);
+        }
+        genreBits[last] = null;
+    }
+
+    private void clear() {
+        rowByTrackId.clear();
+        artistOrdinals.clear();
+        Arrays.fill(genreBits, 0, size, null);
+        size = 0;
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= trackIds.length) return;
+
+        int capacity = Math.max(required, trackIds.length * 2);
+        trackIds = Arrays.copyOf(trackIds, capacity);
+        artists = Arrays.copyOf(artists, capacity);
+        durations = Arrays.copyOf(durations, capacity);
+        popularityBuckets = Arrays.copyOf(popularityBuckets, capacity);
+        genreBits = Arrays.copyOf(genreBits, capacity);
+        genreCounts = Arrays.copyOf(genreCounts, capacity);
+        for (int d = 0; d < AudioFeatures.DIMENSIONS; d++) {
+            audioFeatures[d] = Arrays.copyOf(audioFeatures[d], capacity);
+        }
+        audioNorms = Arrays.copyOf(audioNorms, capacity);
+        hasAudio = Arrays.copyOf(hasAudio, capacity);
+    }
+
+    /**
+     * Сравнивает аудио-признаки исходного трека со всеми строками за один проход
+     *
+     * @return результат AudioFeatureKernel по строкам (буфер потока, действителен до следующего
+     * вызова в этом потоке; длина может быть больше size) или null, если сигнал не используется
+     */
+    private float[] audioScores(int source) {
+        if (audioWeight == 0.0 || !hasAudio[source]) {
+            return null;
+        }
+
+        float[] query = new float[AudioFeatures.DIMENSIONS];
+        for (int d = 0; d < AudioFeatures.DIMENSIONS; d++) {
+            query[d] = audioFeatures[d][source];
+        }
+        float[] scores = audioScratch.get();
+        if (scores.length < size) {
+            // Размер берётся по ёмкости столбцов, чтобы буфер рос так же редко, как они
+            scores = new float[trackIds.length];
+            audioScratch.set(scores);
+        }
+        if (audioMetric == AudioFeatures.Metric.COSINE) {
+            audioKernel.dotProducts(audioFeatures, query, size, scores);
+        } else {
+            audioKernel.squaredDistances(audioFeatures, query, size, scores);
+        }
+        return scores;
+    }
+
+    private double score(int source, int candidate, float[] audioScores) {
+        double totalScore = 0.0;
+
+        // 1. Схожесть по жанрам (40%)
+        totalScore += genreSimilarity(source, candidate) * GENRE_WEIGHT;
+
+        // 2. Схожесть по исполнителю (30%)
+        totalScore += (artists[source] == artists[candidate] ? 1.0 : 0.0) * ARTIST_WEIGHT;
+
+        // 3. Схожесть по длительности (15%)
+        totalScore += durationSimilarity(durations[source], durations[candidate]) * DURATION_WEIGHT;
+
+        // 4. Схожесть по популярности (15%)
+        totalScore += (popularityBuckets[source] == popularityBuckets[candidate] ? 1.0 : 0.0) * POPULARITY_WEIGHT;
+
+        // 5. Схожесть по аудио-признакам: доля audioWeight, остальные сигналы делят остаток
+        if (audioWeight > 0.0) {
+            totalScore = totalScore * (1.0 - audioWeight) + audioSimilarity(source, candidate, audioScores) * audioWeight;
+        }
+
+        return Math.min(1.0, Math.max(0.0, totalScore));
+    }
+
+    private double audioSimilarity(int source, int candidate, float[] audioScores) {
+        if (audioScores == null || !hasAudio[candidate]) {
+            return UNKNOWN_AUDIO_SIMILARITY;
+        }
+        return AudioFeatures.similarity(audioMetric, audioScores[candidate], audioNorms[source], audioNorms[candidate]);
+    }
+
+    private double genreSimilarity(int source, int candidate) {
+        if (genreCounts[source] == 0 || genreCounts[candidate] == 0) {
+            return 0.3; // Базовая схожесть если жанры неизвестны
+        }
+        return GenreVocabulary.similarity(genreBits[source], genreCounts[source],
+                genreBits[candidate], genreCounts[candidate]);
+    }
+
+    private static double durationSimilarity(int duration1, int duration2) {
+        if (duration1 == 0 || duration2 == 0) return 0.5;
+
+        double ratio = (double) Math.min(duration1, duration2) / Math.max(duration1, duration2);
+        return ratio > 0.7 ? ratio : 0.0; // Считаем схожими если разница < 30%
+    }
+
+    private static byte popularityBucket(Integer playCount) {
+        return (byte) (playCount != null && playCount > POPULAR_PLAY_COUNT ? 1 : 0);
+    }
+
+    private static int ordinal(Map<String, Integer> dictionary, String key) {
+        Integer ordinal = dictionary.get(key);
+        if (ordinal == null) {
+            ordinal = dictionary.size();
+            dictionary.put(key, ordinal);
+        }
+        return ordinal;
+    }
+
+    /**
+     * Результат поиска похожих треков
+     */
+    public static class Match {
+        private final long trackId;
+        private final double score;
+
+        public Match(long trackId, double score) {
+            this.trackId = trackId;
+            this.score = score;
+        }
+
+        public long getTrackId() { return trackId; }
+        public double getScore() { return score; }
+    }
+}
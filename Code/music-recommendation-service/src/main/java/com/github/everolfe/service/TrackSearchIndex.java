@@ -0,0 +1,429 @@
+package com.github.everolfe.service;
+
+import com.github.everolfe.model.Track;
+import com.github.everolfe.util.TopKSelector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Резидентный инвертированный индекс для локального поиска и автодополнения без обращения к БД.
+ * Названия, исполнители, альбомы и жанры разбиваются на слова в нижнем регистре; для каждого
+ * слова индексируются префиксы длиной от MIN_PREFIX_LENGTH до MAX_PREFIX_LENGTH.
+ * Постинг - отсортированный массив int вида (документ << 2 | поле).
+ * Индекс строится из TrackStore и хранит только id треков; Track создаётся для найденных.
+ */
+public class TrackSearchIndex {
+    private static final Logger logger = LoggerFactory.getLogger(TrackSearchIndex.class);
+
+    private static final int INITIAL_CAPACITY = 256;
+    private static final int MIN_PREFIX_LENGTH = 2;
+    private static final int MAX_PREFIX_LENGTH = 10;
+
+    // Поля документа: название, исполнитель, альбом, жанры
+    private static final int FIELD_TITLE = 0;
+    private static final int FIELD_GENRE = 3;
+    private static final int FIELD_BITS = 2;
+    private static final int FIELD_MASK = (1 << FIELD_BITS) - 1;
+
+    // Совпадение в названии важнее, чем в исполнителе, альбоме или жанре
+    private static final double[] FIELD_WEIGHTS = {3.0, 2.0, 1.0, 0.5};
+
+    private final TrackStore trackStore;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<String, Postings> postingsByPrefix = new HashMap<>();
+    private final Map<Long, Integer> docByTrackId = new HashMap<>();
+
+    private long[] trackIds = new long[INITIAL_CAPACITY];
+    // Проиндексированный текст полей: по нему же постинги удаляются при обновлении трека
+    private String[][] fields = new String[INITIAL_CAPACITY][];
+    private int[] freeDocs = new int[0];
+    private int freeCount;
+    private int docCount;
+    private volatile boolean loaded;
+
+    TrackSearchIndex(TrackStore trackStore) {
+        this.trackStore = trackStore;
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Треки, у которых каждое слово запроса является началом слова в названии,
+     * исполнителе, альбоме или жанре. Пока индекс не построен, возвращает пустой список.
+     */
+    public List<Track> search(String query, int limit) {
+        // Track создаются после снятия блокировки индекса: TrackStore берёт свою блокировку
+        return trackStore.toTracks(searchIds(query, limit));
+    }
+
+    private List<Long> searchIds(String query, int limit) {
+        List<Long> result = new ArrayList<>();
+        List<String> terms = tokenize(query);
+        if (!loaded || limit <= 0 || terms.isEmpty()) {
+            return result;
+        }
+
+        lock.readLock().lock();
+        try {
+            List<Postings> termPostings = new ArrayList<>();
+            for (String term : terms) {
+                if (term.length() < MIN_PREFIX_LENGTH) continue;
+
+                Postings postings = postingsByPrefix.get(prefixKey(term));
+                if (postings == null) {
+                    return result;
+                }
+                termPostings.add(postings);
+            }
+            if (termPostings.isEmpty()) {
+                return result;
+            }
+
+            // Пересечение начинается с самого короткого списка
+            termPostings.sort((a, b) -> Integer.compare(a.size, b.size));
+            Candidates candidates = Candidates.of(termPostings.get(0));
+            for (int i = 1; i < termPostings.size() && candidates.size > 0; i++) {
+                candidates = candidates.intersect(termPostings.get(i));
+            }
+
+            TopKSelector<Long> topK = new TopKSelector<>(limit);
+            for (int i = 0; i < candidates.size; i++) {
+                int doc = candidates.docs[i];
+                if (!matchesLongTerms(doc, terms)) continue;
+
+                double score = score(doc, candidates.scores[i]);
+                if (topK.accepts(score)) {
+                    topK.offer(trackIds[doc], score);
+                }
+            }
+            return topK.toSortedList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Подсказки для автодополнения: "Исполнитель - Название" лучших совпадений
+     */
+    public List<String> suggest(String prefix, int limit) {
+        Set<String> suggestions = new LinkedHashSet<>();
+        for (Track track : search(prefix, limit)) {
+            suggestions.add(track.getArtistName() != null
+                    ? track.getArtistName() + " - " + track.getTitle()
+                    : track.getTitle());
+        }
+        return new ArrayList<>(suggestions);
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return docByTrackId.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Полностью перестраивает индекс из TrackStore (хранилище должно быть уже загружено)
+     */
+    public void reload() {
+        long start = System.nanoTime();
+        lock.writeLock().lock();
+        try {
+            // Пока индекс перестраивается, поиск идёт в БД
+            loaded = false;
+            clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (!trackStore.isLoaded()) {
+            logger.warn("Track search index was not built: track store is not loaded");
+            return;
+        }
+
+        trackStore.scan(track -> {
+            lock.writeLock().lock();
+            try {
+                upsertDoc(track.getId(), track.getTitle(), track.getArtistName(), track.getAlbumTitle(),
+                        track.getGenre());
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+
+        lock.writeLock().lock();
+        try {
+            loaded = true;
+            logger.info("Track search index built in {} ms: {} tracks, {} prefixes",
+                    (System.nanoTime() - start) / 1_000_000, docByTrackId.size(), postingsByPrefix.size());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Добавляет или обновляет трек в индексе (вызывается после сохранения в БД)
+     */
+    public void upsert(Track track) {
+        if (track == null || track.getId() == null || track.getId() <= 0) {
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (!loaded) {
+                // Индекс ещё не построен - трек попадёт в него при загрузке
+                return;
+            }
+            upsertDoc(track.getId(), track.getTitle(), track.getArtistName(), track.getAlbumTitle(),
+                    track.getGenre());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long trackId) {
+        lock.writeLock().lock();
+        try {
+            removeDoc(trackId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @param genre жанры трека или null, если они неизвестны (тогда сохраняются ранее проиндексированные)
+     */
+    private void upsertDoc(long trackId, String title, String artistName, String albumTitle, String genre) {
+        Integer existingDoc = docByTrackId.get(trackId);
+        if (existingDoc != null && genre == null) {
+            genre = fields[existingDoc][FIELD_GENRE];
+        }
+        removeDoc(trackId);
+
+        int doc = allocateDoc();
+        String[] docFields = {title, artistName, albumTitle, genre};
+        trackIds[doc] = trackId;
+        fields[doc] = docFields;
+        docByTrackId.put(trackId, doc);
+
+        for (int field = 0; field < docFields.length; field++) {
+            int entry = doc << FIELD_BITS | field;
+            for (String prefix : prefixes(docFields[field])) {
+                postingsByPrefix.computeIfAbsent(prefix, key -> new Postings()).add(entry);
+            }
+        }
+    }
+
+    private void removeDoc(Long trackId) {
+        Integer removed = docByTrackId.remove(trackId);
+        if (removed == null) return;
+
+        int doc = removed;
+        String[] docFields = fields[doc];
+        for (int field = 0; field < docFields.length; field++) {
+            int entry = doc << FIELD_BITS | field;
+            for (String prefix : prefixes(docFields[field])) {
+                Postings postings = postingsByPrefix.get(prefix);
+                if (postings != null && postings.remove(entry) && postings.size == 0) {
+                    postingsByPrefix.remove(prefix);
+                }
+            }
+        }
+
+        fields[doc] = null;
+        if (freeCount == freeDocs.length) {
+            freeDocs = Arrays.copyOf(freeDocs, Math.max(16, freeCount * 2));
+        }
+        freeDocs[freeCount++] = doc;
+    }
+
+    // Номера удалённых документов переиспользуются, чтобы постинги не росли от обновлений
+    private int allocateDoc() {
+        if (freeCount > 0) {
+            return freeDocs[--freeCount];
+        }
+        if (docCount == trackIds.length) {
+            int capacity = trackIds.length * 2;
+            trackIds = Arrays.copyOf(trackIds, capacity);
+            fields = Arrays.copyOf(fields, capacity);
+        }
+        return docCount++;
+    }
+
+    private void clear() {
+        postingsByPrefix.clear();
+        docByTrackId.clear();
+        Arrays.fill(fields, 0, docCount, null);
+        freeCount = 0;
+        docCount = 0;
+    }
+
+    // Сумма по словам запроса веса лучшего совпавшего поля; при равенстве выше более короткое название
+    private double score(int doc, double termScore) {
+        String title = fields[doc][FIELD_TITLE];
+        return termScore + 0.01 / (1 + (title != null ? title.length() : 0));
+    }
+
+    // Префиксный ключ обрезан до MAX_PREFIX_LENGTH: длинные слова проверяются по тексту полей
+    private boolean matchesLongTerms(int doc, List<String> terms) {
+        for (String term : terms) {
+            if (term.length() <= MAX_PREFIX_LENGTH) continue;
+
+            boolean found = false;
+            for (String text : fields[doc]) {
+                for (String word : tokenize(text)) {
+                    if (word.startsWith(term)) {
+                        found = true;
+                        break;
+                    }
+                }
+                if (found) break;
+            }
+            if (!found) return false;
+        }
+        return true;
+    }
+
+    private static String prefixKey(String term) {
+        return term.length() > MAX_PREFIX_LENGTH ? term.substring(0, MAX_PREFIX_LENGTH) : term;
+    }
+
+    private static Set<String> prefixes(String text) {
+        Set<String> prefixes = new HashSet<>();
+        for (String word : tokenize(text)) {
+            int maxLength = Math.min(word.length(), MAX_PREFIX_LENGTH);
+            for (int length = MIN_PREFIX_LENGTH; length <= maxLength; length++) {
+                prefixes.add(word.substring(0, length));
+            }
+        }
+        return prefixes;
+    }
+
+    /**
+     * Слова из букв и цифр в нижнем регистре
+     */
+    static List<String> tokenize(String text) {
+        List<String> words = new ArrayList<>();
+        if (text == null) {
+            return words;
+        }
+
+        String lower = text.toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int i = 0; i <= lower.length(); i++) {
+            boolean wordChar = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                words.add(lower.substring(start, i));
+                start = -1;
+            }
+        }
+        return words;
+    }
+
+    /**
+     * Отсортированный список вхождений (документ << 2 | поле)
+     */
+    private static final class Postings {
+        private int[] entries = new int[4];
+        private int size;
+
+        void add(int entry) {
+            int index = Arrays.binarySearch(entries, 0, size, entry);
+            if (index >= 0) return;
+
+            int insertAt = -index - 1;
+            if (size == entries.length) {
+                entries = Arrays.copyOf(entries, size * 2);
+            }
+            System.arraycopy(entries, insertAt, entries, insertAt + 1, size - insertAt);
+            entries[insertAt] = entry;
+            size++;
+        }
+
+        boolean remove(int entry) {
+            int index = Arrays.binarySearch(entries, 0, size, entry);
+            if (index < 0) return false;
+
+            System.arraycopy(entries, index + 1, entries, index, size - index - 1);
+            size--;
+            return true;
+        }
+    }
+
+    /**
+     * Документы, совпавшие со всеми словами запроса, и накопленная оценка
+     */
+    private static final class Candidates {
+        private final int[] docs;
+        private final double[] scores;
+        private int size;
+
+        private Candidates(int capacity) {
+            docs = new int[capacity];
+            scores = new double[capacity];
+        }
+
+        static Candidates of(Postings postings) {
+            Candidates candidates = new Candidates(postings.size);
+            int i = 0;
+            while (i < postings.size) {
+                int doc = postings.entries[i] >>> FIELD_BITS;
+                double best = 0;
+                // Вхождения одного документа идут подряд, по одному на поле
+                while (i < postings.size && postings.entries[i] >>> FIELD_BITS == doc) {
+                    best = Math.max(best, FIELD_WEIGHTS[postings.entries[i] & FIELD_MASK]);
+                    i++;
+                }
+                candidates.docs[candidates.size] = doc;
+                candidates.scores[candidates.size] = best;
+                candidates.size++;
+            }
+            return candidates;
+        }
+
+        Candidates intersect(Postings postings) {
+            Candidates result = new Candidates(Math.min(size, postings.size));
+            int i = 0;
+            int j = 0;
+            while (i < size && j < postings.size) {
+                int doc = docs[i];
+                int postingDoc = postings.entries[j] >>> FIELD_BITS;
+                if (postingDoc < doc) {
+                    j++;
+                } else if (postingDoc > doc) {
+                    i++;
+                } else {
+                    double best = 0;
+                    while (j < postings.size && postings.entries[j] >>> FIELD_BITS == doc) {
+                        best = Math.max(best, FIELD_WEIGHTS[postings.entries[j] & FIELD_MASK]);
+                        j++;
+                    }
+                    result.docs[result.size] = doc;
+                    result.scores[result.size] = scores[i] + best;
+                    result.size++;
+                    i++;
+                }
+            }
+            return result;
+        }
+    }
+}
@@ -8,19 +8,30 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 
 public class TrackService {
     private static final Logger logger = LoggerFactory.getLogger(TrackService.class);
+    private static final int LOCAL_SEARCH_LIMIT = 50;
     private final TrackDAO trackDAO;
     private final LastFmService lastFmService;
-
-    public TrackService() {
-        this.trackDAO = new TrackDAO();
-        this.lastFmService = new LastFmService();
+    private final TrackFeatureIndex featureIndex;
+    private final TrackStore trackStore;
+    private final TrackSearchIndex searchIndex;
+
+    public TrackService(TrackDAO trackDAO, LastFmService lastFmService, TrackFeatureIndex featureIndex,
+                        TrackStore trackStore, TrackSearchIndex searchIndex) {
+        this.trackDAO = trackDAO;
+        this.lastFmService = lastFmService;
+        this.featureIndex = featureIndex;
+        this.trackStore = trackStore;
+        this.searchIndex = searchIndex;
     }
 
     public List<Track> getAllTracks() {
@@ -47,6 +58,23 @@ public class TrackService {
         return removeDuplicates(allTracks);
     }
 
+    /**
+     * Страница локального каталога после трека after (null - первая страница).
+     * Каталог упорядочен по исполнителю, названию и id.
+     */
+    public List<Track> getCatalogPage(Track after, int limit) {
+        return after == null
+                ? trackDAO.findPage(null, null, null, limit)
+                : trackDAO.findPage(after.getArtistName(), after.getTitle(), after.getId(), limit);
+    }
+
+    /**
+     * Популярные треки Last.fm; при ошибке - демонстрационные треки
+     */
+    public List<Track> getPopularTracks() {
+        return getPopularTracksFromAPI();
+    }
+
     public List<Track> searchTracks(String query) {
         if (query == null || query.trim().isEmpty()) {
             return getAllTracks();
@@ -56,9 +84,8 @@ public class TrackService {
         List<Track> allResults = new ArrayList<>();
 
         try {
-            // 1. Сначала ищем в локальной базе данных
-            List<Track> localResults = trackDAO.findByTitle(searchTerm);
-            localResults.addAll(trackDAO.findByArtist(searchTerm));
+            // 1. Сначала ищем локально
+            List<Track> localResults = searchLocalTracks(searchTerm);
             allResults.addAll(localResults);
 
             logger.info("Found {} local results for: {}", localResults.size(), searchTerm);
@@ -91,6 +118,15 @@ public class TrackService {
         return removeDuplicates(allResults);
     }
 
+    /**
+     * Поиск среди сохранённых треков: в индексе в памяти, а пока он строится - в базе данных
+     */
+    public List<Track> searchLocalTracks(String query) {
+        return searchIndex.isLoaded()
+                ? searchIndex.search(query, LOCAL_SEARCH_LIMIT)
+                : trackDAO.search(query, LOCAL_SEARCH_LIMIT);
+    }
+
     private List<Track> getPopularTracksFromAPI() {
         try {
             // Используем метод получения глобальных топ треков
@@ -231,13 +267,42 @@ public class TrackService {
 
     public boolean addTrack(Track track) {
         try {
-            return trackDAO.save(track);
+            boolean saved = trackDAO.save(track);
+            if (saved) {
+                featureIndex.upsert(track);
+                trackStore.upsert(track);
+                searchIndex.upsert(track);
+            }
+            return saved;
         } catch (Exception e) {
             logger.error("Error adding track: {}", track.getTitle(), e);
             return false;
         }
     }
 
+    /**
+     * Пакетно сохраняет треки из API одной транзакцией (см. TrackDAO.importApiTracks).
+     * Трекам проставляются id созданных или уже существующих записей;
+     * если импорт не удался, треки остаются без id и в индексы не попадают.
+     */
+    public boolean importTracks(List<Track> tracks) {
+        try {
+            boolean saved = trackDAO.importApiTracks(tracks);
+            if (saved) {
+                // Треки без id (невалидные) индексы пропускают сами
+                for (Track track : tracks) {
+                    featureIndex.upsert(track);
+                    trackStore.upsert(track);
+                    searchIndex.upsert(track);
+                }
+            }
+            return saved;
+        } catch (Exception e) {
+            logger.error("Error importing {} tracks", tracks.size(), e);
+            return false;
+        }
+    }
+
     // Добавляем метод для поиска по artistName и title
     public Optional<Track> findByArtistAndTitle(String artistName, String title) {
         try {
@@ -254,7 +319,13 @@ public class TrackService {
 
     public boolean updateTrack(Track track) {
         try {
-            return trackDAO.save(track);
+            boolean saved = trackDAO.save(track);
+            if (saved) {
+                featureIndex.upsert(track);
+                trackStore.upsert(track);
+                searchIndex.upsert(track);
+            }
+            return saved;
         } catch (Exception e) {
             logger.error("Error updating track: {}", track.getId(), e);
             return false;
@@ -277,9 +348,38 @@ public class TrackService {
         }
     }
 
+    /**
+     * Загружает треки по списку id одним запросом.
+     * Треки из API (id <= 0) пропускаются, результат индексирован по id.
+     */
+    public Map<Long, Track> getTracksByIds(Collection<Long> trackIds) {
+        Set<Long> localIds = new HashSet<>();
+        for (Long trackId : trackIds) {
+            if (trackId != null && trackId > 0) {
+                localIds.add(trackId);
+            }
+        }
+
+        Map<Long, Track> tracksById = new HashMap<>();
+        try {
+            for (Track track : trackDAO.findByIds(localIds)) {
+                tracksById.put(track.getId(), track);
+            }
+        } catch (Exception e) {
+            logger.error("Error getting tracks by ids: {}", localIds, e);
+        }
+        return tracksById;
+    }
+
     public boolean deleteTrack(Long trackId) {
         try {
-            return trackDAO.delete(trackId);
+            boolean deleted = trackDAO.delete(trackId);
+            if (deleted) {
+                featureIndex.remove(trackId);
+                trackStore.remove(trackId);
+                searchIndex.remove(trackId);
+            }
+            return deleted;
         } catch (Exception e) {
             logger.error("Error deleting track: {}", trackId, e);
             return false;
@@ -0,0 +1,488 @@
+package com.github.everolfe.service;
+
+import com.github.everolfe.database.dao.TrackDAO;
+import com.github.everolfe.database.dao.TrackGenreDAO;
+import com.github.everolfe.model.Track;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Резидентный каталог треков в колоночном виде: каждое поле - примитивный массив, строка - трек.
+ * Исполнители, альбомы и жанры закодированы номерами словарей, аудиопризнаки хранятся как float
+ * (NaN - значение неизвестно). Анализ и индексация читают строки через переиспользуемый
+ * TrackView без создания объектов; Track создаётся только для строк, которые уходят в интерфейс.
+ */
+public class TrackStore {
+    private static final Logger logger = LoggerFactory.getLogger(TrackStore.class);
+
+    // Столбцы аудиопризнаков
+    public static final int ACOUSTICNESS = 0;
+    public static final int DANCEABILITY = 1;
+    public static final int ENERGY = 2;
+    public static final int INSTRUMENTALNESS = 3;
+    public static final int LIVENESS = 4;
+    public static final int LOUDNESS = 5;
+    public static final int SPEECHINESS = 6;
+    public static final int TEMPO = 7;
+    public static final int VALENCE = 8;
+    public static final int FEATURE_COUNT = 9;
+
+    private static final int INITIAL_CAPACITY = 256;
+    // Больше жанров у трека почти не бывает; лишние в хранилище не попадают
+    private static final int MAX_GENRES = 4;
+    private static final short NO_GENRE = -1;
+    private static final int NO_CODE = -1;
+    private static final int NO_ROW = -1;
+
+    private final TrackDAO trackDAO;
+    private final TrackGenreDAO trackGenreDAO;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Dictionary artists = new Dictionary();
+    private final Dictionary albums = new Dictionary();
+    private final Dictionary genres = new Dictionary();
+
+    private int[] ids = new int[INITIAL_CAPACITY];
+    private String[] titles = new String[INITIAL_CAPACITY];
+    private int[] artistCodes = new int[INITIAL_CAPACITY];
+    private int[] albumCodes = new int[INITIAL_CAPACITY];
+    private int[] durations = new int[INITIAL_CAPACITY];
+    private int[] trackNumbers = new int[INITIAL_CAPACITY];
+    private final float[][] features = new float[FEATURE_COUNT][INITIAL_CAPACITY];
+    // MAX_GENRES ячеек на строку, свободные заполнены NO_GENRE
+    private short[] genreCodes = new short[INITIAL_CAPACITY * MAX_GENRES];
+    // Прямая адресация по id: id треков выдаёт SERIAL, поэтому они плотные
+    private int[] rowById = new int[0];
+    private int size;
+    private volatile boolean loaded;
+
+    TrackStore(TrackDAO trackDAO, TrackGenreDAO trackGenreDAO) {
+        this.trackDAO = trackDAO;
+        this.trackGenreDAO = trackGenreDAO;
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Полностью перестраивает хранилище из таблиц tracks и track_genres
+     */
+    public void reload() {
+        long start = System.nanoTime();
+        lock.writeLock().lock();
+        try {
+            loaded = false;
+            clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        // Треки читаются курсором, Track живёт только до записи в столбцы
+        boolean complete = trackDAO.forEach(track -> {
+            lock.writeLock().lock();
+            try {
+                upsertRow(track);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+        // Жанры тоже читаются курсором и дописываются в уже построенные строки
+        complete &= trackGenreDAO.forEach(trackGenre -> {
+            lock.writeLock().lock();
+            try {
+                int row = rowOf(trackGenre.getTrackId());
+                if (row != NO_ROW) {
+                    addGenre(row, genres.code(null, trackGenre.getGenreName()));
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+
+        lock.writeLock().lock();
+        try {
+            if (!complete) {
+                // Неполное хранилище не публикуется: поиск остаётся в БД до следующей загрузки
+                clear();
+                logger.warn("Track store was not built: database read failed");
+                return;
+            }
+            loaded = true;
+            logger.info("Track store built in {} ms: {} tracks, {} artists, {} albums, {} genres",
+                    (System.nanoTime() - start) / 1_000_000, size, artists.size(), albums.size(), genres.size());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Добавляет или обновляет трек (вызывается после сохранения в БД).
+     * Жанры заменяются, только если Track.getGenre() задан.
+     */
+    public void upsert(Track track) {
+        if (track == null || track.getId() == null || track.getId() <= 0) {
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (!loaded) {
+                // Хранилище ещё не построено - трек попадёт в него при загрузке
+                return;
+            }
+            upsertRow(track);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long trackId) {
+        lock.writeLock().lock();
+        try {
+            removeRow(trackId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Обходит все строки под блокировкой чтения. Переданный TrackView один на весь обход
+     * и действителен только внутри visitor.
+     */
+    public void scan(Consumer<TrackView> visitor) {
+        lock.readLock().lock();
+        try {
+            TrackView view = new TrackView();
+            for (int row = 0; row < size; row++) {
+                view.row = row;
+                visitor.accept(view);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Трек для интерфейса или null, если его нет в хранилище
+     */
+    public Track toTrack(long trackId) {
+        lock.readLock().lock();
+        try {
+            int row = rowOf(trackId);
+            return row != NO_ROW ? materialize(row) : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Треки для интерфейса в порядке trackIds; отсутствующие в хранилище пропускаются
+     */
+    public List<Track> toTracks(Collection<Long> trackIds) {
+        List<Track> tracks = new ArrayList<>(trackIds.size());
+        lock.readLock().lock();
+        try {
+            for (Long trackId : trackIds) {
+                int row = rowOf(trackId);
+                if (row != NO_ROW) {
+                    tracks.add(materialize(row));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return tracks;
+    }
+
+    private void upsertRow(Track track) {
+        long id = track.getId();
+        if (id > Integer.MAX_VALUE) {
+            logger.warn("Track id {} does not fit the track store", id);
+            return;
+        }
+
+        int row = rowOf(id);
+        if (row == NO_ROW) {
+            ensureCapacity(size + 1);
+            row = size++;
+            setRowOf((int) id, row);
+            clearGenres(row);
+        }
+
+        ids[row] = (int) id;
+        titles[row] = track.getTitle();
+        artistCodes[row] = artists.code(track.getArtistId(), track.getArtistName());
+        albumCodes[row] = albums.code(track.getAlbumId(), track.getAlbumTitle());
+        durations[row] = track.getDuration() != null ? track.getDuration() : 0;
+        trackNumbers[row] = track.getTrackNumber() != null ? track.getTrackNumber() : 0;
+
+        setFeature(ACOUSTICNESS, row, track.getAcousticness());
+        setFeature(DANCEABILITY, row, track.getDanceability());
+        setFeature(ENERGY, row, track.getEnergy());
+        setFeature(INSTRUMENTALNESS, row, track.getInstrumentalness());
+        setFeature(LIVENESS, row, track.getLiveness());
+        setFeature(LOUDNESS, row, track.getLoudness());
+        setFeature(SPEECHINESS, row, track.getSpeechiness());
+        setFeature(TEMPO, row, track.getTempo());
+        setFeature(VALENCE, row, track.getValence());
+
+        // TrackDAO жанр не заполняет - жанры из track_genres сохраняются
+        if (track.getGenre() != null) {
+            clearGenres(row);
+            for (String genre : track.getGenre().split(",")) {
+                if (!genre.trim().isEmpty()) {
+                    addGenre(row, genres.code(null, genre.trim()));
+                }
+            }
+        }
+    }
+
+    private void removeRow(Long trackId) {
+        int row = rowOf(trackId);
+        if (row == NO_ROW) return;
+
+        // Переносим последнюю строку на место удалённой
+        int last = --size;
+        rowById[ids[row]] = NO_ROW;
+        if (row != last) {
+            ids[row] = ids[last];
+            titles[row] = titles[last];
+            artistCodes[row] = artistCodes[last];
+            albumCodes[row] = albumCodes[last];
+            durations[row] = durations[last];
+            trackNumbers[row] = trackNumbers[last];
+            for (float[] column : features) {
+                column[row] = column[last];
+            }
+            System.arraycopy(genreCodes, last * MAX_GENRES, genreCodes, row * MAX_GENRES, MAX_GENRES);
+            rowById[ids[row]] = row;
+        }
+        titles[last] = null;
+    }
+
+    private Track materialize(int row) {
+        Track track = new Track();
+        track.setId((long) ids[row]);
+        track.setTitle(titles[row]);
+        track.setArtistId(artists.id(artistCodes[row]));
+        track.setArtistName(artists.name(artistCodes[row]));
+        track.setAlbumId(albums.id(albumCodes[row]));
+        track.setAlbumTitle(albums.name(albumCodes[row]));
+        track.setDuration(durations[row]);
+        track.setTrackNumber(trackNumbers[row]);
+
+        track.setAcousticness(feature(ACOUSTICNESS, row));
+        track.setDanceability(feature(DANCEABILITY, row));
+        track.setEnergy(feature(ENERGY, row));
+        track.setInstrumentalness(feature(INSTRUMENTALNESS, row));
+        track.setLiveness(feature(LIVENESS, row));
+        track.setLoudness(feature(LOUDNESS, row));
+        track.setSpeechiness(feature(SPEECHINESS, row));
+        track.setTempo(feature(TEMPO, row));
+        track.setValence(feature(VALENCE, row));
+
+        track.setGenre(genreNames(row));
+        return track;
+    }
+
+    private void setFeature(int column, int row, Double value) {
+        features[column][row] = value != null ? value.floatValue() : Float.NaN;
+    }
+
+    private Double feature(int column, int row) {
+        float value = features[column][row];
+        return Float.isNaN(value) ? null : (double) value;
+    }
+
+    private String genreNames(int row) {
+        StringBuilder names = null;
+        for (int i = row * MAX_GENRES; i < (row + 1) * MAX_GENRES && genreCodes[i] != NO_GENRE; i++) {
+            if (names == null) {
+                names = new StringBuilder();
+            } else {
+                names.append(", ");
+            }
+            names.append(genres.name(genreCodes[i]));
+        }
+        return names != null ? names.toString() : null;
+    }
+
+    private void addGenre(int row, int code) {
+        if (code == NO_CODE || code > Short.MAX_VALUE) return;
+
+        for (int i = row * MAX_GENRES; i < (row + 1) * MAX_GENRES; i++) {
+            if (genreCodes[i] == code) return;
+            if (genreCodes[i] == NO_GENRE) {
+                genreCodes[i] = (short) code;
+                return;
+            }
+        }
+    }
+
+    private void clearGenres(int row) {
+        Arrays.fill(genreCodes, row * MAX_GENRES, (row + 1) * MAX_GENRES, NO_GENRE);
+    }
+
+    private int rowOf(long trackId) {
+        return trackId > 0 && trackId < rowById.length ? rowById[(int) trackId] : NO_ROW;
+    }
+
+    private void setRowOf(int trackId, int row) {
+        if (trackId >= rowById.length) {
+            int oldLength = rowById.length;
+            rowById = Arrays.copyOf(rowById, Math.max(trackId + 1, oldLength * 2));
+            Arrays.fill(rowById, oldLength, rowById.length, NO_ROW);
+        }
+        rowById[trackId] = row;
+    }
+
+    private void clear() {
+        Arrays.fill(titles, 0, size, null);
+        Arrays.fill(rowById, NO_ROW);
+        artists.clear();
+        albums.clear();
+        genres.clear();
+        size = 0;
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= ids.length) return;
+
+        int capacity = Math.max(required, ids.length * 2);
+        ids = Arrays.copyOf(ids, capacity);
+        titles = Arrays.copyOf(titles, capacity);
+        artistCodes = Arrays.copyOf(artistCodes, capacity);
+        albumCodes = Arrays.copyOf(albumCodes, capacity);
+        durations = Arrays.copyOf(durations, capacity);
+        trackNumbers = Arrays.copyOf(trackNumbers, capacity);
+        for (int column = 0; column < FEATURE_COUNT; column++) {
+            features[column] = Arrays.copyOf(features[column], capacity);
+        }
+        genreCodes = Arrays.copyOf(genreCodes, capacity * MAX_GENRES);
+    }
+
+    /**
+     * Окно на одну строку хранилища (flyweight): геттеры читают столбцы текущей строки
+     * без создания объектов. Действительно только внутри scan().
+     */
+    public final class TrackView {
+        private int row;
+
+        private TrackView() {
+        }
+
+        public long getId() { return ids[row]; }
+        public String getTitle() { return titles[row]; }
+        public int getArtistCode() { return artistCodes[row]; }
+        public String getArtistName() { return artists.name(artistCodes[row]); }
+        public int getAlbumCode() { return albumCodes[row]; }
+        public String getAlbumTitle() { return albums.name(albumCodes[row]); }
+        public int getDuration() { return durations[row]; }
+        public int getTrackNumber() { return trackNumbers[row]; }
+
+        /**
+         * @param column ACOUSTICNESS ... VALENCE
+         * @return значение признака или NaN, если он неизвестен
+         */
+        public float getFeature(int column) {
+            return features[column][row];
+        }
+
+        public int getGenreCount() {
+            int count = 0;
+            while (count < MAX_GENRES && genreCodes[row * MAX_GENRES + count] != NO_GENRE) {
+                count++;
+            }
+            return count;
+        }
+
+        public int getGenreCode(int index) {
+            return genreCodes[row * MAX_GENRES + index];
+        }
+
+        public String getGenreName(int index) {
+            return genres.name(getGenreCode(index));
+        }
+
+        /** Жанры через запятую или null; строка создаётся при каждом вызове */
+        public String getGenre() {
+            return genreNames(row);
+        }
+
+        /** Полный Track для интерфейса */
+        public Track toTrack() {
+            return materialize(row);
+        }
+    }
+
+    /**
+     * Словарь строк: номер выдаётся по id из БД, а если его нет - по имени без учёта регистра
+     */
+    private static final class Dictionary {
+        private final Map<Long, Integer> codeById = new HashMap<>();
+        private final Map<String, Integer> codeByName = new HashMap<>();
+        private final List<String> names = new ArrayList<>();
+        private final List<Long> ids = new ArrayList<>();
+
+        int code(Long id, String name) {
+            if (name == null) {
+                return NO_CODE;
+            }
+            // getLong() возвращает 0 для NULL в БД
+            boolean hasId = id != null && id > 0;
+            String key = hasId ? null : name.toLowerCase(Locale.ROOT);
+            Integer code = hasId ? codeById.get(id) : codeByName.get(key);
+            if (code == null) {
+                code = names.size();
+                names.add(name);
+                ids.add(hasId ? id : null);
+                if (hasId) {
+                    codeById.put(id, code);
+                } else {
+                    codeByName.put(key, code);
+                }
+            }
+            return code;
+        }
+
+        String name(int code) {
+            return code == NO_CODE ? null : names.get(code);
+        }
+
+        Long id(int code) {
+            return code == NO_CODE ? null : ids.get(code);
+        }
+
+        int size() {
+            return names.size();
+        }
+
+        void clear() {
+            codeById.clear();
+            codeByName.clear();
+            names.clear();
+            ids.clear();
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.github.everolfe.service;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * SIMD-реализация на jdk.incubator.vector: за один шаг обрабатывается столько треков,
+ * сколько float помещается в векторный регистр. Компилируется только в профиле
+ * vector-api (mvn -P vector-api) и загружается через AudioFeatureKernels, если JVM
+ * запущена с --add-modules jdk.incubator.vector.
+ */
+final class VectorAudioFeatureKernel implements AudioFeatureKernel {
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    @Override
+    public void squaredDistances(float[][] columns, float[] query, int size, float[] out) {
+        int dimensions = query.length;
+        FloatVector[] queryLanes = broadcast(query);
+        int upper = SPECIES.loopBound(size);
+        int row = 0;
+        for (; row < upper; row += SPECIES.length()) {
+            FloatVector sum = FloatVector.zero(SPECIES);
+            for (int d = 0; d < dimensions; d++) {
+                FloatVector diff = FloatVector.fromArray(SPECIES, columns[d], row).sub(queryLanes[d]);
+                sum = diff.fma(diff, sum);
+            }
+            sum.intoArray(out, row);
+        }
+        // Хвост короче одного вектора
+        for (; row < size; row++) {
+            float sum = 0f;
+            for (int d = 0; d < dimensions; d++) {
+                float diff = columns[d][row] - query[d];
+                sum += diff * diff;
+            }
+            out[row] = sum;
+        }
+    }
+
+    @Override
+    public void dotProducts(float[][] columns, float[] query, int size, float[] out) {
+        int dimensions = query.length;
+        FloatVector[] queryLanes = broadcast(query);
+        int upper = SPECIES.loopBound(size);
+        int row = 0;
+        for (; row < upper; row += SPECIES.length()) {
+            FloatVector sum = FloatVector.zero(SPECIES);
+            for (int d = 0; d < dimensions; d++) {
+                sum = FloatVector.fromArray(SPECIES, columns[d], row).fma(queryLanes[d], sum);
+            }
+            sum.intoArray(out, row);
+        }
+        for (; row < size; row++) {
+            float sum = 0f;
+            for (int d = 0; d < dimensions; d++) {
+                sum += columns[d][row] * query[d];
+            }
+            out[row] = sum;
+        }
+    }
+
+    @Override
+    public String name() {
+        return "vector (" + SPECIES.length() + " x float)";
+    }
+
+    private static FloatVector[] broadcast(float[] query) {
+        FloatVector[] lanes = new FloatVector[query.length];
+        for (int d = 0; d < query.length; d++) {
+            lanes[d] = FloatVector.broadcast(SPECIES, query[d]);
+        }
+        return lanes;
+    }
+}
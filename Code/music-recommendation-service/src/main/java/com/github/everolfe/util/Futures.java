@@ -0,0 +1,130 @@
+package com.github.everolfe.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * Композиция CompletableFuture с распространением отмены.
+ * Стандартные thenCompose/exceptionally не отменяют исходные задачи,
+ * поэтому отмена или таймаут результата здесь передаются всем вложенным future.
+ */
+public final class Futures {
+
+    private Futures() {
+    }
+
+    /**
+     * Аналог thenCompose: отмена или таймаут результата отменяет и исходный, и вложенный future
+     */
+    public static <T, R> CompletableFuture<R> compose(CompletableFuture<T> source,
+                                                      Function<? super T, ? extends CompletableFuture<R>> next) {
+        CompletableFuture<R> result = new CompletableFuture<>();
+        AtomicReference<CompletableFuture<R>> inner = new AtomicReference<>();
+
+        source.whenComplete((value, error) -> {
+            if (error != null) {
+                result.completeExceptionally(unwrap(error));
+                return;
+            }
+            try {
+                CompletableFuture<R> stage = next.apply(value);
+                inner.set(stage);
+                if (result.isDone()) {
+                    stage.cancel(true);
+                    return;
+                }
+                stage.whenComplete((nextValue, nextError) -> {
+                    if (nextError != null) {
+                        result.completeExceptionally(unwrap(nextError));
+                    } else {
+                        result.complete(nextValue);
+                    }
+                });
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            }
+        });
+
+        cancelOnFailure(result, source, inner);
+        return result;
+    }
+
+    /**
+     * Аналог thenApply с распространением отмены
+     */
+    public static <T, R> CompletableFuture<R> map(CompletableFuture<T> source, Function<? super T, ? extends R> mapper) {
+        return compose(source, value -> CompletableFuture.completedFuture(mapper.apply(value)));
+    }
+
+    /**
+     * Аналог exceptionally: ошибка заменяется запасным значением, но отмена результата
+     * отменяет исходный future, а отмена исходного - не маскируется запасным значением
+     */
+    public static <T> CompletableFuture<T> recover(CompletableFuture<T> source, Function<Throwable, ? extends T> fallback) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        source.whenComplete((value, error) -> {
+            if (error == null) {
+                result.complete(value);
+            } else if (source.isCancelled()) {
+                result.cancel(true);
+            } else {
+                try {
+                    result.complete(fallback.apply(unwrap(error)));
+                } catch (Throwable t) {
+                    result.completeExceptionally(t);
+                }
+            }
+        });
+        cancelOnFailure(result, source, null);
+        return result;
+    }
+
+    /**
+     * Собирает результаты в список в исходном порядке.
+     * Ошибка любого future или отмена результата отменяет все остальные.
+     */
+    public static <T> CompletableFuture<List<T>> allAsList(List<CompletableFuture<T>> futures) {
+        CompletableFuture<List<T>> result = CompletableFuture
+                .allOf(futures.toArray(new CompletableFuture<?>[0]))
+                .thenApply(ignored -> {
+                    List<T> values = new ArrayList<>(futures.size());
+                    for (CompletableFuture<T> future : futures) {
+                        values.add(future.join());
+                    }
+                    return values;
+                });
+
+        for (CompletableFuture<T> future : futures) {
+            future.whenComplete((value, error) -> {
+                if (error != null) {
+                    result.completeExceptionally(unwrap(error));
+                }
+            });
+        }
+        result.whenComplete((values, error) -> {
+            if (error != null) {
+                futures.forEach(future -> future.cancel(true));
+            }
+        });
+        return result;
+    }
+
+    public static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    private static void cancelOnFailure(CompletableFuture<?> result, CompletableFuture<?> source,
+                                        AtomicReference<? extends CompletableFuture<?>> inner) {
+        result.whenComplete((value, error) -> {
+            if (error == null) return;
+            source.cancel(true);
+            if (inner != null && inner.get() != null) {
+                inner.get().cancel(true);
+            }
+        });
+    }
+}
@@ -0,0 +1,71 @@
+package com.github.everolfe.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Исполнитель для блокирующего ввода-вывода (JDBC, HTTP, диск).
+ * На JDK 21+ каждая задача получает свой виртуальный поток; на более старой
+ * JVM используется ограниченный пул daemon-потоков. Проект собирается под
+ * Java 11, поэтому API виртуальных потоков вызывается через reflection.
+ */
+public final class IoExecutors {
+    private static final Logger logger = LoggerFactory.getLogger(IoExecutors.class);
+
+    private IoExecutors() {
+    }
+
+    /**
+     * @param namePrefix      префикс имён потоков
+     * @param fallbackThreads размер пула, если виртуальные потоки недоступны
+     */
+    public static ExecutorService newIoExecutor(String namePrefix, int fallbackThreads) {
+        ExecutorService virtualExecutor = newVirtualThreadPerTaskExecutor(namePrefix);
+        if (virtualExecutor != null) {
+            logger.info("Blocking I/O runs on virtual threads");
+            return virtualExecutor;
+        }
+
+        logger.info("Virtual threads are not available on Java {}, using {} platform I/O threads",
+                System.getProperty("java.version"), fallbackThreads);
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(fallbackThreads, fallbackThreads,
+                60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), daemonThreadFactory(namePrefix));
+        // Простаивающие потоки не держим: нагрузка на пул всплесками
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    public static ThreadFactory daemonThreadFactory(String namePrefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, namePrefix + counter.incrementAndGet());
+            // Фоновые задачи не должны удерживать JVM после закрытия окна
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    // Thread.ofVirtual().name(prefix, 1).factory() + Executors.newThreadPerTaskExecutor(factory)
+    private static ExecutorService newVirtualThreadPerTaskExecutor(String namePrefix) {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, namePrefix, 1L);
+            ThreadFactory factory = (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+            Method newExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            return (ExecutorService) newExecutor.invoke(null, factory);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // NoSuchMethodException до JDK 21, InvocationTargetException для preview-API на JDK 19-20
+            return null;
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.github.everolfe.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Структурированный запуск параллельных подзадач (по образцу StructuredTaskScope из JDK 21).
+ * Подзадачи живут не дольше блока try-with-resources: join ждёт их до общего срока
+ * (и до собственного срока подзадачи, если он задан), а незавершённые к сроку
+ * или к закрытию области прерываются. Для каждой подзадачи замеряется время выполнения.
+ *
+ * <pre>
+ * try (TaskScope scope = new TaskScope(executor)) {
+ *     TaskScope.Subtask&lt;List&lt;X&gt;&gt; a = scope.fork("a", this::loadA);
+ *     scope.join(timeoutMillis, TimeUnit.MILLISECONDS);
+ *     List&lt;X&gt; result = a.resultOrElse(Collections.emptyList());
+ * }
+ * </pre>
+ */
+public final class TaskScope implements AutoCloseable {
+
+    public enum State { RUNNING, SUCCESS, FAILED, CANCELLED }
+
+    private final ExecutorService executor;
+    private final List<Subtask<?>> subtasks = new ArrayList<>();
+    private final Thread owner = Thread.currentThread();
+
+    public TaskScope(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    public <T> Subtask<T> fork(String name, Callable<T> task) {
+        return fork(name, Long.MAX_VALUE, TimeUnit.NANOSECONDS, task);
+    }
+
+    /**
+     * Запускает подзадачу с собственным сроком, отсчитываемым от момента запуска
+     */
+    public <T> Subtask<T> fork(String name, long timeout, TimeUnit unit, Callable<T> task) {
+        checkOwner();
+        Subtask<T> subtask = new Subtask<>(name, unit.toNanos(timeout));
+        subtask.future = executor.submit(() -> {
+            try {
+                return task.call();
+            } finally {
+                subtask.finish();
+            }
+        });
+        subtasks.add(subtask);
+        return subtask;
+    }
+
+    /**
+     * Ждёт завершения всех подзадач, но не дольше timeout и не дольше сроков самих подзадач.
+     * Не успевшие к сроку подзадачи прерываются.
+     *
+     * @return true, если все подзадачи завершились сами
+     */
+    public boolean join(long timeout, TimeUnit unit) throws InterruptedException {
+        checkOwner();
+        long scopeDeadline = deadline(System.nanoTime(), unit.toNanos(timeout));
+        boolean completed = true;
+        for (Subtask<?> subtask : subtasks) {
+            long deadline = Math.min(scopeDeadline, deadline(subtask.startNanos, subtask.timeoutNanos));
+            try {
+                subtask.future.get(Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                // Остальные подзадачи ещё могут уложиться в свои сроки
+                subtask.cancel();
+                completed = false;
+            } catch (ExecutionException | CancellationException e) {
+                // Ошибка подзадачи доступна через Subtask.exception()
+            }
+        }
+        return completed;
+    }
+
+    @Override
+    public void close() {
+        cancelUnfinished();
+    }
+
+    private void cancelUnfinished() {
+        for (Subtask<?> subtask : subtasks) {
+            subtask.cancel();
+        }
+    }
+
+    // Защита от переполнения при "бесконечном" сроке
+    private static long deadline(long startNanos, long timeoutNanos) {
+        long deadline = startNanos + timeoutNanos;
+        return timeoutNanos > 0 && deadline < startNanos ? Long.MAX_VALUE : deadline;
+    }
+
+    private void checkOwner() {
+        if (Thread.currentThread() != owner) {
+            throw new IllegalStateException("TaskScope can only be used by the thread that opened it");
+        }
+    }
+
+    public static final class Subtask<T> {
+        private final String name;
+        private final long timeoutNanos;
+        private final long startNanos = System.nanoTime();
+        private final AtomicLong endNanos = new AtomicLong();
+        private Future<T> future;
+
+        private Subtask(String name, long timeoutNanos) {
+            this.name = name;
+            this.timeoutNanos = timeoutNanos;
+        }
+
+        public String name() {
+            return name;
+        }
+
+        /**
+         * Время от запуска до завершения или отмены; для ещё идущей подзадачи - до текущего момента
+         */
+        public long elapsedMillis() {
+            long end = endNanos.get();
+            return TimeUnit.NANOSECONDS.toMillis((end != 0 ? end : System.nanoTime()) - startNanos);
+        }
+
+        private void finish() {
+            endNanos.compareAndSet(0, System.nanoTime());
+        }
+
+        private void cancel() {
+            if (future.cancel(true)) {
+                finish();
+            }
+        }
+
+        public State state() {
+            if (!future.isDone()) return State.RUNNING;
+            if (future.isCancelled()) return State.CANCELLED;
+            return exception() == null ? State.SUCCESS : State.FAILED;
+        }
+
+        /**
+         * Результат успешно завершённой подзадачи, иначе fallback
+         */
+        public T resultOrElse(T fallback) {
+            if (!future.isDone() || future.isCancelled()) return fallback;
+            try {
+                return future.get();
+            } catch (ExecutionException e) {
+                return fallback;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return fallback;
+            }
+        }
+
+        public Throwable exception() {
+            if (!future.isDone() || future.isCancelled()) return null;
+            try {
+                future.get();
+                return null;
+            } catch (ExecutionException e) {
+                return e.getCause();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.github.everolfe.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Отбор K элементов с наибольшей оценкой без полной сортировки.
+ * Хранит min-кучу фиксированного размера: каждый кандидат оценивается
+ * ровно один раз, а отбор стоит O(n log k) вместо O(n log n).
+ * При равных оценках выигрывает элемент, добавленный раньше.
+ */
+public class TopKSelector<T> {
+    private final int capacity;
+    private final Object[] items;
+    private final double[] scores;
+    private final long[] sequence;
+    private long offered;
+    private int size;
+
+    public TopKSelector(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Capacity must not be negative: " + capacity);
+        }
+        this.capacity = capacity;
+        this.items = new Object[capacity];
+        this.scores = new double[capacity];
+        this.sequence = new long[capacity];
+    }
+
+    /**
+     * Попадёт ли элемент с такой оценкой в текущий топ.
+     * Позволяет не создавать объект для заведомо проигрывающего кандидата.
+     */
+    public boolean accepts(double score) {
+        return size < capacity || (capacity > 0 && score > scores[0]);
+    }
+
+    public void offer(T item, double score) {
+        long seq = offered++;
+        if (size < capacity) {
+            items[size] = item;
+            scores[size] = score;
+            sequence[size] = seq;
+            siftUp(size++);
+        } else if (accepts(score)) {
+            items[0] = item;
+            scores[0] = score;
+            sequence[0] = seq;
+            siftDown(0);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Возвращает отобранные элементы по убыванию оценки
+     */
+    @SuppressWarnings("unchecked")
+    public List<T> toSortedList() {
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> lessThan(b, a) ? -1 : (lessThan(a, b) ? 1 : 0));
+
+        List<T> result = new ArrayList<>(size);
+        for (Integer i : order) {
+            result.add((T) items[i]);
+        }
+        return result;
+    }
+
+    // Элемент a "хуже" элемента b: меньшая оценка или более позднее добавление
+    private boolean lessThan(int a, int b) {
+        if (scores[a] != scores[b]) {
+            return scores[a] < scores[b];
+        }
+        return sequence[a] > sequence[b];
+    }
+
+    private void siftUp(int index) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (!lessThan(index, parent)) break;
+            swap(index, parent);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int index) {
+        while (true) {
+            int left = 2 * index + 1;
+            if (left >= size) break;
+
+            int smallest = left;
+            int right = left + 1;
+            if (right < size && lessThan(right, left)) {
+                smallest = right;
+            }
+            if (!lessThan(smallest, index)) break;
+
+            swap(index, smallest);
+            index = smallest;
+        }
+    }
+
+    private void swap(int i, int j) {
+        Object item = items[i];
+        items[i] = items[j];
+        items[j] = item;
+
+        double score = scores[i];
+        scores[i] = scores[j];
+        scores[j] = score;
+
+        long seq = sequence[i];
+        sequence[i] = sequence[j];
+        sequence[j] = seq;
+    }
+}